@@ -0,0 +1,66 @@
+package com.github.fge.filesystem;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+
+/**
+ * Where benchmark fixtures are stored
+ */
+@ParametersAreNonnullByDefault
+public enum FixtureStorage
+{
+    /**
+     * The default filesystem
+     */
+    DEFAULT
+    {
+        @Override
+        public Path open(final Path tempDir)
+        {
+            return tempDir;
+        }
+    },
+    /**
+     * A zip filesystem, created in the temporary directory
+     */
+    ZIP
+    {
+        @Override
+        public Path open(final Path tempDir)
+            throws IOException
+        {
+            final FileSystem fs
+                = MoreFileSystems.createZip(tempDir.resolve("fixture.zip"));
+            return fs.getPath("/");
+        }
+    },
+    ;
+
+    /**
+     * Get a directory in which to create fixtures
+     *
+     * @param tempDir a temporary directory on the default filesystem
+     * @return a directory
+     * @throws IOException failed to create the storage
+     */
+    public abstract Path open(final Path tempDir)
+        throws IOException;
+
+    /**
+     * Release a directory obtained using {@link #open(Path)}
+     *
+     * @param dir the directory
+     * @throws IOException failed to release the storage
+     */
+    public static void close(final Path dir)
+        throws IOException
+    {
+        final FileSystem fs = dir.getFileSystem();
+
+        if (fs != FileSystems.getDefault())
+            fs.close();
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.fge.filesystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link MorePaths#resolve(Path, Path)}
+ *
+ * <p>{@link Path#resolve(Path)} is used as a baseline; resolution of a path
+ * from another filesystem (here, a zip filesystem) is also measured.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MorePathsBenchmark
+{
+    private Path tempDir;
+    private FileSystem zipfs;
+
+    private Path base;
+    private Path sameFileSystem;
+    private Path otherFileSystem;
+
+    @Setup(Level.Trial)
+    public void createPaths()
+        throws IOException
+    {
+        tempDir = Files.createTempDirectory("pathbench");
+        zipfs = MoreFileSystems.createZip(tempDir.resolve("paths.zip"));
+
+        base = Paths.get("/usr/share/doc");
+        sameFileSystem = Paths.get("some/relative/path");
+        otherFileSystem = zipfs.getPath("some/relative/path");
+    }
+
+    @Benchmark
+    public Path baseline()
+    {
+        return base.resolve(sameFileSystem);
+    }
+
+    @Benchmark
+    public Path sameFileSystem()
+    {
+        return MorePaths.resolve(base, sameFileSystem);
+    }
+
+    @Benchmark
+    public Path otherFileSystem()
+    {
+        return MorePaths.resolve(base, otherFileSystem);
+    }
+
+    @TearDown(Level.Trial)
+    public void deletePaths()
+        throws IOException
+    {
+        zipfs.close();
+        MoreFiles.deleteRecursive(tempDir, RecursionMode.KEEP_GOING);
+    }
+}
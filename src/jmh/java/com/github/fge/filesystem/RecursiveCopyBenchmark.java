@@ -0,0 +1,89 @@
+package com.github.fge.filesystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link MoreFiles#copyRecursive(Path, Path, RecursionMode,
+ * CopyOption...)}
+ *
+ * <p>The source tree is stored according to the {@link FixtureStorage}
+ * parameter; the destination is always on the default filesystem.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RecursiveCopyBenchmark
+{
+    @Param({ "DEEP", "WIDE" })
+    public TreeFixture.Shape shape;
+
+    @Param({ "EMPTY", "SMALL", "MIXED" })
+    public TreeFixture.FileSizes fileSizes;
+
+    @Param("1000")
+    public int fileCount;
+
+    @Param({ "DEFAULT", "ZIP" })
+    public FixtureStorage storage;
+
+    // 0 means no parallelism
+    @Param({ "0", "4" })
+    public int parallelism;
+
+    private Path tempDir;
+    private Path storageDir;
+    private Path source;
+    private Path destination;
+    private CopyOption[] options;
+
+    @Setup(Level.Trial)
+    public void createSource()
+        throws IOException
+    {
+        tempDir = Files.createTempDirectory("copybench");
+        storageDir = storage.open(tempDir);
+        source = new TreeFixture(shape, fileSizes, fileCount, 0L)
+            .create(storageDir.resolve("source"));
+        destination = tempDir.resolve("destination");
+        options = parallelism == 0 ? new CopyOption[0]
+            : new CopyOption[] { Parallelism.of(parallelism) };
+    }
+
+    @Benchmark
+    public void copyRecursive()
+        throws IOException
+    {
+        MoreFiles.copyRecursive(source, destination, RecursionMode.FAIL_FAST,
+            options);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDestination()
+        throws IOException
+    {
+        MoreFiles.deleteRecursive(destination, RecursionMode.FAIL_FAST);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSource()
+        throws IOException
+    {
+        FixtureStorage.close(storageDir);
+        MoreFiles.deleteRecursive(tempDir, RecursionMode.KEEP_GOING);
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.fge.filesystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link MoreFiles#deleteRecursive(Path, RecursionMode,
+ * DeleteOption...)}
+ *
+ * <p>The tree to delete is generated again before each invocation; file
+ * contents do not matter here, so all files are empty.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RecursiveDeletionBenchmark
+{
+    @Param({ "DEEP", "WIDE" })
+    public TreeFixture.Shape shape;
+
+    @Param("1000")
+    public int fileCount;
+
+    @Param({ "DEFAULT", "ZIP" })
+    public FixtureStorage storage;
+
+    // 0 means no parallelism
+    @Param({ "0", "4" })
+    public int parallelism;
+
+    private Path tempDir;
+    private Path storageDir;
+    private TreeFixture fixture;
+    private Path victim;
+    private DeleteOption[] options;
+
+    @Setup(Level.Trial)
+    public void openStorage()
+        throws IOException
+    {
+        tempDir = Files.createTempDirectory("deletebench");
+        storageDir = storage.open(tempDir);
+        fixture = new TreeFixture(shape, TreeFixture.FileSizes.EMPTY,
+            fileCount, 0L);
+        victim = storageDir.resolve("victim");
+        options = parallelism == 0 ? new DeleteOption[0]
+            : new DeleteOption[] { Parallelism.of(parallelism) };
+    }
+
+    @Setup(Level.Invocation)
+    public void createVictim()
+        throws IOException
+    {
+        fixture.create(victim);
+    }
+
+    @Benchmark
+    public void deleteRecursive()
+        throws IOException
+    {
+        MoreFiles.deleteRecursive(victim, RecursionMode.FAIL_FAST, options);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeStorage()
+        throws IOException
+    {
+        FixtureStorage.close(storageDir);
+        MoreFiles.deleteRecursive(tempDir, RecursionMode.KEEP_GOING);
+    }
+}
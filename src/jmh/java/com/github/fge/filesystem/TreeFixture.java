@@ -0,0 +1,159 @@
+package com.github.fge.filesystem;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * A reproducible file tree generator for benchmarks
+ *
+ * <p>Given the same parameters, a fixture will always generate the same tree:
+ * same directories, same file names, same file sizes and same contents. The
+ * tree can be generated on any filesystem which supports creating
+ * directories and regular files.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class TreeFixture
+{
+    /**
+     * The shape of the generated tree
+     */
+    public enum Shape
+    {
+        /**
+         * A chain of directories, with a few files in each directory
+         */
+        DEEP(8),
+        /**
+         * Many sibling directories under the root, with a lot of files in
+         * each of them
+         */
+        WIDE(64),
+        ;
+
+        private final int filesPerDirectory;
+
+        Shape(final int filesPerDirectory)
+        {
+            this.filesPerDirectory = filesPerDirectory;
+        }
+    }
+
+    /**
+     * The distribution of the sizes of the generated files
+     */
+    public enum FileSizes
+    {
+        /**
+         * All files are empty
+         */
+        EMPTY
+        {
+            @Override
+            int nextSize(final Random random)
+            {
+                return 0;
+            }
+        },
+        /**
+         * Files are between 0 and 4 KiB long
+         */
+        SMALL
+        {
+            @Override
+            int nextSize(final Random random)
+            {
+                return random.nextInt(SMALL_MAX + 1);
+            }
+        },
+        /**
+         * Nine files out of ten are {@link #SMALL}, the others are up to 1
+         * MiB long
+         */
+        MIXED
+        {
+            @Override
+            int nextSize(final Random random)
+            {
+                return random.nextInt(10) == 0
+                    ? random.nextInt(LARGE_MAX + 1)
+                    : random.nextInt(SMALL_MAX + 1);
+            }
+        },
+        ;
+
+        abstract int nextSize(final Random random);
+    }
+
+    private static final int SMALL_MAX = 4 * 1024;
+    private static final int LARGE_MAX = 1024 * 1024;
+
+    private final Shape shape;
+    private final FileSizes fileSizes;
+    private final int fileCount;
+    private final long seed;
+
+    /**
+     * Constructor
+     *
+     * @param shape the shape of the tree
+     * @param fileSizes the distribution of file sizes
+     * @param fileCount the number of files to create
+     * @param seed the seed of the random generator
+     */
+    public TreeFixture(final Shape shape, final FileSizes fileSizes,
+        final int fileCount, final long seed)
+    {
+        this.shape = Objects.requireNonNull(shape);
+        this.fileSizes = Objects.requireNonNull(fileSizes);
+        this.fileCount = fileCount;
+        this.seed = seed;
+    }
+
+    /**
+     * Generate the tree
+     *
+     * @param root the root of the tree; it must not exist
+     * @return the root of the tree
+     * @throws IOException failed to generate the tree
+     */
+    public Path create(final Path root)
+        throws IOException
+    {
+        final Random random = new Random(seed);
+        final int perDirectory = shape.filesPerDirectory;
+
+        Files.createDirectory(root);
+
+        Path dir = root;
+        byte[] content;
+
+        for (int i = 0; i < fileCount; i++) {
+            if (i % perDirectory == 0)
+                dir = Files.createDirectory(nextDirectory(root, dir, i));
+            content = new byte[fileSizes.nextSize(random)];
+            random.nextBytes(content);
+            Files.write(dir.resolve("file" + i % perDirectory), content);
+        }
+
+        return root;
+    }
+
+    private Path nextDirectory(final Path root, final Path current,
+        final int index)
+    {
+        final String name = "dir" + index / shape.filesPerDirectory;
+        return shape == Shape.DEEP ? current.resolve(name)
+            : root.resolve(name);
+    }
+
+    @Override
+    public String toString()
+    {
+        return fileCount + " files, " + shape + " tree, " + fileSizes
+            + " sizes (seed: " + seed + ')';
+    }
+}
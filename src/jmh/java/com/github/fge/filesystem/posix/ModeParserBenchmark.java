@@ -0,0 +1,49 @@
+package com.github.fge.filesystem.posix;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ModeParser} and the application of its results
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModeParserBenchmark
+{
+    @Param({ "u+x", "o-rwx,g+r,g-w", "u+rwx,g+rx,g-w,o+r,o-wx" })
+    public String instructions;
+
+    private PermissionsSet permissionsSet;
+    private Set<PosixFilePermission> perms;
+
+    @Setup
+    public void parse()
+    {
+        permissionsSet = ModeParser.buildPermissionsSet(instructions);
+        perms = PosixFilePermissions.fromString("rw-r--r--");
+    }
+
+    @Benchmark
+    public PermissionsSet buildPermissionsSet()
+    {
+        return ModeParser.buildPermissionsSet(instructions);
+    }
+
+    @Benchmark
+    public Set<PosixFilePermission> modify()
+    {
+        return permissionsSet.modify(perms);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.fge.filesystem.posix;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the integer mode lookup table, and copies of its sets, with the
+ * former loop
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PosixModesBenchmark
+{
+    private static final PosixFilePermission[] PERMISSIONS
+        = PosixFilePermission.values();
+    private static final int PERMISSIONS_LENGTH = PERMISSIONS.length;
+
+    private int intMode = 0;
+
+    @Benchmark
+    public Set<PosixFilePermission> lookup()
+    {
+        intMode = intMode + 1 & 0777;
+        return PosixModes.sharedSet(intMode);
+    }
+
+    @Benchmark
+    public Set<PosixFilePermission> copy()
+    {
+        intMode = intMode + 1 & 0777;
+        return PosixModes.intModeToPosix(intMode);
+    }
+
+    @Benchmark
+    public Set<PosixFilePermission> loop()
+    {
+        intMode = intMode + 1 & 0777;
+        return loopIntModeToPosix(intMode);
+    }
+
+    @Benchmark
+    public void roundTrip(final Blackhole blackhole)
+    {
+        intMode = intMode + 1 & 0777;
+        blackhole.consume(PosixModes.posixToIntMode(
+            PosixModes.sharedSet(intMode)));
+    }
+
+    /*
+     * The implementation of PosixModes#intModeToPosix() before the lookup
+     * table was introduced
+     */
+    private static Set<PosixFilePermission> loopIntModeToPosix(int intMode)
+    {
+        final Set<PosixFilePermission> set
+            = EnumSet.noneOf(PosixFilePermission.class);
+
+        for (int i = 0; i < PERMISSIONS_LENGTH; i++) {
+            if ((intMode & 1) == 1)
+                set.add(PERMISSIONS[PERMISSIONS_LENGTH - i - 1]);
+            intMode >>= 1;
+        }
+
+        return set;
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.fge.filesystem.readonly;
+
+import com.github.fge.filesystem.FixtureStorage;
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.RecursionMode;
+import com.github.fge.filesystem.TreeFixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of {@link ReadOnlyFileSystemProvider} delegation
+ *
+ * <p>Each operation is run both using the original provider ({@code readOnly
+ * == false}) and using a read only provider delegating to it. Providers are
+ * called directly, since paths obtained from a {@link ReadOnlyFileSystem} are
+ * paths of the delegate filesystem.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReadOnlyFileSystemProviderBenchmark
+{
+    private static final DirectoryStream.Filter<Path> ACCEPT_ALL
+        = new DirectoryStream.Filter<Path>()
+        {
+            @Override
+            public boolean accept(final Path entry)
+            {
+                return true;
+            }
+        };
+
+    private static final Set<OpenOption> READ
+        = Collections.<OpenOption>singleton(StandardOpenOption.READ);
+
+    @Param({ "DEFAULT", "ZIP" })
+    public FixtureStorage storage;
+
+    @Param({ "false", "true" })
+    public boolean readOnly;
+
+    private Path tempDir;
+    private Path storageDir;
+    private Path dir;
+    private Path file;
+    private FileSystemProvider provider;
+    private ByteBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void createTree()
+        throws IOException
+    {
+        tempDir = Files.createTempDirectory("readonlybench");
+        storageDir = storage.open(tempDir);
+
+        final Path root = new TreeFixture(TreeFixture.Shape.WIDE,
+            TreeFixture.FileSizes.SMALL, 64, 0L)
+            .create(storageDir.resolve("tree"));
+
+        dir = root.resolve("dir0");
+        file = dir.resolve("file0");
+        provider = dir.getFileSystem().provider();
+        if (readOnly)
+            provider = new ReadOnlyFileSystemProvider(provider);
+        buffer = ByteBuffer.allocate(8192);
+    }
+
+    @Benchmark
+    public BasicFileAttributes readAttributes()
+        throws IOException
+    {
+        return provider.readAttributes(file, BasicFileAttributes.class);
+    }
+
+    @Benchmark
+    public void listDirectory(final Blackhole blackhole)
+        throws IOException
+    {
+        try (
+            final DirectoryStream<Path> stream
+                = provider.newDirectoryStream(dir, ACCEPT_ALL);
+        ) {
+            for (final Path entry: stream)
+                blackhole.consume(entry);
+        }
+    }
+
+    @Benchmark
+    public int readFile()
+        throws IOException
+    {
+        int total = 0;
+
+        try (
+            final SeekableByteChannel channel
+                = provider.newByteChannel(file, READ);
+        ) {
+            int read;
+            buffer.clear();
+            while ((read = channel.read(buffer)) != -1) {
+                total += read;
+                buffer.clear();
+            }
+        }
+
+        return total;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree()
+        throws IOException
+    {
+        FixtureStorage.close(storageDir);
+        MoreFiles.deleteRecursive(tempDir, RecursionMode.KEEP_GOING);
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.fge.filesystem;
+
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+
+/**
+ * An object that configures how to change permissions recursively
+ *
+ * <p>This is the permissions counterpart of {@link CopyOption}.</p>
+ *
+ * @see MoreFiles#changeModeRecursive(Path, String, RecursionMode,
+ * ChangeModeOption...)
+ */
+public interface ChangeModeOption
+{
+}
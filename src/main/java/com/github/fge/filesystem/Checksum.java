@@ -0,0 +1,259 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.copy.FileCopier;
+import com.github.fge.filesystem.exceptions.ChecksumMismatchException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.CopyOption;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * Option to compute a digest of the files being copied
+ *
+ * <p>The digest of a file is computed while its bytes flow through the copy
+ * buffer, so computing it costs no extra read; the digests of all the files
+ * copied are then available as a {@link #getManifest() manifest}. Any {@link
+ * MessageDigest} algorithm can be used, as well as {@link #CRC32}, which is
+ * much cheaper but is not suitable for detecting tampering.</p>
+ *
+ * <p>If {@link #verifying() verification} is requested, the target is read
+ * again once copied, and the copy fails with a {@link
+ * ChecksumMismatchException} if both digests differ. Note that, depending on
+ * the filesystem, the target may then be read from the page cache rather
+ * than from the storage.</p>
+ *
+ * <p>Since bytes must flow through the copy buffer, files are always copied
+ * by chunks when this option is specified, even if the provider of the source
+ * and destination could copy them more efficiently by itself (see {@link
+ * FileCopier}).</p>
+ *
+ * <p>An instance of this class collects the digests of all the copies it is
+ * passed to; use a new instance for each copy. This class is thread safe.
+ * </p>
+ *
+ * @see MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)
+ */
+@ParametersAreNonnullByDefault
+public final class Checksum
+    implements CopyOption
+{
+    /**
+     * The name of the CRC32 algorithm
+     */
+    public static final String CRC32 = "CRC32";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String algorithm;
+    private final boolean verify;
+    private final ConcurrentMap<Path, String> manifest
+        = new ConcurrentHashMap<>();
+
+    private Checksum(final String algorithm, final boolean verify)
+    {
+        this.algorithm = algorithm;
+        this.verify = verify;
+    }
+
+    /**
+     * Compute digests with a given algorithm
+     *
+     * @param algorithm {@link #CRC32}, or the name of a {@link MessageDigest}
+     * algorithm
+     * @return a new option
+     * @throws IllegalArgumentException algorithm is not available
+     */
+    @Nonnull
+    public static Checksum of(final String algorithm)
+    {
+        final Checksum checksum
+            = new Checksum(Objects.requireNonNull(algorithm), false);
+        checksum.newDigest();
+        return checksum;
+    }
+
+    /**
+     * Compute CRC32 checksums
+     *
+     * @return a new option
+     */
+    @Nonnull
+    public static Checksum crc32()
+    {
+        return new Checksum(CRC32, false);
+    }
+
+    /**
+     * Compute SHA-256 digests
+     *
+     * @return a new option
+     */
+    @Nonnull
+    public static Checksum sha256()
+    {
+        return of("SHA-256");
+    }
+
+    /**
+     * Return an option with the same algorithm, which also verifies targets
+     *
+     * @return a new option
+     */
+    @Nonnull
+    public Checksum verifying()
+    {
+        return new Checksum(algorithm, true);
+    }
+
+    /**
+     * Get the algorithm of this option
+     *
+     * @return the name of the algorithm
+     */
+    @Nonnull
+    public String getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    /**
+     * Tell whether targets are read again to be verified
+     *
+     * @return true if targets are verified
+     */
+    public boolean isVerifying()
+    {
+        return verify;
+    }
+
+    /**
+     * Create a new digest for this option's algorithm
+     *
+     * @return a new digest
+     */
+    @Nonnull
+    public MessageDigest newDigest()
+    {
+        if (algorithm.equals(CRC32))
+            return new Crc32Digest();
+
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Record the digest of a file
+     *
+     * <p>This method is called by {@link FileCopier} once a file has been
+     * copied.</p>
+     *
+     * @param source the source of the copy
+     * @param digest the digest of the file
+     */
+    public void record(final Path source, final byte[] digest)
+    {
+        manifest.put(Objects.requireNonNull(source), toHex(digest));
+    }
+
+    /**
+     * Get the digests of all the files copied so far
+     *
+     * <p>Keys of the returned map are source paths, as walked by the copy
+     * (note that {@link MoreFiles#copyRecursive(Path, Path, RecursionMode,
+     * CopyOption...)} walks the {@link Path#toRealPath(LinkOption...) real
+     * path} of its source); values are the digests, as lowercase
+     * hexadecimal strings. Files created as hard links to another copy are not
+     * listed.</p>
+     *
+     * @return a sorted copy of the manifest
+     */
+    @Nonnull
+    public Map<Path, String> getManifest()
+    {
+        return new TreeMap<>(manifest);
+    }
+
+    /**
+     * Convert a digest to a lowercase hexadecimal string
+     *
+     * @param digest the digest
+     * @return a string
+     */
+    @Nonnull
+    public static String toHex(final byte[] digest)
+    {
+        final char[] chars = new char[2 * digest.length];
+        int index = 0;
+
+        for (final byte b: digest) {
+            chars[index++] = HEX[(b >> 4) & 0xf];
+            chars[index++] = HEX[b & 0xf];
+        }
+
+        return new String(chars);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "checksum: " + algorithm + (verify ? " (verifying)" : "");
+    }
+
+    /*
+     * CRC32 as a MessageDigest; the digest is the 4 bytes of the checksum, in
+     * big endian order
+     */
+    private static final class Crc32Digest
+        extends MessageDigest
+    {
+        private final CRC32 crc = new CRC32();
+
+        private Crc32Digest()
+        {
+            super(CRC32);
+        }
+
+        @Override
+        protected void engineUpdate(final byte input)
+        {
+            crc.update(input);
+        }
+
+        @Override
+        protected void engineUpdate(final byte[] input, final int offset,
+            final int len)
+        {
+            crc.update(input, offset, len);
+        }
+
+        @Override
+        protected byte[] engineDigest()
+        {
+            final long value = crc.getValue();
+            crc.reset();
+            return new byte[] {
+                (byte) (value >> 24), (byte) (value >> 16),
+                (byte) (value >> 8), (byte) value
+            };
+        }
+
+        @Override
+        protected void engineReset()
+        {
+            crc.reset();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.copy.FileCopier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.CopyOption;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Option to make a recursive copy resumable
+ *
+ * <p>With this option, a recursive copy records in a journal file the entries
+ * it has completely copied: regular files, symbolic links, and directories
+ * whose entries have all been copied. If the copy is interrupted (the JVM
+ * dies, or the copy fails in {@link RecursionMode#FAIL_FAST fail fast} mode),
+ * running it again with a journal on the same file resumes it: the
+ * destination is not deleted, directories recorded as completed are not even
+ * walked, and recorded files are skipped. Entries of the destination which
+ * are not recorded, such as the file being copied when the copy was
+ * interrupted, are deleted and copied again. Once the copy succeeds, the
+ * journal file is deleted.</p>
+ *
+ * <p>The journal is append only; records are buffered, and written and
+ * flushed to the storage every {@link #BATCH_SIZE} records, as well as when
+ * the copy ends. At worst, the entries of the last batch are therefore copied
+ * again. Before a batch of records is flushed, the regular files it records
+ * are flushed to the storage too, so that the journal never records a file
+ * whose contents could be lost by a crash of the operating system. Only the
+ * contents are flushed, not the directories holding the files: on
+ * filesystems which do not order metadata updates after data, a crash of the
+ * operating system may still lose recently created entries.</p>
+ *
+ * <p>A journal is tied to the source and destination of the copy which
+ * created it; resuming a different copy with the same journal file fails. An
+ * instance of this class can only be used by one copy at a time. This class is
+ * thread safe.</p>
+ *
+ * @see MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)
+ * @see FileCopier
+ */
+@ParametersAreNonnullByDefault
+public final class CopyJournal
+    implements CopyOption
+{
+    /**
+     * The number of records written to the journal file at once
+     */
+    public static final int BATCH_SIZE = 256;
+
+    private static final byte SEPARATOR = 0;
+
+    private final Path file;
+    private final Set<String> completed
+        = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final List<Path> pendingTargets = new ArrayList<>();
+
+    private Path src = null;
+    private FileChannel channel = null;
+    private int pendingRecords = 0;
+    private boolean resuming = false;
+
+    private CopyJournal(final Path file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Keep the journal of a copy in a file
+     *
+     * @param file the journal file
+     * @return a new option
+     */
+    @Nonnull
+    public static CopyJournal at(final Path file)
+    {
+        return new CopyJournal(Objects.requireNonNull(file));
+    }
+
+    /**
+     * Get the journal file
+     *
+     * @return the journal file
+     */
+    @Nonnull
+    public Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Tell whether the copy using this journal resumes an interrupted copy
+     *
+     * @return true if the journal file existed when the copy started
+     */
+    public synchronized boolean isResuming()
+    {
+        return resuming;
+    }
+
+    /**
+     * Tell whether an entry was completely copied by an earlier run of the
+     * copy
+     *
+     * @param source the source entry
+     * @return true if the entry is recorded in the journal
+     */
+    public boolean isCompleted(final Path source)
+    {
+        return !completed.isEmpty()
+            && completed.contains(relativize(source));
+    }
+
+    /**
+     * Record that an entry has been completely copied
+     *
+     * <p>This method is called by copy visitors once all entries of a
+     * directory have been copied.</p>
+     *
+     * @param source the source entry
+     * @throws IOException failed to write to the journal file
+     */
+    public void completed(final Path source)
+        throws IOException
+    {
+        completed(source, null);
+    }
+
+    /**
+     * Record that an entry has been completely copied to a target
+     *
+     * <p>This method is called by {@link FileCopier} once an entry other than
+     * a directory has been copied. If the target is a regular file, it is
+     * flushed to the storage before the record is.</p>
+     *
+     * @param source the source entry
+     * @param target the target of the copy, or {@code null}
+     * @throws IOException failed to flush the target, or to write to the
+     * journal file
+     */
+    public synchronized void completed(final Path source,
+        @Nullable final Path target)
+        throws IOException
+    {
+        if (channel == null)
+            throw new IllegalStateException("journal is not open");
+
+        writeRecord(relativize(source));
+        if (target != null)
+            pendingTargets.add(target);
+        if (++pendingRecords >= BATCH_SIZE)
+            flush();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "journal: " + file;
+    }
+
+    /*
+     * Open the journal for a copy, reading the records of an interrupted copy
+     * if the journal file exists.
+     *
+     * The first two records are the source and destination of the copy. A
+     * record whose separator is missing was torn by a crash; it is ignored,
+     * and truncated from the file before new records are appended.
+     */
+    synchronized void open(final Path source, final Path destination)
+        throws IOException
+    {
+        if (channel != null)
+            throw new IllegalStateException("journal is already open");
+
+        src = source;
+        completed.clear();
+        pending.reset();
+        pendingTargets.clear();
+        pendingRecords = 0;
+        resuming = Files.exists(file);
+
+        if (!resuming) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+            writeRecord(source.toString());
+            writeRecord(destination.toString());
+            flush();
+            return;
+        }
+
+        final byte[] data = Files.readAllBytes(file);
+        int start = 0;
+        int records = 0;
+
+        for (int index = 0; index < data.length; index++) {
+            if (data[index] != SEPARATOR)
+                continue;
+            final String record = new String(data, start, index - start,
+                StandardCharsets.UTF_8);
+            if (records == 0 && !record.equals(source.toString())
+                || records == 1 && !record.equals(destination.toString()))
+                throw new FileSystemException(file.toString(), null,
+                    "journal of another copy");
+            if (records >= 2)
+                completed.add(record);
+            records++;
+            start = index + 1;
+        }
+
+        if (records < 2)
+            throw new FileSystemException(file.toString(), null,
+                "corrupt journal");
+
+        channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        channel.truncate(start);
+        channel.position(start);
+    }
+
+    /*
+     * Flush pending records and close the journal; the journal file is
+     * deleted instead if it is no longer needed.
+     */
+    synchronized void close(final boolean discard)
+        throws IOException
+    {
+        if (channel == null)
+            return;
+
+        try {
+            if (!discard)
+                flush();
+        } finally {
+            channel.close();
+            channel = null;
+            completed.clear();
+            pendingTargets.clear();
+        }
+
+        if (discard)
+            Files.delete(file);
+    }
+
+    private String relativize(final Path source)
+    {
+        if (src == null)
+            throw new IllegalStateException("journal is not open");
+        return src.relativize(source).toString();
+    }
+
+    private void writeRecord(final String record)
+    {
+        final byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        pending.write(bytes, 0, bytes.length);
+        pending.write(SEPARATOR);
+    }
+
+    /*
+     * Flush the targets of the pending records first, then the records
+     */
+    private void flush()
+        throws IOException
+    {
+        for (final Path target: pendingTargets)
+            force(target);
+        pendingTargets.clear();
+
+        final ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        channel.force(false);
+        pending.reset();
+        pendingRecords = 0;
+    }
+
+    /*
+     * Some platforms require write access to flush a file; opening it for
+     * writing without other options does not modify it. Targets made read
+     * only by COPY_ATTRIBUTES are opened for reading instead, which is enough
+     * on POSIX systems.
+     */
+    private static void force(final Path target)
+        throws IOException
+    {
+        if (!Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS))
+            return;
+
+        try (
+            final FileChannel targetChannel = openForFlush(target);
+        ) {
+            targetChannel.force(true);
+        }
+    }
+
+    private static FileChannel openForFlush(final Path target)
+        throws IOException
+    {
+        try {
+            return FileChannel.open(target, StandardOpenOption.WRITE);
+        } catch (AccessDeniedException ignored) {
+            return FileChannel.open(target, StandardOpenOption.READ);
+        }
+    }
+}
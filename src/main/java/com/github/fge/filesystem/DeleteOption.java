@@ -0,0 +1,15 @@
+package com.github.fge.filesystem;
+
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+
+/**
+ * An object that configures how to delete a path recursively
+ *
+ * <p>This is the deletion counterpart of {@link CopyOption}.</p>
+ *
+ * @see MoreFiles#deleteRecursive(Path, RecursionMode, DeleteOption...)
+ */
+public interface DeleteOption
+{
+}
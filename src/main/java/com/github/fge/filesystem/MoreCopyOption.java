@@ -0,0 +1,101 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.copy.FileCopier;
+
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Additional copy options for recursive copies
+ *
+ * @see MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)
+ * @see FileCopier
+ */
+public enum MoreCopyOption
+    implements CopyOption
+{
+    /**
+     * Delete entries in the destination which do not exist in the source
+     *
+     * <p>This option is only supported by {@link MoreFiles#syncRecursive(Path,
+     * Path, RecursionMode, CopyOption...)}.</p>
+     */
+    DELETE_EXTRANEOUS,
+    /**
+     * Compare file contents instead of modification times
+     *
+     * <p>By default, {@link MoreFiles#syncRecursive(Path, Path, RecursionMode,
+     * CopyOption...)} considers that a file is unchanged if its size and last
+     * modification time are the same in the source and destination. With this
+     * option, a file is considered unchanged if its size and contents are the
+     * same. This option is only supported by this method.</p>
+     */
+    COMPARE_CONTENTS,
+    /**
+     * Preserve holes in sparse files
+     *
+     * <p>With this option, files are copied by blocks, and blocks which only
+     * contain zeroes are not written to the destination; instead, the write
+     * position is moved past them, which leaves a hole in the destination on
+     * filesystems which support sparse files. Note that this means that blocks
+     * of zeroes are turned into holes even if they were allocated in the
+     * source.</p>
+     */
+    SPARSE,
+    /**
+     * Preserve hard links between files of the source
+     *
+     * <p>With this option, when a file of the source has several names in the
+     * tree being copied, it is only copied once; the other names are created
+     * as hard links to this copy in the destination. Files are identified
+     * using their {@link BasicFileAttributes#fileKey() file key}, and their
+     * number of names is read from the {@code unix:nlink} attribute; if the
+     * source filesystem does not support either, this option has no
+     * effect.</p>
+     *
+     * <p>Names outside of the tree being copied are not taken into
+     * account.</p>
+     *
+     * <p>This option is only supported by {@link MoreFiles#copyRecursive(Path,
+     * Path, RecursionMode, CopyOption...)}.</p>
+     */
+    PRESERVE_HARD_LINKS,
+    /**
+     * Skip special files
+     *
+     * <p>Special files (named pipes, sockets, devices...) cannot be created
+     * using the API; by default, a recursive copy fails with an {@link
+     * UnsupportedOperationException} if it encounters one. With this option,
+     * they are skipped instead.</p>
+     *
+     * <p>This option is only supported by {@link MoreFiles#copyRecursive(Path,
+     * Path, RecursionMode, CopyOption...)}.</p>
+     *
+     * @see BasicFileAttributes#isOther()
+     */
+    SKIP_SPECIAL_FILES,
+    /**
+     * Copy into a staging directory, and atomically rename it into place
+     *
+     * <p>With this option, the tree is copied into a new hidden directory
+     * created next to the destination, and therefore on the same {@link
+     * java.nio.file.FileStore}; once the copy succeeds, this directory is
+     * renamed to the destination using {@link StandardCopyOption#ATOMIC_MOVE}.
+     * Other processes therefore either see no destination, or a complete copy.
+     * If the copy fails, the staging directory is deleted recursively.</p>
+     *
+     * <p>With {@link StandardCopyOption#REPLACE_EXISTING}, the rename replaces
+     * the destination atomically; as a rename can only replace an entry of the
+     * same kind, and not a non empty directory, this only allows to replace a
+     * file by a file, or an empty directory by a directory. Other destinations
+     * are rejected before copying. This option cannot be combined with a
+     * {@link CopyJournal}.</p>
+     *
+     * <p>This option is only supported by {@link MoreFiles#copyRecursive(Path,
+     * Path, RecursionMode, CopyOption...)}.</p>
+     */
+    ATOMIC_STAGING,
+    ;
+}
@@ -1,22 +1,44 @@
 package com.github.fge.filesystem;
 
 import com.github.fge.filesystem.copy.FailFastCopyVisitor;
+import com.github.fge.filesystem.copy.FileCopier;
 import com.github.fge.filesystem.copy.KeepGoingCopyVisitor;
+import com.github.fge.filesystem.copy.SyncReport;
+import com.github.fge.filesystem.copy.SyncVisitor;
 import com.github.fge.filesystem.deletion.FailFastDeletionVisitor;
 import com.github.fge.filesystem.deletion.KeepGoingDeletionVisitor;
+import com.github.fge.filesystem.deletion.SecureDirectoryDeleter;
 import com.github.fge.filesystem.exceptions.InvalidIntModeException;
+import com.github.fge.filesystem.exceptions.InvalidModeInstructionException;
+import com.github.fge.filesystem.exceptions.RecursiveChangeModeException;
 import com.github.fge.filesystem.exceptions.RecursiveCopyException;
 import com.github.fge.filesystem.exceptions.RecursiveDeletionException;
+import com.github.fge.filesystem.exceptions.RecursiveOperationException;
+import com.github.fge.filesystem.posix.ChangeModeVisitor;
 import com.github.fge.filesystem.posix.ModeParser;
 import com.github.fge.filesystem.posix.PermissionsSet;
 import com.github.fge.filesystem.posix.PosixModes;
+import com.github.fge.filesystem.progress.ProgressCounters;
+import com.github.fge.filesystem.progress.ProgressListener;
+import com.github.fge.filesystem.snapshot.SnapshotEntry;
+import com.github.fge.filesystem.snapshot.TreeDiff;
+import com.github.fge.filesystem.snapshot.TreeSnapshot;
+import com.github.fge.filesystem.usage.DiskUsage;
+import com.github.fge.filesystem.usage.DiskUsageVisitor;
+import com.github.fge.filesystem.walk.CancellableFileVisitor;
+import com.github.fge.filesystem.walk.ParallelTreeWalker;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.CopyOption;
 import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
@@ -24,14 +46,23 @@ import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
@@ -44,6 +75,13 @@ import java.util.Set;
 @ParametersAreNonnullByDefault
 public final class MoreFiles
 {
+    /*
+     * The permissions stripped by usual umasks (022, 002, 027, 007)
+     */
+    private static final Set<PosixFilePermission> USUALLY_MASKED
+        = EnumSet.of(PosixFilePermission.GROUP_WRITE,
+            PosixFilePermission.OTHERS_READ, PosixFilePermission.OTHERS_WRITE,
+            PosixFilePermission.OTHERS_EXECUTE);
 
     private MoreFiles()
     {
@@ -55,10 +93,12 @@ public final class MoreFiles
      *
      * <p>This command will work even across filesystems.</p>
      *
-     * <p>Note that this command only supports directories and files. If the
-     * source is a symbolic link, though, it will be followed (see {@link
-     * Path#toRealPath(LinkOption...)}). Any symbolic link encountered during
-     * a copy will trigger an {@link UnsupportedOperationException}.</p>
+     * <p>If the source is a symbolic link, it will be followed (see {@link
+     * Path#toRealPath(LinkOption...)}). By default, this command only supports
+     * directories and regular files, and any other entry encountered during a
+     * copy will trigger an {@link UnsupportedOperationException}; use a {@link
+     * SymbolicLinkMode} option to copy, follow or skip symbolic links, and
+     * {@link MoreCopyOption#SKIP_SPECIAL_FILES} to skip special files.</p>
      *
      * <p>There are two recursion modes: {@link RecursionMode#FAIL_FAST fail
      * fast} and {@link RecursionMode#KEEP_GOING keep going}. In the first mode,
@@ -66,10 +106,40 @@ public final class MoreFiles
      * thrown. In the second mode, the copy will continue even if one or more
      * errors are encountered and this method will throw a {@link
      * RecursiveCopyException}. The list of exceptions which occured during the
-     * copy operations are available via {@link Throwable#getSuppressed()}.</p>
+     * copy operations are available via {@link Throwable#getSuppressed()}; on
+     * very large trees, only the first ones are kept (see {@link
+     * RecursiveOperationException}).</p>
+     *
+     * <p>The copy can be run in parallel by passing a {@link Parallelism}
+     * option; in this case, the tree is walked using a {@link
+     * ParallelTreeWalker} and files are copied concurrently. The recursion mode
+     * semantics are the same; note however that in fail fast mode, copies
+     * which were already underway when the first error occurred will
+     * complete.</p>
+     *
+     * <p>With {@link StandardCopyOption#COPY_ATTRIBUTES}, the permissions,
+     * owner, group and times of files and directories are preserved; the
+     * attributes of a directory are applied once all of its entries have been
+     * copied, so that its last modification time is not altered by the
+     * copy.</p>
+     *
+     * <p>With a {@link CopyJournal}, the copy can be resumed if it is
+     * interrupted: if the journal file exists when the copy starts, the
+     * destination is kept, and the entries recorded by the interrupted run are
+     * not copied again.</p>
+     *
+     * <p>With {@link MoreCopyOption#ATOMIC_STAGING}, the tree is copied into a
+     * staging directory next to the destination, which is atomically renamed
+     * to the destination once the copy succeeds, and deleted if it fails.</p>
      *
-     * <p>The only supported {@link CopyOption copy option} is {@link
-     * StandardCopyOption#REPLACE_EXISTING}.</p>
+     * <p>The supported {@link CopyOption copy options} are {@link
+     * StandardCopyOption#REPLACE_EXISTING}, {@link
+     * StandardCopyOption#COPY_ATTRIBUTES}, {@link Parallelism}, {@link
+     * MoreCopyOption#SPARSE}, {@link MoreCopyOption#PRESERVE_HARD_LINKS},
+     * {@link MoreCopyOption#SKIP_SPECIAL_FILES}, {@link
+     * MoreCopyOption#ATOMIC_STAGING}, {@link SymbolicLinkMode}, {@link
+     * ProgressListener}, {@link RateLimit}, {@link Checksum} and {@link
+     * CopyJournal}. Files are copied using a {@link FileCopier}.</p>
      *
      * @param source the source to copy (either a file or a directory)
      * @param destination the destination
@@ -78,7 +148,8 @@ public final class MoreFiles
      * @throws NoSuchFileException source does not exist; or a parent of the
      * destination does not exist when attempting to create the destination
      * @throws UnsupportedOperationException unsupported copy option; or a
-     * symbolic link was encountered during copy
+     * symbolic link or special file was encountered during copy, and no option
+     * was given to handle it
      * @throws FileAlreadyExistsException {@link
      * StandardCopyOption#REPLACE_EXISTING} was not specified, and the
      * destination path already exists
@@ -92,39 +163,267 @@ public final class MoreFiles
      *
      * @see MorePaths#resolve(Path, Path)
      * @see Files#walkFileTree(Path, FileVisitor)
-     * @see Files#copy(Path, Path, CopyOption...)
+     * @see FileCopier
      * @see FailFastCopyVisitor
      * @see KeepGoingCopyVisitor
+     * @see Parallelism
      */
     public static void copyRecursive(final Path source, final Path destination,
         final RecursionMode mode, final CopyOption... options)
         throws IOException
+    {
+        doCopyRecursive(source, destination, mode, null, options);
+    }
+
+    /**
+     * Recursively copy a source to a destination, asynchronously
+     *
+     * <p>This method returns immediately; the copy is submitted to the given
+     * executor and runs as {@link #copyRecursive(Path, Path, RecursionMode,
+     * CopyOption...)} would. The returned future can be used to wait for the
+     * copy to complete, monitor its progress, or cancel it.</p>
+     *
+     * @param source the source to copy (either a file or a directory)
+     * @param destination the destination
+     * @param mode the recursion mode
+     * @param executor the executor to run the copy on
+     * @param options the set of copy options
+     * @return a future for the copy
+     *
+     * @see RecursiveOperationFuture
+     */
+    @Nonnull
+    public static RecursiveOperationFuture copyRecursiveAsync(
+        final Path source, final Path destination, final RecursionMode mode,
+        final Executor executor, final CopyOption... options)
+    {
+        Objects.requireNonNull(source);
+        Objects.requireNonNull(destination);
+        Objects.requireNonNull(mode);
+        Objects.requireNonNull(executor);
+
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final ProgressCounters progress = new ProgressCounters();
+        final CopyOption[] allOptions = Arrays.copyOf(options,
+            options.length + 1, CopyOption[].class);
+        allOptions[options.length] = withProgress(options, progress);
+
+        final Callable<Void> callable = new Callable<Void>()
+        {
+            @Override
+            public Void call()
+                throws IOException
+            {
+                doCopyRecursive(source, destination, mode, cancelled,
+                    allOptions);
+                return null;
+            }
+        };
+
+        final RecursiveOperationFuture future
+            = new RecursiveOperationFuture(callable, cancelled, progress);
+        executor.execute(future);
+        return future;
+    }
+
+    private static void doCopyRecursive(final Path source,
+        final Path destination, final RecursionMode mode,
+        @Nullable final AtomicBoolean cancelled, final CopyOption... options)
+        throws IOException
     {
         Objects.requireNonNull(mode);
 
         boolean replace = false;
+        boolean staging = false;
+        Parallelism parallelism = null;
+        ProgressListener listener = ProgressListener.NONE;
+        CopyJournal journal = null;
+        final Set<FileVisitOption> walkOptions
+            = EnumSet.noneOf(FileVisitOption.class);
 
         for (final CopyOption option: options) {
             Objects.requireNonNull(option);
             if (option == StandardCopyOption.REPLACE_EXISTING)
                 replace = true;
+            else if (option instanceof CopyJournal)
+                journal = (CopyJournal) option;
+            else if (option == MoreCopyOption.ATOMIC_STAGING)
+                staging = true;
+            else if (option == SymbolicLinkMode.FOLLOW)
+                walkOptions.add(FileVisitOption.FOLLOW_LINKS);
+            else if (option instanceof Parallelism)
+                parallelism = (Parallelism) option;
+            else if (option instanceof ProgressListener)
+                listener = (ProgressListener) option;
+            else if (!isFileCopierOption(option))
+                throw new UnsupportedOperationException(option.toString());
         }
 
-        // We only support one option; array must be empty or have one element
-        if (options.length > 1)
-            throw new UnsupportedOperationException();
+        final FileCopier copier = new FileCopier(options);
 
         // This will throw NoSuchFileException for us if source does not exist
         final Path src = Objects.requireNonNull(source).toRealPath();
         final Path dst = Objects.requireNonNull(destination).toAbsolutePath();
 
+        if (staging) {
+            if (journal != null)
+                throw new UnsupportedOperationException(
+                    MoreCopyOption.ATOMIC_STAGING + " with " + journal);
+            stagedCopy(src, destination, dst, mode, replace, copier,
+                walkOptions, listener, parallelism, cancelled);
+            return;
+        }
+
+        if (journal == null) {
+            prepareDestination(destination, dst, replace);
+            copyTree(src, dst, mode, copier, walkOptions, listener,
+                parallelism, cancelled);
+            return;
+        }
+
+        /*
+         * When resuming, the destination is what the interrupted copy left
+         * over. If the copy fails before it starts, the journal is discarded,
+         * so that a later copy does not take the destination for its own.
+         */
+        journal.open(src, dst);
+        boolean started = false;
+        boolean success = false;
+        try {
+            if (!journal.isResuming())
+                prepareDestination(destination, dst, replace);
+            started = true;
+            copyTree(src, dst, mode, copier, walkOptions, listener,
+                parallelism, cancelled);
+            success = true;
+        } finally {
+            journal.close(success || !started);
+        }
+    }
+
+    /*
+     * Copy into a new sibling of the destination, and rename it into place.
+     *
+     * If the source is a directory, the staging directory is created with
+     * createDirectory() rather than createTempDirectory(), so that it has the
+     * same permissions as a directory created by a plain copy. If it is a
+     * file, only a free name is reserved, since the copy creates its target.
+     */
+    private static void stagedCopy(final Path src, final Path destination,
+        final Path dst, final RecursionMode mode, final boolean replace,
+        final FileCopier copier, final Set<FileVisitOption> walkOptions,
+        final ProgressListener listener,
+        @Nullable final Parallelism parallelism,
+        @Nullable final AtomicBoolean cancelled)
+        throws IOException
+    {
+        final Path parent = dst.getParent();
+
+        if (parent == null)
+            throw new FileAlreadyExistsException(destination.toString());
+
+        if (Files.exists(dst, LinkOption.NOFOLLOW_LINKS) && !replace)
+            throw new FileAlreadyExistsException(destination.toString());
+
+        final boolean directory = Files.isDirectory(src,
+            LinkOption.NOFOLLOW_LINKS);
+
+        /*
+         * A rename cannot replace an entry of another kind, nor a non empty
+         * directory: fail before copying
+         */
+        if (Files.exists(dst, LinkOption.NOFOLLOW_LINKS)
+            && Files.isDirectory(dst, LinkOption.NOFOLLOW_LINKS) != directory)
+            throw new FileAlreadyExistsException(destination.toString(), null,
+                "cannot replace an entry of another kind");
+
+        if (directory && Files.isDirectory(dst, LinkOption.NOFOLLOW_LINKS))
+            try (
+                final DirectoryStream<Path> stream
+                    = Files.newDirectoryStream(dst);
+            ) {
+                if (stream.iterator().hasNext())
+                    throw new DirectoryNotEmptyException(
+                        destination.toString());
+            }
+
+        final Path staging = createStaging(parent,
+            dst.getFileName().toString(), directory);
+
+        try {
+            // Throws if the copy was cancelled, so that it is not published
+            copyTree(src, staging, mode, copier, walkOptions, listener,
+                parallelism, cancelled);
+            if (!replace)
+                Files.move(staging, dst, StandardCopyOption.ATOMIC_MOVE);
+            else
+                // Replaces a file, or an empty directory, in one rename
+                Files.move(staging, dst, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            discardStaging(staging, e);
+            throw e;
+        }
+    }
+
+    private static Path createStaging(final Path parent, final String name,
+        final boolean directory)
+        throws IOException
+    {
+        final Random random = ThreadLocalRandom.current();
+        Path staging;
+
+        while (true) {
+            staging = parent.resolve('.' + name + ".staging-"
+                + Long.toString(random.nextLong() >>> 1, 36));
+            if (!directory) {
+                if (!Files.exists(staging, LinkOption.NOFOLLOW_LINKS))
+                    return staging;
+                continue;
+            }
+            try {
+                return Files.createDirectory(staging);
+            } catch (FileAlreadyExistsException ignored) {
+                // Try another name
+            }
+        }
+    }
+
+    private static void discardStaging(final Path staging,
+        final Throwable failure)
+    {
+        try {
+            deleteRecursive(staging, RecursionMode.KEEP_GOING);
+        } catch (NoSuchFileException ignored) {
+            // Already moved into place, or never created
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static void prepareDestination(final Path destination,
+        final Path dst, final boolean replace)
+        throws IOException
+    {
         if (Files.exists(dst, LinkOption.NOFOLLOW_LINKS) && !replace)
             throw new FileAlreadyExistsException(destination.toString());
 
         Files.deleteIfExists(dst);
+    }
 
+    private static void copyTree(final Path src, final Path dst,
+        final RecursionMode mode, final FileCopier copier,
+        final Set<FileVisitOption> walkOptions,
+        final ProgressListener listener,
+        @Nullable final Parallelism parallelism,
+        @Nullable final AtomicBoolean cancelled)
+        throws IOException
+    {
         if (mode == RecursionMode.FAIL_FAST) {
-            Files.walkFileTree(src, new FailFastCopyVisitor(src, dst));
+            walk(src, walkOptions,
+                new FailFastCopyVisitor(src, dst, copier, listener),
+                parallelism, cancelled);
+            checkCancelled(cancelled);
             return;
         }
 
@@ -133,11 +432,276 @@ public final class MoreFiles
             throw new IllegalStateException();
 
         final RecursiveCopyException e = new RecursiveCopyException();
-        final FileVisitor<Path> visitor = new KeepGoingCopyVisitor(src, dst, e);
+        final FileVisitor<Path> visitor
+            = new KeepGoingCopyVisitor(src, dst, e, copier, listener);
+
+        walk(src, walkOptions, visitor, parallelism, cancelled);
+        checkCancelled(cancelled);
+        if (e.getFailureCount() != 0L)
+            throw e;
+    }
+
+    /*
+     * A cancelled walk terminates normally; report the cancellation as a
+     * failure, so that an incomplete copy is never taken for a complete one
+     * (a journal is kept, for instance).
+     */
+    private static void checkCancelled(@Nullable final AtomicBoolean cancelled)
+        throws InterruptedIOException
+    {
+        if (cancelled != null && cancelled.get())
+            throw new InterruptedIOException("copy cancelled");
+    }
 
-        Files.walkFileTree(src, visitor);
-        if (e.getSuppressed().length != 0)
+    /**
+     * Synchronize a destination with a source, recursively
+     *
+     * <p>Unlike {@link #copyRecursive(Path, Path, RecursionMode,
+     * CopyOption...)}, this method accepts an existing destination, and only
+     * copies files which are missing from the destination or have changed; see
+     * {@link SyncVisitor} for the details. Symbolic links are copied or
+     * skipped according to the {@link SymbolicLinkMode} option; special files,
+     * and symbolic links if no such option was given, are reported as
+     * failures.</p>
+     *
+     * <p>The supported {@link CopyOption copy options} are {@link
+     * Parallelism}, {@link MoreCopyOption#SPARSE}, {@link
+     * MoreCopyOption#DELETE_EXTRANEOUS}, {@link
+     * MoreCopyOption#COMPARE_CONTENTS}, {@link SymbolicLinkMode#COPY}, {@link
+     * SymbolicLinkMode#SKIP}, {@link ProgressListener}, {@link RateLimit} and
+     * {@link Checksum}.</p>
+     *
+     * @param source the source to synchronize from
+     * @param destination the destination
+     * @param mode the recursion mode
+     * @param options the set of copy options
+     * @return a report of the operations performed
+     * @throws NoSuchFileException source does not exist
+     * @throws UnsupportedOperationException unsupported copy option
+     * @throws FileSystemException {@link RecursionMode#FAIL_FAST} was
+     * specified, and an entry which cannot be synchronized was encountered
+     * @throws RecursiveCopyException {@link RecursionMode#KEEP_GOING} was
+     * specified, however one or more errors were encountered during the
+     * synchronization
+     * @throws IOException other I/O errors
+     *
+     * @see SyncVisitor
+     * @see SyncReport
+     */
+    @Nonnull
+    public static SyncReport syncRecursive(final Path source,
+        final Path destination, final RecursionMode mode,
+        final CopyOption... options)
+        throws IOException
+    {
+        Objects.requireNonNull(mode);
+
+        Parallelism parallelism = null;
+
+        for (final CopyOption option: options) {
+            Objects.requireNonNull(option);
+            if (option instanceof Parallelism)
+                parallelism = (Parallelism) option;
+            else if (!(option == MoreCopyOption.SPARSE
+                || option == MoreCopyOption.DELETE_EXTRANEOUS
+                || option == MoreCopyOption.COMPARE_CONTENTS
+                || option == SymbolicLinkMode.COPY
+                || option == SymbolicLinkMode.SKIP
+                || option instanceof ProgressListener
+                || option instanceof RateLimit
+                || option instanceof Checksum))
+                throw new UnsupportedOperationException(option.toString());
+        }
+
+        final Path src = Objects.requireNonNull(source).toRealPath();
+        final Path dst = Objects.requireNonNull(destination).toAbsolutePath();
+        final SyncReport report = new SyncReport();
+
+        if (mode == RecursionMode.FAIL_FAST) {
+            walk(src, new SyncVisitor(src, dst, report, null, options),
+                parallelism);
+            return report;
+        }
+
+        // Cannot happen in theory, but...
+        if (mode != RecursionMode.KEEP_GOING)
+            throw new IllegalStateException();
+
+        final RecursiveCopyException e = new RecursiveCopyException();
+        walk(src, new SyncVisitor(src, dst, report, e, options), parallelism);
+        if (e.getFailureCount() != 0L)
             throw e;
+        return report;
+    }
+
+    /**
+     * Compute the disk usage of a file tree
+     *
+     * <p>The tree is walked with the same engine as {@link
+     * #copyRecursive(Path, Path, RecursionMode, CopyOption...)}, and this
+     * method accepts the same options, so that it can be used to estimate a
+     * copy before running it: the tree can be walked in parallel by passing a
+     * {@link Parallelism} option, and symbolic links are followed if {@link
+     * SymbolicLinkMode#FOLLOW} is passed. Other copy options are ignored.</p>
+     *
+     * <p>Files with several names are only counted once, and entries which
+     * cannot be read are counted as failures instead of stopping the walk;
+     * see {@link DiskUsage} for the details.</p>
+     *
+     * @param root the root of the tree
+     * @param options the set of copy options
+     * @return the disk usage of the tree
+     * @throws NoSuchFileException root does not exist
+     * @throws UnsupportedOperationException unsupported copy option
+     * @throws IOException other I/O errors
+     *
+     * @see DiskUsageVisitor
+     */
+    @Nonnull
+    public static DiskUsage sizeOf(final Path root, final CopyOption... options)
+        throws IOException
+    {
+        Objects.requireNonNull(root);
+
+        Parallelism parallelism = null;
+        final Set<FileVisitOption> walkOptions
+            = EnumSet.noneOf(FileVisitOption.class);
+
+        for (final CopyOption option: options) {
+            Objects.requireNonNull(option);
+            if (option == SymbolicLinkMode.FOLLOW)
+                walkOptions.add(FileVisitOption.FOLLOW_LINKS);
+            else if (option instanceof Parallelism)
+                parallelism = (Parallelism) option;
+            else if (!(option == StandardCopyOption.REPLACE_EXISTING
+                || option == MoreCopyOption.ATOMIC_STAGING
+                || option instanceof ProgressListener
+                || option instanceof CopyJournal
+                || isFileCopierOption(option)))
+                throw new UnsupportedOperationException(option.toString());
+        }
+
+        // This will throw NoSuchFileException for us if root does not exist
+        Files.readAttributes(root, BasicFileAttributes.class,
+            LinkOption.NOFOLLOW_LINKS);
+
+        final DiskUsageVisitor visitor = new DiskUsageVisitor(root,
+            !walkOptions.isEmpty());
+        walk(root, walkOptions, visitor, parallelism, null);
+        return visitor.getUsage();
+    }
+
+    /**
+     * Apply the differences computed between two states of a source tree to
+     * a destination
+     *
+     * <p>This method is meant to bring up to date a destination which was
+     * a copy of the source at the time of the {@link TreeDiff older state};
+     * only the entries listed in the diff are touched. Removed entries are
+     * deleted from the destination first, deepest entries first; then added
+     * and modified entries are copied from the source, parents first. An
+     * entry of the destination whose kind differs from the source is deleted
+     * first; other modified entries are copied to a temporary name, then moved
+     * over the destination entry, which is therefore left untouched if the
+     * copy fails. Entries listed in the diff which no longer exist in the
+     * source are ignored.</p>
+     *
+     * <p>The recursion modes have the same semantics as with {@link
+     * #copyRecursive(Path, Path, RecursionMode, CopyOption...)}.</p>
+     *
+     * <p>The supported {@link CopyOption copy options} are {@link
+     * StandardCopyOption#COPY_ATTRIBUTES}, {@link MoreCopyOption#SPARSE},
+     * {@link MoreCopyOption#PRESERVE_HARD_LINKS}, {@link
+     * MoreCopyOption#SKIP_SPECIAL_FILES}, {@link SymbolicLinkMode#COPY}, {@link
+     * SymbolicLinkMode#SKIP}, {@link RateLimit} and {@link Checksum}. Files are
+     * copied using a {@link FileCopier}. Since diffs list symbolic links as
+     * links, {@link SymbolicLinkMode#FOLLOW} is not supported.</p>
+     *
+     * @param source the source tree
+     * @param destination the destination tree
+     * @param diff the differences to apply
+     * @param mode the recursion mode
+     * @param options the set of copy options
+     * @throws NoSuchFileException source does not exist
+     * @throws UnsupportedOperationException unsupported copy option; or a
+     * symbolic link or special file is to be copied, and no option was given
+     * to handle it
+     * @throws RecursiveCopyException {@link RecursionMode#KEEP_GOING} was
+     * specified, however one or more errors were encountered
+     * @throws IOException other I/O errors
+     *
+     * @see TreeSnapshot
+     */
+    public static void applyDiff(final Path source, final Path destination,
+        final TreeDiff diff, final RecursionMode mode,
+        final CopyOption... options)
+        throws IOException
+    {
+        Objects.requireNonNull(diff);
+        Objects.requireNonNull(mode);
+
+        for (final CopyOption option: options)
+            if (!isFileCopierOption(Objects.requireNonNull(option))
+                || option == SymbolicLinkMode.FOLLOW)
+                throw new UnsupportedOperationException(option.toString());
+
+        if (mode != RecursionMode.FAIL_FAST
+            && mode != RecursionMode.KEEP_GOING)
+            throw new IllegalStateException();
+
+        final FileCopier copier = new FileCopier(options);
+        final Path src = Objects.requireNonNull(source).toRealPath();
+        final Path dst = Objects.requireNonNull(destination).toAbsolutePath();
+        final RecursiveCopyException exception = new RecursiveCopyException();
+
+        final List<String> removed = diff.getRemoved();
+        for (int index = removed.size() - 1; index >= 0; index--)
+            try {
+                Files.deleteIfExists(dst.resolve(removed.get(index)));
+            } catch (IOException e) {
+                if (mode == RecursionMode.FAIL_FAST)
+                    throw e;
+                exception.addFailure(e);
+            }
+
+        final List<String> added = diff.getAdded();
+        final List<String> modified = diff.getModified();
+        final List<Path> directories = new ArrayList<>();
+        int addedIndex = 0;
+        int modifiedIndex = 0;
+        String path;
+
+        while (addedIndex < added.size() || modifiedIndex < modified.size()) {
+            if (modifiedIndex == modified.size()
+                || addedIndex < added.size()
+                && SnapshotEntry.comparePaths(added.get(addedIndex),
+                modified.get(modifiedIndex)) < 0)
+                path = added.get(addedIndex++);
+            else
+                path = modified.get(modifiedIndex++);
+            try {
+                applyEntry(copier, src.resolve(path), dst.resolve(path),
+                    directories);
+            } catch (IOException e) {
+                if (mode == RecursionMode.FAIL_FAST)
+                    throw e;
+                exception.addFailure(e);
+            }
+        }
+
+        for (int index = directories.size() - 1; index >= 0; index--)
+            try {
+                final Path dir = directories.get(index);
+                copier.directoryCompleted(dir,
+                    dst.resolve(src.relativize(dir)));
+            } catch (IOException e) {
+                if (mode == RecursionMode.FAIL_FAST)
+                    throw e;
+                exception.addFailure(e);
+            }
+
+        if (exception.getFailureCount() != 0L)
+            throw exception;
     }
 
     /**
@@ -152,11 +716,28 @@ public final class MoreFiles
      * exception. In the second mode, deletion will continue, and this method
      * will throw a {@link RecursiveDeletionException}. The list of exceptions
      * encountered during the deletion operation is available using {@link
-     * Throwable#getSuppressed()}.</p>
+     * Throwable#getSuppressed()}; on very large trees, only the first ones are
+     * kept (see {@link RecursiveOperationException}).</p>
+     *
+     * <p>The deletion can be run in parallel by passing a {@link Parallelism}
+     * option: sibling subtrees are then deleted concurrently, and a directory
+     * is only deleted once all of its entries are gone. The recursion mode
+     * semantics are the same.</p>
+     *
+     * <p>When run sequentially, the deletion is performed using a {@link
+     * SecureDirectoryDeleter} if the filesystem supports it, and using
+     * deletion visitors otherwise.</p>
+     *
+     * <p>The progress of the deletion can be monitored by passing a {@link
+     * ProgressListener} option, and its rate can be limited by passing a {@link
+     * RateLimit#filesPerSecond(long) files per second} limit; each entry
+     * deleted counts as one file.</p>
      *
      * @param victim the victim
      * @param mode the recursion mode (see description)
+     * @param options the set of deletion options
      * @throws NoSuchFileException victim does not exist (lucky you)
+     * @throws UnsupportedOperationException unsupported deletion option
      * @throws RecursiveDeletionException {@link RecursionMode#KEEP_GOING} was
      * specified, and one or more errors were encountered during the deletion
      * operation (see description)
@@ -164,14 +745,92 @@ public final class MoreFiles
      *
      * @see FailFastDeletionVisitor
      * @see KeepGoingDeletionVisitor
+     * @see SecureDirectoryDeleter
+     * @see Parallelism
      * @see Files#delete(Path)
      */
     public static void deleteRecursive(final Path victim,
-        final RecursionMode mode)
+        final RecursionMode mode, final DeleteOption... options)
         throws IOException
+    {
+        doDeleteRecursive(victim, mode, null, options);
+    }
+
+    /**
+     * Delete a path recursively, asynchronously
+     *
+     * <p>This method returns immediately; the deletion is submitted to the
+     * given executor and runs as {@link #deleteRecursive(Path, RecursionMode,
+     * DeleteOption...)} would. The returned future can be used to wait for the
+     * deletion to complete, monitor its progress, or cancel it.</p>
+     *
+     * @param victim the victim
+     * @param mode the recursion mode
+     * @param executor the executor to run the deletion on
+     * @param options the set of deletion options
+     * @return a future for the deletion
+     *
+     * @see RecursiveOperationFuture
+     */
+    @Nonnull
+    public static RecursiveOperationFuture deleteRecursiveAsync(
+        final Path victim, final RecursionMode mode, final Executor executor,
+        final DeleteOption... options)
     {
         Objects.requireNonNull(victim);
         Objects.requireNonNull(mode);
+        Objects.requireNonNull(executor);
+
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final ProgressCounters progress = new ProgressCounters();
+        final DeleteOption[] allOptions = Arrays.copyOf(options,
+            options.length + 1, DeleteOption[].class);
+        allOptions[options.length] = withProgress(options, progress);
+
+        final Callable<Void> callable = new Callable<Void>()
+        {
+            @Override
+            public Void call()
+                throws IOException
+            {
+                doDeleteRecursive(victim, mode, cancelled, allOptions);
+                return null;
+            }
+        };
+
+        final RecursiveOperationFuture future
+            = new RecursiveOperationFuture(callable, cancelled, progress);
+        executor.execute(future);
+        return future;
+    }
+
+    private static void doDeleteRecursive(final Path victim,
+        final RecursionMode mode, @Nullable final AtomicBoolean cancelled,
+        final DeleteOption... options)
+        throws IOException
+    {
+        Objects.requireNonNull(victim);
+        Objects.requireNonNull(mode);
+
+        Parallelism parallelism = null;
+        ProgressListener listener = ProgressListener.NONE;
+        final List<RateLimit> limits = new ArrayList<>();
+
+        for (final DeleteOption option: options) {
+            Objects.requireNonNull(option);
+            if (option instanceof Parallelism)
+                parallelism = (Parallelism) option;
+            else if (option instanceof ProgressListener)
+                listener = (ProgressListener) option;
+            else if (option instanceof RateLimit && ((RateLimit) option)
+                .getUnit() == RateLimit.Unit.FILES)
+                limits.add((RateLimit) option);
+            else
+                throw new UnsupportedOperationException(option.toString());
+        }
+
+        for (final RateLimit limit: limits)
+            listener = ProgressListener.compose(listener, throttle(limit));
 
         final FileVisitor<Path> visitor;
 
@@ -179,20 +838,78 @@ public final class MoreFiles
             case KEEP_GOING:
                 final RecursiveDeletionException exception
                     = new RecursiveDeletionException();
-                visitor = new KeepGoingDeletionVisitor(victim, exception);
-                Files.walkFileTree(victim, visitor);
-                if (exception.getSuppressed().length != 0)
+                if (!secureDelete(victim, exception, listener, parallelism,
+                    cancelled)) {
+                    visitor = new KeepGoingDeletionVisitor(victim, exception,
+                        listener);
+                    walk(victim, visitor, parallelism, cancelled);
+                }
+                if (exception.getFailureCount() != 0L)
                     throw exception;
                 break;
             case FAIL_FAST:
-                visitor = new FailFastDeletionVisitor(victim);
-                Files.walkFileTree(victim, visitor);
+                if (secureDelete(victim, null, listener, parallelism,
+                    cancelled))
+                    break;
+                visitor = new FailFastDeletionVisitor(victim, listener);
+                walk(victim, visitor, parallelism, cancelled);
                 break;
             default:
                 throw new IllegalStateException();
         }
     }
 
+    /*
+     * Throttle a deletion: each deleted entry takes a permit from the limit.
+     *
+     * Entries are throttled after they are deleted, which makes no difference
+     * to the overall rate. If interrupted, we stop throttling; the interrupt
+     * flag is set again by RateLimit.
+     */
+    private static ProgressListener throttle(final RateLimit limit)
+    {
+        return new ProgressListener()
+        {
+            @Override
+            public void entryCompleted(final Path path, final long bytes,
+                final long nanos)
+            {
+                try {
+                    limit.acquire(1L);
+                } catch (InterruptedIOException ignored) {
+                    // See above
+                }
+            }
+
+            @Override
+            public String toString()
+            {
+                return limit.toString();
+            }
+        };
+    }
+
+    /*
+     * Try and delete using secure directory streams; this is only done for
+     * sequential deletions
+     */
+    private static boolean secureDelete(final Path victim,
+        @Nullable final RecursiveDeletionException exception,
+        final ProgressListener listener,
+        @Nullable final Parallelism parallelism,
+        @Nullable final AtomicBoolean cancelled)
+        throws IOException
+    {
+        if (parallelism != null)
+            return false;
+
+        final SecureDirectoryDeleter deleter = new SecureDirectoryDeleter(
+            exception, listener,
+            cancelled == null ? new AtomicBoolean() : cancelled);
+
+        return deleter.deleteRecursive(victim);
+    }
+
     /**
      * Change POSIX file permissions of a path
      *
@@ -267,9 +984,15 @@ public final class MoreFiles
      * initial POSIX file permissions; however, those permissions are altered
      * by the process' umask.</p>
      *
-     * <p>This method is not "umask sensitive"; however, this means that unlike
-     * the command from {@link Files}, it is not atomic either: the file is
-     * first created, then the permissions are set.</p>
+     * <p>This method is not sensitive to usual umasks: the file is created
+     * with the requested permissions, which are set again only if they include
+     * permissions for others, or write permission for the group, since these
+     * are the permissions usual umasks (such as {@code 022} or {@code 027})
+     * strip. Other permissions are not checked, to spare a system call per
+     * file; with a stricter umask, or a default ACL of the parent directory,
+     * they may therefore be missing. If the filesystem cannot set permissions
+     * at creation time, the file is first created, then the permissions are
+     * set.</p>
      *
      * @param path the file to create
      * @param permissions the permissions to create the file with, as a mode
@@ -305,9 +1028,15 @@ public final class MoreFiles
      * initial POSIX file permissions; however, those permissions are altered
      * by the process' umask.</p>
      *
-     * <p>This method is not "umask sensitive"; however, this means that unlike
-     * the command from {@link Files}, it is not atomic either: the file is
-     * first created, then the permissions are set.</p>
+     * <p>This method is not sensitive to usual umasks: the file is created
+     * with the requested permissions, which are set again only if they include
+     * permissions for others, or write permission for the group, since these
+     * are the permissions usual umasks (such as {@code 022} or {@code 027})
+     * strip. Other permissions are not checked, to spare a system call per
+     * file; with a stricter umask, or a default ACL of the parent directory,
+     * they may therefore be missing. If the filesystem cannot set permissions
+     * at creation time, the file is first created, then the permissions are
+     * set.</p>
      *
      * @param path the path to create
      * @param mode the permissions to create the file with, as an integer
@@ -340,9 +1069,10 @@ public final class MoreFiles
      * set initial POSIX file permissions; however, those permissions are
      * altered by the process' umask.</p>
      *
-     * <p>This method is not "umask sensitive"; however, this means that unlike
-     * the command from {@link Files}, it is not atomic either: the directory is
-     * first created, then the permissions are set.</p>
+     * <p>This method is not sensitive to usual umasks: the directory is
+     * created with the requested permissions, which are set again afterwards
+     * only if they may have been stripped by the umask (see {@link
+     * #createFile(Path, int)}).</p>
      *
      * @param dir the directory to create
      * @param permissions the permissions to create the directory with, as a
@@ -378,9 +1108,10 @@ public final class MoreFiles
      * set initial POSIX file permissions; however, those permissions are
      * altered by the process' umask.</p>
      *
-     * <p>This method is not "umask sensitive"; however, this means that unlike
-     * the command from {@link Files}, it is not atomic either: the directory is
-     * first created, then the permissions are set.</p>
+     * <p>This method is not sensitive to usual umasks: the directory is
+     * created with the requested permissions, which are set again afterwards
+     * only if they may have been stripped by the umask (see {@link
+     * #createFile(Path, int)}).</p>
      *
      * @param dir the directory to create
      * @param mode the permissions to create the directory with, as an integer
@@ -414,15 +1145,16 @@ public final class MoreFiles
      * set initial POSIX file permissions; however, those permissions are
      * altered by the process' umask.</p>
      *
-     * <p>This method is not "umask sensitive"; however, this means that unlike
-     * the command from {@link Files}, it is not atomic either: the
-     * directories are first created, then the permissions are set.</p>
+     * <p>This method is not sensitive to usual umasks: each missing directory
+     * is created with the requested permissions, which are set again afterwards
+     * only if they may have been stripped by the umask (see {@link
+     * #createFile(Path, int)}).</p>
      *
      * <p>The permissions of already existing directories are
      * <strong>not</strong> altered.</p>
      *
      * @param dir the directory (and its missing parents) to create
-     * @param permissions the permissions to create the missing directories4
+     * @param permissions the permissions to create the missing directories
      * with, as a mode string
      * @return the created path
      * @throws IllegalArgumentException invalid mode string specified
@@ -459,9 +1191,10 @@ public final class MoreFiles
      * set initial POSIX file permissions; however, those permissions are
      * altered by the process' umask.</p>
      *
-     * <p>This method is not "umask sensitive"; however, this means that unlike
-     * the command from {@link Files}, it is not atomic either: the
-     * directories are first created, then the permissions are set.</p>
+     * <p>This method is not sensitive to usual umasks: each missing directory
+     * is created with the requested permissions, which are set again afterwards
+     * only if they may have been stripped by the umask (see {@link
+     * #createFile(Path, int)}).</p>
      *
      * <p>The permissions of already existing directories are
      * <strong>not</strong> altered.</p>
@@ -562,6 +1295,77 @@ public final class MoreFiles
         return Files.setPosixFilePermissions(target, after);
     }
 
+    /**
+     * Recursively change POSIX file permissions using a chmod-like
+     * modification string
+     *
+     * <p>This is the recursive version of {@link #changeMode(Path, String)};
+     * the instructions are parsed only once. Permissions of an entry are only
+     * written if they actually change, and symbolic links encountered during
+     * the walk are ignored; see {@link ChangeModeVisitor} for more
+     * details.</p>
+     *
+     * <p>The recursion modes have the same semantics as for {@link
+     * #deleteRecursive(Path, RecursionMode, DeleteOption...)}; in keep going
+     * mode, errors are collected into a {@link
+     * RecursiveChangeModeException}.</p>
+     *
+     * <p>The only supported option is {@link Parallelism}; without it, the
+     * tree is walked in the calling thread.</p>
+     *
+     * @param root the root of the tree to alter
+     * @param instructions the modification instructions
+     * @param mode the recursion mode
+     * @param options the set of options
+     * @throws InvalidModeInstructionException instruction string is invalid
+     * @throws UnsupportedOperationException the root's filesystem does not
+     * support getting/setting POSIX file permissions; or unsupported option
+     * @throws RecursiveChangeModeException {@link RecursionMode#KEEP_GOING}
+     * was specified, and one or more errors were encountered
+     * @throws IOException other I/O errors
+     *
+     * @see ModeParser#buildPermissionsSet(String)
+     * @see ChangeModeVisitor
+     */
+    public static void changeModeRecursive(final Path root,
+        final String instructions, final RecursionMode mode,
+        final ChangeModeOption... options)
+        throws IOException
+    {
+        final PermissionsSet set = ModeParser.buildPermissionsSet(instructions);
+
+        doChangeModeRecursive(root, set, mode, options);
+    }
+
+    /**
+     * Recursively set POSIX file permissions
+     *
+     * <p>This is the recursive version of {@link #setMode(Path, int)}; see
+     * {@link #changeModeRecursive(Path, String, RecursionMode,
+     * ChangeModeOption...)} for the semantics and supported options.</p>
+     *
+     * @param root the root of the tree to alter
+     * @param intMode the permissions to set, as an integer
+     * @param mode the recursion mode
+     * @param options the set of options
+     * @throws InvalidIntModeException integer mode is not valid
+     * @throws UnsupportedOperationException the root's filesystem does not
+     * support getting/setting POSIX file permissions; or unsupported option
+     * @throws RecursiveChangeModeException {@link RecursionMode#KEEP_GOING}
+     * was specified, and one or more errors were encountered
+     * @throws IOException other I/O errors
+     *
+     * @see PosixModes#intModeToPosix(int)
+     */
+    public static void changeModeRecursive(final Path root, final int intMode,
+        final RecursionMode mode, final ChangeModeOption... options)
+        throws IOException
+    {
+        final PermissionsSet set = PosixModes.toPermissionsSet(intMode);
+
+        doChangeModeRecursive(root, set, mode, options);
+    }
+
     // Visible for testing
     @Nonnull
     static Path setTimes(final Path path, final FileTime fileTime)
@@ -573,39 +1377,224 @@ public final class MoreFiles
         return path;
     }
 
+    /*
+     * Copy one added or modified entry of a diff, replacing the target if it
+     * exists and is not a directory to be kept
+     */
+    private static void applyEntry(final FileCopier copier, final Path source,
+        final Path target, final List<Path> directories)
+        throws IOException
+    {
+        final BasicFileAttributes attrs;
+
+        try {
+            attrs = Files.readAttributes(source, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException ignored) {
+            return;
+        }
+
+        BasicFileAttributes targetAttrs;
+
+        try {
+            targetAttrs = Files.readAttributes(target,
+                BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException ignored) {
+            targetAttrs = null;
+        }
+
+        /*
+         * Only delete the target first if the type of the entry changes;
+         * otherwise, a file is replaced once copied, and survives a failed
+         * copy.
+         */
+        if (targetAttrs != null && !sameKind(attrs, targetAttrs)) {
+            deleteRecursive(target, RecursionMode.FAIL_FAST);
+            targetAttrs = null;
+        }
+
+        if (attrs.isDirectory()) {
+            Files.createDirectories(target);
+            copier.directoryCreated(source, attrs);
+            directories.add(source);
+        } else if (targetAttrs == null)
+            copier.copy(source, target, attrs);
+        else
+            copier.replace(source, target, attrs);
+    }
+
+    private static boolean sameKind(final BasicFileAttributes first,
+        final BasicFileAttributes second)
+    {
+        return first.isRegularFile() == second.isRegularFile()
+            && first.isDirectory() == second.isDirectory()
+            && first.isSymbolicLink() == second.isSymbolicLink();
+    }
+
+    private static boolean isFileCopierOption(final CopyOption option)
+    {
+        return option == StandardCopyOption.COPY_ATTRIBUTES
+            || option == MoreCopyOption.SPARSE
+            || option == MoreCopyOption.PRESERVE_HARD_LINKS
+            || option == MoreCopyOption.SKIP_SPECIAL_FILES
+            || option instanceof SymbolicLinkMode
+            || option instanceof RateLimit
+            || option instanceof Checksum;
+    }
+
+    private static void walk(final Path start, final FileVisitor<Path> visitor,
+        @Nullable final Parallelism parallelism)
+        throws IOException
+    {
+        walk(start, visitor, parallelism, null);
+    }
+
+    private static void walk(final Path start, final FileVisitor<Path> visitor,
+        @Nullable final Parallelism parallelism,
+        @Nullable final AtomicBoolean cancelled)
+        throws IOException
+    {
+        walk(start, EnumSet.noneOf(FileVisitOption.class), visitor,
+            parallelism, cancelled);
+    }
+
+    private static void walk(final Path start,
+        final Set<FileVisitOption> options, final FileVisitor<Path> visitor,
+        @Nullable final Parallelism parallelism,
+        @Nullable final AtomicBoolean cancelled)
+        throws IOException
+    {
+        final FileVisitor<Path> actual = cancelled == null ? visitor
+            : new CancellableFileVisitor<>(visitor, cancelled);
+
+        if (parallelism == null)
+            Files.walkFileTree(start, options, Integer.MAX_VALUE, actual);
+        else
+            parallelism.walk(start, options, actual);
+    }
+
+    private static void doChangeModeRecursive(final Path root,
+        final PermissionsSet set, final RecursionMode mode,
+        final ChangeModeOption... options)
+        throws IOException
+    {
+        Objects.requireNonNull(root);
+        Objects.requireNonNull(mode);
+
+        Parallelism parallelism = null;
+
+        for (final ChangeModeOption option: options) {
+            Objects.requireNonNull(option);
+            if (option instanceof Parallelism)
+                parallelism = (Parallelism) option;
+            else
+                throw new UnsupportedOperationException(option.toString());
+        }
+
+        if (mode == RecursionMode.FAIL_FAST) {
+            walk(root, new ChangeModeVisitor(set, null), parallelism);
+            return;
+        }
+
+        // Cannot happen in theory, but...
+        if (mode != RecursionMode.KEEP_GOING)
+            throw new IllegalStateException();
+
+        final RecursiveChangeModeException e
+            = new RecursiveChangeModeException();
+        walk(root, new ChangeModeVisitor(set, e), parallelism);
+        if (e.getFailureCount() != 0L)
+            throw e;
+    }
+
+    /*
+     * Build the listener for an asynchronous operation: the progress counters
+     * of the operation, combined with the user's listener if any
+     */
+    private static ProgressListener withProgress(final Object[] options,
+        final ProgressCounters progress)
+    {
+        ProgressListener listener = progress;
+
+        for (final Object option: options)
+            if (option instanceof ProgressListener)
+                listener = ProgressListener.compose((ProgressListener) option,
+                    progress);
+
+        return listener;
+    }
+
     private static Path doCreateFile(final Path path,
         final Set<PosixFilePermission> perms)
         throws IOException
     {
-        Files.createFile(path);
-        return Files.setPosixFilePermissions(path, perms);
+        try {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(perms));
+        } catch (UnsupportedOperationException ignored) {
+            // The provider cannot set the permissions at creation time
+            Files.createFile(path);
+            return Files.setPosixFilePermissions(path, perms);
+        }
+
+        return fixupPermissions(path, perms);
     }
 
     private static Path doCreateDirectory(final Path dir,
         final Set<PosixFilePermission> perms)
         throws IOException
     {
-        Files.createDirectory(dir);
-        return Files.setPosixFilePermissions(dir, perms);
+        try {
+            Files.createDirectory(dir,
+                PosixFilePermissions.asFileAttribute(perms));
+        } catch (UnsupportedOperationException ignored) {
+            // The provider cannot set the permissions at creation time
+            Files.createDirectory(dir);
+            return Files.setPosixFilePermissions(dir, perms);
+        }
+
+        return fixupPermissions(dir, perms);
     }
 
     private static void doCreateDirectories(final Path realDir,
         final Set<PosixFilePermission> perms)
         throws IOException
     {
-        final List<Path> created = new ArrayList<>();
+        final List<Path> missing = new ArrayList<>();
 
         Path parent = realDir;
 
         while (parent != null && !Files.exists(parent)) {
-            created.add(parent);
+            missing.add(parent);
             parent = parent.getParent();
         }
 
-        Files.createDirectories(realDir);
+        if (missing.isEmpty() && !Files.isDirectory(realDir))
+            throw new FileAlreadyExistsException(realDir.toString());
 
-        for (final Path path : created) {
-            Files.setPosixFilePermissions(path, perms);
+        for (int i = missing.size() - 1; i >= 0; i--) {
+            final Path path = missing.get(i);
+            try {
+                doCreateDirectory(path, perms);
+            } catch (FileAlreadyExistsException e) {
+                // Created concurrently; the same as Files.createDirectories()
+                if (!Files.isDirectory(path))
+                    throw e;
+            }
         }
     }
+
+    /*
+     * Set the permissions again only if they include permissions which usual
+     * umasks strip. Reading them back to check would cost as much as setting
+     * them, so they are set blindly in that case, and not checked otherwise.
+     */
+    private static Path fixupPermissions(final Path path,
+        final Set<PosixFilePermission> perms)
+        throws IOException
+    {
+        if (!Collections.disjoint(perms, USUALLY_MASKED))
+            Files.setPosixFilePermissions(path, perms);
+
+        return path;
+    }
 }
@@ -0,0 +1,158 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.walk.ParallelTreeWalker;
+import com.github.fge.filesystem.walk.PrefetchingTreeWalker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitor;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Option to run a recursive operation in parallel
+ *
+ * <p>When this option is passed to a recursive operation, the tree is walked
+ * using a {@link ParallelTreeWalker} instead of a single threaded walk. The
+ * {@link RecursionMode recursion mode} semantics are unchanged.</p>
+ *
+ * <p>You can either specify a parallelism level, in which case a dedicated
+ * {@link ForkJoinPool} is created for the operation and shut down when the
+ * operation completes, or supply your own pool.</p>
+ *
+ * <p>Alternatively, the operation can {@link #prefetching(int) prefetch}: the
+ * tree is then walked using a {@link PrefetchingTreeWalker}, and the operation
+ * runs in the calling thread, in the same order as a single threaded walk,
+ * while worker threads list directories and read the attributes of entries
+ * ahead of it. This is useful on high latency storage, where reading
+ * attributes is what takes most of the time.</p>
+ *
+ * @see MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)
+ * @see MoreFiles#deleteRecursive(Path, RecursionMode, DeleteOption...)
+ * @see MoreFiles#changeModeRecursive(Path, String, RecursionMode,
+ * ChangeModeOption...)
+ */
+@ParametersAreNonnullByDefault
+public final class Parallelism
+    implements CopyOption, DeleteOption, ChangeModeOption
+{
+    @Nullable
+    private final ForkJoinPool pool;
+    private final int level;
+    private final boolean prefetch;
+
+    private Parallelism(@Nullable final ForkJoinPool pool, final int level,
+        final boolean prefetch)
+    {
+        this.pool = pool;
+        this.level = level;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Run with a given parallelism level
+     *
+     * @param level the parallelism level
+     * @return a new option
+     * @throws IllegalArgumentException level is zero or negative
+     */
+    @Nonnull
+    public static Parallelism of(final int level)
+    {
+        if (level <= 0)
+            throw new IllegalArgumentException("parallelism level must be "
+                + "strictly positive");
+        return new Parallelism(null, level, false);
+    }
+
+    /**
+     * Run with a parallelism level equal to the number of available processors
+     *
+     * @return a new option
+     *
+     * @see Runtime#availableProcessors()
+     */
+    @Nonnull
+    public static Parallelism ofAvailableProcessors()
+    {
+        return of(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Run on an existing fork/join pool
+     *
+     * <p>The pool is not shut down when the operation completes.</p>
+     *
+     * @param pool the pool
+     * @return a new option
+     */
+    @Nonnull
+    public static Parallelism using(final ForkJoinPool pool)
+    {
+        Objects.requireNonNull(pool);
+        return new Parallelism(pool, pool.getParallelism(), false);
+    }
+
+    /**
+     * Run in the calling thread, with a given number of threads reading ahead
+     *
+     * @param level the number of threads reading ahead
+     * @return a new option
+     * @throws IllegalArgumentException level is zero or negative
+     *
+     * @see PrefetchingTreeWalker#walk(Path, Set, FileVisitor, int)
+     */
+    @Nonnull
+    public static Parallelism prefetching(final int level)
+    {
+        if (level <= 0)
+            throw new IllegalArgumentException("parallelism level must be "
+                + "strictly positive");
+        return new Parallelism(null, level, true);
+    }
+
+    /**
+     * Get the parallelism level of this option
+     *
+     * @return the parallelism level
+     */
+    public int getLevel()
+    {
+        return level;
+    }
+
+    void walk(final Path start, final Set<FileVisitOption> options,
+        final FileVisitor<? super Path> visitor)
+        throws IOException
+    {
+        if (prefetch) {
+            PrefetchingTreeWalker.walk(start, options, visitor, level);
+            return;
+        }
+
+        if (pool != null) {
+            ParallelTreeWalker.walk(start, options, visitor, pool);
+            return;
+        }
+
+        final ForkJoinPool ownPool = new ForkJoinPool(level);
+
+        try {
+            ParallelTreeWalker.walk(start, options, visitor, ownPool);
+        } finally {
+            ownPool.shutdown();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return (prefetch ? "prefetch: " : "parallelism: ") + level;
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.copy.FileCopier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.InterruptedIOException;
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Option to limit the I/O rate of a recursive operation
+ *
+ * <p>There are two kinds of limits:</p>
+ *
+ * <ul>
+ *     <li>{@link #bytesPerSecond(long) bytes per second}, which only applies
+ *     to copies;</li>
+ *     <li>{@link #filesPerSecond(long) files per second}; for copies, this is
+ *     the number of regular files copied, and for deletions, the number of
+ *     entries (files, directories, symbolic links) deleted.</li>
+ * </ul>
+ *
+ * <p>Both kinds can be passed to the same copy.</p>
+ *
+ * <p>Limits are implemented as token buckets: permits accumulate at the given
+ * rate, up to one second worth of permits, and an operation waits until
+ * enough permits are available. A bucket is shared by all threads using it;
+ * when an operation runs in {@link Parallelism parallel}, the limit therefore
+ * applies to all workers combined. Similarly, an instance passed to several
+ * operations limits their combined rate.</p>
+ *
+ * <p>Note that when a bytes per second limit is specified, files are always
+ * copied by chunks, even if the provider of the source and destination could
+ * copy them more efficiently by itself (see {@link FileCopier}).</p>
+ *
+ * @see MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)
+ * @see MoreFiles#deleteRecursive(Path, RecursionMode, DeleteOption...)
+ */
+@ParametersAreNonnullByDefault
+public final class RateLimit
+    implements CopyOption, DeleteOption
+{
+    /**
+     * The unit of a rate limit
+     */
+    public enum Unit
+    {
+        /**
+         * Bytes copied
+         */
+        BYTES,
+        /**
+         * Files copied or entries deleted
+         */
+        FILES,
+        ;
+    }
+
+    private final Unit unit;
+    private final long rate;
+
+    // Protected by "this"
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    private RateLimit(final Unit unit, final long rate)
+    {
+        if (rate <= 0L)
+            throw new IllegalArgumentException("rate must be strictly "
+                + "positive");
+        this.unit = unit;
+        this.rate = rate;
+        tokens = rate;
+    }
+
+    /**
+     * Limit the number of bytes copied per second
+     *
+     * @param rate the maximum number of bytes per second
+     * @return a new option
+     * @throws IllegalArgumentException rate is zero or negative
+     */
+    @Nonnull
+    public static RateLimit bytesPerSecond(final long rate)
+    {
+        return new RateLimit(Unit.BYTES, rate);
+    }
+
+    /**
+     * Limit the number of files copied, or entries deleted, per second
+     *
+     * @param rate the maximum number of files or entries per second
+     * @return a new option
+     * @throws IllegalArgumentException rate is zero or negative
+     */
+    @Nonnull
+    public static RateLimit filesPerSecond(final long rate)
+    {
+        return new RateLimit(Unit.FILES, rate);
+    }
+
+    /**
+     * Get the unit of this limit
+     *
+     * @return the unit
+     */
+    @Nonnull
+    public Unit getUnit()
+    {
+        return unit;
+    }
+
+    /**
+     * Get the rate of this limit, per second
+     *
+     * @return the rate
+     */
+    public long getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * Take permits from this limit, waiting for them if necessary
+     *
+     * <p>It is possible to take more permits than one second worth of them;
+     * subsequent callers then wait for the debt to be paid back.</p>
+     *
+     * @param permits the number of permits
+     * @throws InterruptedIOException interrupted while waiting
+     */
+    public void acquire(final long permits)
+        throws InterruptedIOException
+    {
+        if (permits <= 0L)
+            return;
+
+        final long delay = reserve(permits);
+
+        if (delay <= 0L)
+            return;
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for "
+                + "rate limit");
+        }
+    }
+
+    /*
+     * Take the permits and return the time to wait, in nanoseconds, until
+     * the bucket is no longer in debt
+     */
+    private synchronized long reserve(final long permits)
+    {
+        final long now = System.nanoTime();
+        final double refill = (double) (now - lastRefill) * rate
+            / TimeUnit.SECONDS.toNanos(1L);
+
+        lastRefill = now;
+        tokens = Math.min(tokens + refill, rate) - permits;
+
+        return tokens >= 0.0 ? 0L
+            : (long) (-tokens * TimeUnit.SECONDS.toNanos(1L) / rate);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "rate limit: " + rate
+            + (unit == Unit.BYTES ? " bytes/s" : " files/s");
+    }
+}
@@ -7,7 +7,7 @@ import java.nio.file.Path;
  * Enumeration of options for recursive operations
  *
  * @see MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)
- * @see MoreFiles#deleteRecursive(Path, RecursionMode)
+ * @see MoreFiles#deleteRecursive(Path, RecursionMode, DeleteOption...)
  */
 public enum RecursionMode
 {
@@ -0,0 +1,71 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.progress.ProgressCounters;
+import com.github.fge.filesystem.walk.CancellableFileVisitor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link Future} for a recursive operation run asynchronously
+ *
+ * <p>Cancelling this future stops the walk of the tree at the next entry,
+ * whether the operation runs sequentially or in parallel; entries which were
+ * being operated on at that time are completed. Interrupting the thread
+ * running the operation is not required, and not recommended: it may leave
+ * the current entries in an inconsistent state.</p>
+ *
+ * <p>If the operation fails, {@link #get()} throws an {@link
+ * ExecutionException} whose cause is the exception the operation would have
+ * thrown if run synchronously.</p>
+ *
+ * <p>The progress of the operation, including its partial results if it is
+ * cancelled, is available from {@link #getProgress()}.</p>
+ *
+ * @see MoreFiles#copyRecursiveAsync(Path, Path, RecursionMode, Executor,
+ * CopyOption...)
+ * @see MoreFiles#deleteRecursiveAsync(Path, RecursionMode, Executor,
+ * DeleteOption...)
+ * @see CancellableFileVisitor
+ */
+@ParametersAreNonnullByDefault
+public final class RecursiveOperationFuture
+    extends FutureTask<Void>
+{
+    private final AtomicBoolean cancelled;
+    private final ProgressCounters progress;
+
+    RecursiveOperationFuture(final Callable<Void> callable,
+        final AtomicBoolean cancelled, final ProgressCounters progress)
+    {
+        super(callable);
+        this.cancelled = cancelled;
+        this.progress = progress;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning)
+    {
+        cancelled.set(true);
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    /**
+     * Get the progress counters of this operation
+     *
+     * @return the progress counters
+     */
+    @Nonnull
+    public ProgressCounters getProgress()
+    {
+        return progress;
+    }
+}
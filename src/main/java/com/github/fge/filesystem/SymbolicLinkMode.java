@@ -0,0 +1,45 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.copy.FileCopier;
+
+import java.nio.file.CopyOption;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Path;
+
+/**
+ * How to handle symbolic links found during a recursive copy
+ *
+ * <p>If none of these options is passed to {@link
+ * MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)}, the copy
+ * fails with an {@link UnsupportedOperationException} when it encounters a
+ * symbolic link.</p>
+ *
+ * @see FileCopier
+ */
+public enum SymbolicLinkMode
+    implements CopyOption
+{
+    /**
+     * Create a symbolic link with the same target in the destination
+     *
+     * <p>The target is copied as is: relative links remain relative, and
+     * absolute links still point to their original target. If the
+     * destination is on another filesystem, the target is translated
+     * using {@link MorePaths#resolve(Path, Path)}.</p>
+     */
+    COPY,
+    /**
+     * Follow symbolic links, and copy their targets
+     *
+     * <p>Links to directories are walked as directories. A link pointing to
+     * one of its ancestors is reported as a {@link FileSystemLoopException},
+     * and a link whose target does not exist as a {@link
+     * java.nio.file.NoSuchFileException}.</p>
+     */
+    FOLLOW,
+    /**
+     * Do not copy symbolic links at all
+     */
+    SKIP,
+    ;
+}
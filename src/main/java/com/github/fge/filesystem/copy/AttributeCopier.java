@@ -0,0 +1,220 @@
+package com.github.fge.filesystem.copy;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.UserPrincipal;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.nio.file.attribute.UserPrincipalNotFoundException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Copy of file attributes (permissions, owner, group, times)
+ *
+ * Attributes are read in bulk: the attributes read by the tree walk are used
+ * directly if they are POSIX attributes (this is the case with the default
+ * filesystem on Unix systems), otherwise they are read once as POSIX
+ * attributes if the source supports them, and as basic attributes otherwise.
+ *
+ * Failures to set the owner or group are ignored, as "cp -p" does: they
+ * require privileges, and principals may not exist on the destination. The
+ * owner and group of the target are only changed if they differ from those of
+ * the source. If both paths share a provider, the principals of the source
+ * are used directly; otherwise, they are looked up by name on the target
+ * filesystem, and the results of lookups are cached, since lookups go
+ * through the name service of the system.
+ *
+ * Directory attributes are applied once all entries of the directory have
+ * been copied: this way, the last modification time is not altered by the
+ * creation of entries, and read only directories can still be filled.
+ */
+@ParametersAreNonnullByDefault
+final class AttributeCopier
+{
+    private static final LinkOption NOFOLLOW = LinkOption.NOFOLLOW_LINKS;
+
+    private final Map<Path, BasicFileAttributes> directories
+        = new ConcurrentHashMap<>();
+
+    private final Map<String, UserPrincipal> owners
+        = new ConcurrentHashMap<>();
+    private final Map<String, GroupPrincipal> groups
+        = new ConcurrentHashMap<>();
+    private final Set<String> unknownOwners
+        = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> unknownGroups
+        = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    void copy(final Path source, final BasicFileAttributes attrs,
+        final Path target)
+        throws IOException
+    {
+        apply(source, readAttributes(source, attrs), target);
+    }
+
+    void directoryCreated(final Path source, final BasicFileAttributes attrs)
+        throws IOException
+    {
+        directories.put(source, readAttributes(source, attrs));
+    }
+
+    void directoryCompleted(final Path source, final Path target)
+        throws IOException
+    {
+        final BasicFileAttributes attrs = directories.remove(source);
+
+        if (attrs != null)
+            apply(source, attrs, target);
+    }
+
+    private static BasicFileAttributes readAttributes(final Path source,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        if (attrs instanceof PosixFileAttributes)
+            return attrs;
+
+        try {
+            /*
+             * Links only get here if the walk follows them, in which case the
+             * attributes of their target are wanted
+             */
+            return Files.readAttributes(source, PosixFileAttributes.class);
+        } catch (UnsupportedOperationException ignored) {
+            return attrs;
+        }
+    }
+
+    private void apply(final Path source, final BasicFileAttributes attrs,
+        final Path target)
+        throws IOException
+    {
+        final PosixFileAttributeView view = attrs instanceof PosixFileAttributes
+            ? Files.getFileAttributeView(target, PosixFileAttributeView.class,
+                NOFOLLOW)
+            : null;
+
+        if (view != null) {
+            final PosixFileAttributes posix = (PosixFileAttributes) attrs;
+            setOwnership(view, posix, source, target);
+            view.setPermissions(posix.permissions());
+        }
+
+        final BasicFileAttributeView basicView = view != null ? view
+            : Files.getFileAttributeView(target, BasicFileAttributeView.class,
+                NOFOLLOW);
+
+        basicView.setTimes(attrs.lastModifiedTime(), attrs.lastAccessTime(),
+            null);
+    }
+
+    /*
+     * Ownership is set before permissions: changing the owner may clear the
+     * setuid and setgid bits
+     */
+    @SuppressWarnings("ObjectEquality")
+    private void setOwnership(final PosixFileAttributeView view,
+        final PosixFileAttributes attrs, final Path source, final Path target)
+    {
+        final boolean sameProvider = source.getFileSystem().provider()
+            == target.getFileSystem().provider();
+        final PosixFileAttributes current;
+
+        try {
+            current = view.readAttributes();
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // See class description
+            return;
+        }
+
+        try {
+            final UserPrincipal owner = sameProvider ? attrs.owner()
+                : lookupOwner(target, attrs.owner());
+            if (owner != null && !owner.equals(current.owner()))
+                view.setOwner(owner);
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // See class description
+        }
+
+        try {
+            final GroupPrincipal group = sameProvider ? attrs.group()
+                : lookupGroup(target, attrs.group());
+            if (group != null && !group.equals(current.group()))
+                view.setGroup(group);
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // See class description
+        }
+    }
+
+    @Nullable
+    private UserPrincipal lookupOwner(final Path target,
+        @Nullable final UserPrincipal owner)
+        throws IOException
+    {
+        if (owner == null)
+            return null;
+
+        final String name = owner.getName();
+        final UserPrincipal cached = owners.get(name);
+
+        if (cached != null || unknownOwners.contains(name))
+            return cached;
+
+        final UserPrincipalLookupService service
+            = target.getFileSystem().getUserPrincipalLookupService();
+
+        if (service == null)
+            return null;
+
+        try {
+            final UserPrincipal principal = service.lookupPrincipalByName(name);
+            owners.put(name, principal);
+            return principal;
+        } catch (UserPrincipalNotFoundException ignored) {
+            unknownOwners.add(name);
+            return null;
+        }
+    }
+
+    @Nullable
+    private GroupPrincipal lookupGroup(final Path target,
+        @Nullable final GroupPrincipal group)
+        throws IOException
+    {
+        if (group == null)
+            return null;
+
+        final String name = group.getName();
+        final GroupPrincipal cached = groups.get(name);
+
+        if (cached != null || unknownGroups.contains(name))
+            return cached;
+
+        final UserPrincipalLookupService service
+            = target.getFileSystem().getUserPrincipalLookupService();
+
+        if (service == null)
+            return null;
+
+        try {
+            final GroupPrincipal principal
+                = service.lookupPrincipalByGroupName(name);
+            groups.put(name, principal);
+            return principal;
+        } catch (UserPrincipalNotFoundException ignored) {
+            unknownGroups.add(name);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.fge.filesystem.copy;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct byte buffers
+ *
+ * <p>Direct buffers are expensive to allocate and are only reclaimed when
+ * garbage collected; we therefore recycle them. At most {@link #MAX_POOLED}
+ * buffers are retained in the pool; buffers released beyond that are left to
+ * the garbage collector.</p>
+ *
+ * <p>This class is thread safe.</p>
+ */
+@ParametersAreNonnullByDefault
+final class BufferPool
+{
+    static final int BUFFER_SIZE = 128 * 1024;
+
+    private static final int MAX_POOLED
+        = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final BufferPool INSTANCE = new BufferPool();
+
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    private BufferPool()
+    {
+    }
+
+    static BufferPool getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Get a buffer from the pool, or allocate a new one
+     *
+     * @return a cleared buffer
+     */
+    @Nonnull
+    ByteBuffer acquire()
+    {
+        final ByteBuffer buffer = buffers.poll();
+
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool
+     *
+     * @param buffer the buffer, previously obtained with {@link #acquire()}
+     */
+    void release(final ByteBuffer buffer)
+    {
+        if (pooled.incrementAndGet() > MAX_POOLED) {
+            pooled.decrementAndGet();
+            return;
+        }
+
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+}
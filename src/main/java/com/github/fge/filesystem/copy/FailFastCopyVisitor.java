@@ -3,6 +3,8 @@ package com.github.fge.filesystem.copy;
 import com.github.fge.filesystem.MoreFiles;
 import com.github.fge.filesystem.MorePaths;
 import com.github.fge.filesystem.RecursionMode;
+import com.github.fge.filesystem.progress.ProgressListener;
+import com.github.fge.filesystem.walk.ParallelTreeWalker;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
@@ -21,7 +23,12 @@ import java.util.Objects;
  * <p>This visitor will fail for the first directory it fails to create or the
  * first file it fails to copy.</p>
  *
+ * <p>This visitor is thread safe, and can therefore be used with a {@link
+ * ParallelTreeWalker}.</p>
+ *
  * @see MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)
+ * @see FileCopier
+ * @see ProgressListener
  */
 @ParametersAreNonnullByDefault
 public final class FailFastCopyVisitor
@@ -29,9 +36,8 @@ public final class FailFastCopyVisitor
 {
     private final Path src;
     private final Path dst;
-
-    private Path currentSrc;
-    private Path currentDst;
+    private final FileCopier copier;
+    private final ProgressListener listener;
 
     /**
      * Constructor
@@ -40,9 +46,38 @@ public final class FailFastCopyVisitor
      * @param dst the destination path
      */
     public FailFastCopyVisitor(final Path src, final Path dst)
+    {
+        this(src, dst, new FileCopier());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param src the source path
+     * @param dst the destination path
+     * @param copier the file copier to use
+     */
+    public FailFastCopyVisitor(final Path src, final Path dst,
+        final FileCopier copier)
+    {
+        this(src, dst, copier, ProgressListener.NONE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param src the source path
+     * @param dst the destination path
+     * @param copier the file copier to use
+     * @param listener the progress listener to notify
+     */
+    public FailFastCopyVisitor(final Path src, final Path dst,
+        final FileCopier copier, final ProgressListener listener)
     {
         this.src = Objects.requireNonNull(src);
         this.dst = Objects.requireNonNull(dst);
+        this.copier = Objects.requireNonNull(copier);
+        this.listener = Objects.requireNonNull(listener);
     }
 
     @Override
@@ -50,11 +85,22 @@ public final class FailFastCopyVisitor
         final BasicFileAttributes attrs)
         throws IOException
     {
-        currentSrc = src.relativize(dir);
-        currentDst = MorePaths.resolve(dst, currentSrc);
+        if (copier.isCompleted(dir))
+            return FileVisitResult.SKIP_SUBTREE;
+        listener.entryVisited(dir, attrs);
+        final long start = System.nanoTime();
+        final Path currentSrc = src.relativize(dir);
+        final Path currentDst = MorePaths.resolve(dst, currentSrc);
         // We must take empty path into account.
         // Note that the destination directory will have been created for us.
-        Files.createDirectories(currentDst);
+        try {
+            Files.createDirectories(currentDst);
+            copier.directoryCreated(dir, attrs);
+        } catch (IOException e) {
+            listener.entryFailed(e);
+            throw e;
+        }
+        listener.entryCompleted(dir, 0L, System.nanoTime() - start);
         return FileVisitResult.CONTINUE;
     }
 
@@ -63,11 +109,20 @@ public final class FailFastCopyVisitor
         final BasicFileAttributes attrs)
         throws IOException
     {
-        if (!attrs.isRegularFile())
-            throw new UnsupportedOperationException();
-        currentSrc = src.relativize(file);
-        currentDst = MorePaths.resolve(dst, currentSrc);
-        Files.copy(file, currentDst);
+        if (copier.isCompleted(file))
+            return FileVisitResult.CONTINUE;
+        listener.entryVisited(file, attrs);
+        final long start = System.nanoTime();
+        final Path currentSrc = src.relativize(file);
+        final Path currentDst = MorePaths.resolve(dst, currentSrc);
+        final long bytes;
+        try {
+            bytes = copier.copy(file, currentDst, attrs);
+        } catch (IOException e) {
+            listener.entryFailed(e);
+            throw e;
+        }
+        listener.entryCompleted(file, bytes, System.nanoTime() - start);
         return FileVisitResult.CONTINUE;
     }
 
@@ -76,6 +131,7 @@ public final class FailFastCopyVisitor
         final IOException exc)
         throws IOException
     {
+        listener.entryFailed(exc);
         throw exc;
     }
 
@@ -84,8 +140,18 @@ public final class FailFastCopyVisitor
         final IOException exc)
         throws IOException
     {
-        if (exc != null)
+        if (exc != null) {
+            listener.entryFailed(exc);
             throw exc;
+        }
+        final Path currentDst = MorePaths.resolve(dst, src.relativize(dir));
+        try {
+            copier.directoryCompleted(dir, currentDst);
+            copier.subtreeCompleted(dir);
+        } catch (IOException e) {
+            listener.entryFailed(e);
+            throw e;
+        }
         return FileVisitResult.CONTINUE;
     }
 }
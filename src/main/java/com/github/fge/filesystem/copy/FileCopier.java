@@ -0,0 +1,754 @@
+package com.github.fge.filesystem.copy;
+
+import com.github.fge.filesystem.Checksum;
+import com.github.fge.filesystem.CopyJournal;
+import com.github.fge.filesystem.MoreCopyOption;
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.MorePaths;
+import com.github.fge.filesystem.RateLimit;
+import com.github.fge.filesystem.RecursionMode;
+import com.github.fge.filesystem.SymbolicLinkMode;
+import com.github.fge.filesystem.exceptions.ChecksumMismatchException;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.CopyOption;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The strategy used by copy visitors to copy one regular file
+ *
+ * <p>Copy visitors also use this class to copy symbolic links and special
+ * files, according to the {@link SymbolicLinkMode} and {@link
+ * MoreCopyOption#SKIP_SPECIAL_FILES} options (see {@link #copy(Path, Path,
+ * BasicFileAttributes)}).</p>
+ *
+ * <p>The copy strategy is chosen as follows:</p>
+ *
+ * <ul>
+ *     <li>if {@link MoreCopyOption#SPARSE} was specified, bytes are copied by a
+ *     loop using a pooled direct buffer, and blocks of zeroes are skipped
+ *     instead of being written (see below);</li>
+ *     <li>if both paths are issued from the same {@link
+ *     java.nio.file.spi.FileSystemProvider provider}, {@link Files#copy(Path,
+ *     Path, CopyOption...)} is used, since the provider knows best how to
+ *     copy its own files (depending on the JDK and the operating system, the
+ *     copy may be done by the kernel);</li>
+ *     <li>otherwise, if both paths can be opened as {@link FileChannel}s,
+ *     {@link FileChannel#transferTo(long, long, WritableByteChannel)} is
+ *     used, which lets the JVM use zero copy system calls when available;</li>
+ *     <li>otherwise, bytes are copied by a loop using a pooled direct buffer.
+ *     </li>
+ * </ul>
+
+ * <p>Sparse copies detect holes by looking for {@link #BLOCK_SIZE} bytes
+ * blocks of zeroes, since the API offers no way to query the holes of the
+ * source; the destination is opened with {@link StandardOpenOption#SPARSE},
+ * which is required for Windows to create holes.</p>
+ *
+ * <p>If a {@link RateLimit} option is specified, the copy waits for one
+ * permit per file from {@link RateLimit#filesPerSecond(long) files per second}
+ * limits, and for one permit per byte from {@link
+ * RateLimit#bytesPerSecond(long) bytes per second} limits. In the latter
+ * case, {@link Files#copy(Path, Path, CopyOption...)} is never used, and
+ * transfers are done by chunks so that the rate is enforced while a file is
+ * being copied.</p>
+ *
+ * <p>If a {@link Checksum} option is specified, the digest of each file is
+ * computed while its bytes flow through the buffer, and recorded in the
+ * option's manifest; {@link Files#copy(Path, Path, CopyOption...)} and {@link
+ * FileChannel#transferTo(long, long, WritableByteChannel)} are then never
+ * used. If the option is {@link Checksum#verifying() verifying}, the target is
+ * read again once copied, and the copy fails with a {@link
+ * ChecksumMismatchException} if its digest differs.</p>
+ *
+ * <p>If {@link StandardCopyOption#COPY_ATTRIBUTES} is specified, the
+ * permissions, owner, group and times of the source are applied to the target
+ * after a file is copied; copy visitors also apply the attributes of
+ * directories once all of their entries have been copied (see {@link
+ * #directoryCreated(Path, BasicFileAttributes)} and {@link
+ * #directoryCompleted(Path, Path)}). Attributes of the source are read in bulk,
+ * reusing those read by the tree walk when possible, and are applied using the
+ * POSIX attribute view of the target if both support it, or only times
+ * otherwise. As with {@code cp -p}, failures to set the owner or group are
+ * ignored.</p>
+ *
+ * <p>If a {@link CopyJournal} option is specified, entries copied by {@link
+ * #copy(Path, Path, BasicFileAttributes)} are recorded in the journal, and a
+ * target left over by an interrupted run of the copy is deleted before the
+ * entry is copied again; copy visitors also use this class to skip entries
+ * completed by an earlier run (see {@link #isCompleted(Path)} and {@link
+ * #subtreeCompleted(Path)}).</p>
+ *
+ * <p>In all cases, the copy fails with a {@link FileAlreadyExistsException}
+ * if the target already exists; if a copy fails, a partially written target
+ * is deleted. To update an existing target, use {@link #replace(Path, Path,
+ * BasicFileAttributes)}, which copies the entry to a temporary name in the
+ * directory of the target, and only then moves it over the target.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @see MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)
+ */
+@ParametersAreNonnullByDefault
+public final class FileCopier
+{
+    /**
+     * The granularity of hole detection in sparse copies
+     */
+    public static final int BLOCK_SIZE = 4096;
+
+    private static final OpenOption[] READ = { StandardOpenOption.READ };
+    private static final OpenOption[] CREATE = {
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE
+    };
+    private static final OpenOption[] CREATE_SPARSE = {
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+        StandardOpenOption.SPARSE
+    };
+
+    private final BufferPool pool = BufferPool.getInstance();
+
+    private final boolean sparse;
+    @Nullable
+    private final HardLinks hardLinks;
+    @Nullable
+    private final SymbolicLinkMode linkMode;
+    private final boolean skipSpecialFiles;
+    @Nullable
+    private final RateLimit filesLimit;
+    @Nullable
+    private final RateLimit bytesLimit;
+    @Nullable
+    private final AttributeCopier attributes;
+    @Nullable
+    private final Checksum checksum;
+    @Nullable
+    private final CopyJournal journal;
+
+    /**
+     * Constructor
+     *
+     * <p>Copy options not relevant to a single file copy are ignored.</p>
+     *
+     * @param options the copy options
+     */
+    public FileCopier(final CopyOption... options)
+    {
+        boolean sparseCopy = false;
+        boolean preserveLinks = false;
+        boolean skipSpecial = false;
+        boolean copyAttributes = false;
+        SymbolicLinkMode symlinks = null;
+        RateLimit files = null;
+        RateLimit bytes = null;
+        Checksum digests = null;
+        CopyJournal copyJournal = null;
+
+        for (final CopyOption option: options) {
+            if (Objects.requireNonNull(option) == MoreCopyOption.SPARSE)
+                sparseCopy = true;
+            if (option == MoreCopyOption.PRESERVE_HARD_LINKS)
+                preserveLinks = true;
+            if (option == MoreCopyOption.SKIP_SPECIAL_FILES)
+                skipSpecial = true;
+            if (option == StandardCopyOption.COPY_ATTRIBUTES)
+                copyAttributes = true;
+            if (option instanceof SymbolicLinkMode)
+                symlinks = (SymbolicLinkMode) option;
+            if (option instanceof Checksum)
+                digests = (Checksum) option;
+            if (option instanceof CopyJournal)
+                copyJournal = (CopyJournal) option;
+            if (!(option instanceof RateLimit))
+                continue;
+            final RateLimit limit = (RateLimit) option;
+            if (limit.getUnit() == RateLimit.Unit.FILES)
+                files = limit;
+            else
+                bytes = limit;
+        }
+
+        sparse = sparseCopy;
+        hardLinks = preserveLinks ? new HardLinks() : null;
+        skipSpecialFiles = skipSpecial;
+        linkMode = symlinks;
+        filesLimit = files;
+        bytesLimit = bytes;
+        attributes = copyAttributes ? new AttributeCopier() : null;
+        checksum = digests;
+        journal = copyJournal;
+    }
+
+    /**
+     * Copy an entry which is not a directory, preserving hard links if
+     * required
+     *
+     * <p>Symbolic links are handled according to the {@link SymbolicLinkMode}
+     * option; a symbolic link is copied as a link with {@link
+     * SymbolicLinkMode#COPY}, and skipped with {@link SymbolicLinkMode#SKIP}.
+     * With {@link SymbolicLinkMode#FOLLOW}, the tree walk reads the attributes
+     * of link targets, and only reports broken links as links; this method
+     * then fails with a {@link NoSuchFileException}.</p>
+     *
+     * <p>Special files are skipped if {@link
+     * MoreCopyOption#SKIP_SPECIAL_FILES} was specified.</p>
+     *
+     * <p>If {@link MoreCopyOption#PRESERVE_HARD_LINKS} was specified and the
+     * source file has several names, only the first of these names copied by
+     * this copier is actually copied; targets of the other names are created
+     * as hard links to this first copy. If the destination filesystem does not
+     * support hard links, or if the first copy failed, the file is copied
+     * again.</p>
+     *
+     * <p>Otherwise, this method behaves like {@link #copy(Path, Path)}, and
+     * then copies the attributes of the source if {@link
+     * StandardCopyOption#COPY_ATTRIBUTES} was specified.</p>
+     *
+     * <p>If a {@link CopyJournal} was specified, an existing target is
+     * deleted first, since it can only be left over by an interrupted run of
+     * the copy, and the entry is recorded in the journal once copied.</p>
+     *
+     * @param source the entry to copy
+     * @param target the target of the copy (must not exist)
+     * @param attrs the attributes of the source, as read by the tree walk
+     * @return the number of bytes copied ({@code 0} if the target was created
+     * as a link, or if the entry was skipped)
+     * @throws UnsupportedOperationException the entry is a symbolic link and no
+     * symbolic link mode was specified, or it is a special file and {@link
+     * MoreCopyOption#SKIP_SPECIAL_FILES} was not specified
+     * @throws FileAlreadyExistsException target already exists
+     * @throws IOException other I/O error
+     */
+    public long copy(final Path source, final Path target,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        if (journal == null)
+            return copyEntry(source, target, attrs, false);
+
+        Files.deleteIfExists(target);
+        final long bytes = copyEntry(source, target, attrs, false);
+        journal.completed(source, target);
+        return bytes;
+    }
+
+    /**
+     * Copy an entry which is not a directory over an existing target
+     *
+     * <p>This method behaves like {@link #copy(Path, Path,
+     * BasicFileAttributes)}, except that the entry is first copied to a
+     * temporary name in the directory of the target, and is then moved over
+     * the target, atomically if the filesystem supports it. If the copy fails,
+     * the target is therefore left untouched.</p>
+     *
+     * <p>The target may also not exist. If it exists, it must not be a
+     * directory.</p>
+     *
+     * @param source the entry to copy
+     * @param target the target of the copy
+     * @param attrs the attributes of the source, as read by the tree walk
+     * @return the number of bytes copied ({@code 0} if the target was created
+     * as a link, or if the entry was skipped)
+     * @throws UnsupportedOperationException see {@link #copy(Path, Path,
+     * BasicFileAttributes)}
+     * @throws IOException failed to copy the entry, or to move it over the
+     * target
+     */
+    public long replace(final Path source, final Path target,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        final long bytes = copyEntry(source, target, attrs, true);
+
+        if (journal != null)
+            journal.completed(source, target);
+        return bytes;
+    }
+
+    /**
+     * Tell whether an entry was completely copied by an earlier, interrupted
+     * run of the copy
+     *
+     * <p>This method always returns false unless a {@link CopyJournal} was
+     * specified.</p>
+     *
+     * @param source the source entry
+     * @return true if the entry need not be copied again
+     */
+    public boolean isCompleted(final Path source)
+    {
+        return journal != null && journal.isCompleted(source);
+    }
+
+    /**
+     * Record that a source directory and all of its entries have been copied
+     *
+     * <p>This method does nothing unless a {@link CopyJournal} was
+     * specified.</p>
+     *
+     * @param source the source directory
+     * @throws IOException failed to write to the journal
+     */
+    public void subtreeCompleted(final Path source)
+        throws IOException
+    {
+        if (journal != null)
+            journal.completed(source);
+    }
+
+    /*
+     * When replacing, the hard links registry still records the final target,
+     * and the first copy of a file is only reported once moved into place, so
+     * that other names link to the final target.
+     */
+    private long copyEntry(final Path source, final Path target,
+        final BasicFileAttributes attrs, final boolean replace)
+        throws IOException
+    {
+        if (attrs.isSymbolicLink()) {
+            if (!replace)
+                return copyLink(source, target);
+            final Path temporary = temporaryName(target);
+            try {
+                copyLink(source, temporary);
+                if (Files.exists(temporary, LinkOption.NOFOLLOW_LINKS))
+                    moveOver(temporary, target);
+            } catch (IOException | RuntimeException e) {
+                deleteTemporary(temporary, e);
+                throw e;
+            }
+            return 0L;
+        }
+
+        if (attrs.isOther()) {
+            if (skipSpecialFiles)
+                return 0L;
+            throw new UnsupportedOperationException(source.toString());
+        }
+
+        final HardLinks.Entry entry = hardLinks == null ? null
+            : hardLinks.register(source, attrs, target);
+
+        if (entry == null) {
+            copyFile(source, target, attrs, replace);
+            return attrs.size();
+        }
+
+        if (entry.isFirst(target)) {
+            boolean success = false;
+            try {
+                copyFile(source, target, attrs, replace);
+                success = true;
+            } finally {
+                hardLinks.copied(entry, success);
+            }
+            return attrs.size();
+        }
+
+        final Path name = replace ? temporaryName(target) : target;
+
+        try {
+            if (hardLinks.link(entry, name)) {
+                if (replace)
+                    moveOver(name, target);
+                return 0L;
+            }
+        } catch (UnsupportedOperationException ignored) {
+            // The destination does not support hard links; copy
+        } catch (IOException | RuntimeException e) {
+            if (replace)
+                deleteTemporary(name, e);
+            throw e;
+        }
+
+        copyFile(source, target, attrs, replace);
+        return attrs.size();
+    }
+
+    /**
+     * Copy a regular file
+     *
+     * @param source the file to copy
+     * @param target the target of the copy (must not exist)
+     * @throws FileAlreadyExistsException target already exists
+     * @throws IOException other I/O error
+     */
+    @SuppressWarnings("ObjectEquality")
+    public void copy(final Path source, final Path target)
+        throws IOException
+    {
+        if (filesLimit != null)
+            filesLimit.acquire(1L);
+
+        if (!sparse && bytesLimit == null && checksum == null
+            && source.getFileSystem().provider()
+            == target.getFileSystem().provider()) {
+            Files.copy(source, target);
+            return;
+        }
+
+        final MessageDigest digest = checksum == null ? null
+            : checksum.newDigest();
+        boolean created = false;
+
+        try (
+            final SeekableByteChannel in = open(source, READ);
+        ) {
+            try (
+                final SeekableByteChannel out
+                    = open(target, sparse ? CREATE_SPARSE : CREATE);
+            ) {
+                created = true;
+                if (sparse)
+                    sparseCopy(in, out, digest);
+                else if (digest == null && in instanceof FileChannel
+                    && out instanceof FileChannel)
+                    transfer((FileChannel) in, out);
+                else
+                    bufferCopy(in, out, digest);
+            }
+            if (digest != null)
+                checksum.record(source, verify(source, target, digest));
+        } catch (IOException e) {
+            if (created)
+                deletePartial(target, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Record the attributes of a source directory whose copy has just been
+     * created
+     *
+     * <p>This method does nothing unless {@link
+     * StandardCopyOption#COPY_ATTRIBUTES} was specified.</p>
+     *
+     * @param source the source directory
+     * @param attrs the attributes of the source, as read by the tree walk
+     * @throws IOException failed to read the attributes of the source
+     *
+     * @see #directoryCompleted(Path, Path)
+     */
+    public void directoryCreated(final Path source,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        if (attributes != null)
+            attributes.directoryCreated(source, attrs);
+    }
+
+    /**
+     * Apply the attributes of a source directory to its copy, once all of its
+     * entries have been copied
+     *
+     * <p>This method does nothing unless {@link
+     * StandardCopyOption#COPY_ATTRIBUTES} was specified, and {@link
+     * #directoryCreated(Path, BasicFileAttributes)} was called for this
+     * source.</p>
+     *
+     * @param source the source directory
+     * @param target the copy of the source directory
+     * @throws IOException failed to apply the attributes
+     */
+    public void directoryCompleted(final Path source, final Path target)
+        throws IOException
+    {
+        if (attributes != null)
+            attributes.directoryCompleted(source, target);
+    }
+
+    private void copyFile(final Path source, final Path target,
+        final BasicFileAttributes attrs, final boolean replace)
+        throws IOException
+    {
+        if (!replace) {
+            copy(source, target);
+            if (attributes != null)
+                attributes.copy(source, attrs, target);
+            return;
+        }
+
+        final Path temporary = temporaryName(target);
+
+        try {
+            copy(source, temporary);
+            if (attributes != null)
+                attributes.copy(source, attrs, temporary);
+            moveOver(temporary, target);
+        } catch (IOException | RuntimeException e) {
+            deleteTemporary(temporary, e);
+            throw e;
+        }
+    }
+
+    /*
+     * A name which does not exist yet in the directory of the target
+     */
+    private static Path temporaryName(final Path target)
+    {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final String name = '.' + target.getFileName().toString() + ".tmp-";
+        Path temporary;
+
+        do {
+            temporary = target.resolveSibling(name
+                + Long.toString(random.nextLong() >>> 1, 36));
+        } while (Files.exists(temporary, LinkOption.NOFOLLOW_LINKS));
+
+        return temporary;
+    }
+
+    private static void moveOver(final Path temporary, final Path target)
+        throws IOException
+    {
+        try {
+            // Some providers require both options to replace the target
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ignored) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteTemporary(final Path temporary,
+        final Throwable failure)
+    {
+        try {
+            Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private long copyLink(final Path source, final Path target)
+        throws IOException
+    {
+        if (linkMode == null)
+            throw new UnsupportedOperationException(source.toString());
+
+        switch (linkMode) {
+            case COPY:
+                final Path linkTarget = Files.readSymbolicLink(source);
+                final Path empty = target.getFileSystem().getPath("");
+                Files.createSymbolicLink(target,
+                    MorePaths.resolve(empty, linkTarget));
+                return 0L;
+            case FOLLOW:
+                throw new NoSuchFileException(source.toString(), null,
+                    "broken symbolic link");
+            case SKIP:
+                return 0L;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private static SeekableByteChannel open(final Path path,
+        final OpenOption... options)
+        throws IOException
+    {
+        try {
+            return FileChannel.open(path, options);
+        } catch (UnsupportedOperationException ignored) {
+            return Files.newByteChannel(path, options);
+        }
+    }
+
+    private void transfer(final FileChannel in, final WritableByteChannel out)
+        throws IOException
+    {
+        final long size = in.size();
+        long position = 0L;
+        long count;
+        long transferred;
+
+        while (position < size) {
+            count = size - position;
+            if (bytesLimit != null)
+                count = Math.min(count, BufferPool.BUFFER_SIZE);
+            transferred = in.transferTo(position, count, out);
+            // The file has shrunk under our feet
+            if (transferred <= 0L)
+                break;
+            position += transferred;
+            if (bytesLimit != null)
+                bytesLimit.acquire(transferred);
+        }
+    }
+
+    /*
+     * Return the digest of the source, after having checked the target if
+     * required
+     */
+    private byte[] verify(final Path source, final Path target,
+        final MessageDigest digest)
+        throws IOException
+    {
+        final byte[] expected = digest.digest();
+
+        if (!checksum.isVerifying())
+            return expected;
+
+        final ByteBuffer buffer = pool.acquire();
+
+        try (
+            final SeekableByteChannel in = open(target, READ);
+        ) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            pool.release(buffer);
+        }
+
+        final byte[] actual = digest.digest();
+
+        if (!MessageDigest.isEqual(expected, actual))
+            throw new ChecksumMismatchException(source.toString(),
+                target.toString(), checksum.getAlgorithm() + " mismatch: "
+                + Checksum.toHex(expected) + " != " + Checksum.toHex(actual));
+
+        return expected;
+    }
+
+    private void bufferCopy(final ReadableByteChannel in,
+        final WritableByteChannel out, @Nullable final MessageDigest digest)
+        throws IOException
+    {
+        final ByteBuffer buffer = pool.acquire();
+
+        try {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                if (digest != null) {
+                    digest.update(buffer);
+                    buffer.rewind();
+                }
+                if (bytesLimit != null)
+                    bytesLimit.acquire(buffer.remaining());
+                while (buffer.hasRemaining())
+                    out.write(buffer);
+                buffer.clear();
+            }
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    private void sparseCopy(final ReadableByteChannel in,
+        final SeekableByteChannel out, @Nullable final MessageDigest digest)
+        throws IOException
+    {
+        final ByteBuffer buffer = pool.acquire();
+        long position = 0L;
+        int limit;
+        int start;
+        int end;
+
+        try {
+            while (fill(in, buffer)) {
+                if (digest != null) {
+                    digest.update(buffer);
+                    buffer.rewind();
+                }
+                limit = buffer.limit();
+                if (bytesLimit != null)
+                    bytesLimit.acquire(limit);
+                start = 0;
+                // Write runs of blocks which are not all zeroes
+                while (start < limit) {
+                    end = start;
+                    while (end < limit && !isZeroes(buffer, end, limit))
+                        end = Math.min(end + BLOCK_SIZE, limit);
+                    if (end > start) {
+                        buffer.limit(end).position(start);
+                        out.position(position + start);
+                        while (buffer.hasRemaining())
+                            out.write(buffer);
+                        buffer.limit(limit);
+                        start = end;
+                    } else
+                        start = Math.min(start + BLOCK_SIZE, limit);
+                }
+                position += limit;
+                buffer.clear();
+            }
+            // If the file ends with a hole, extend it to its full size
+            if (out.size() < position) {
+                buffer.clear();
+                buffer.put((byte) 0).flip();
+                out.position(position - 1L);
+                while (buffer.hasRemaining())
+                    out.write(buffer);
+            }
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /*
+     * Fill a buffer as much as possible, and flip it; return false if there
+     * was nothing left to read
+     */
+    private static boolean fill(final ReadableByteChannel in,
+        final ByteBuffer buffer)
+        throws IOException
+    {
+        while (buffer.hasRemaining())
+            if (in.read(buffer) == -1)
+                break;
+        buffer.flip();
+        return buffer.hasRemaining();
+    }
+
+    /*
+     * Tell whether the block starting at an offset of a buffer only contains
+     * zeroes
+     */
+    private static boolean isZeroes(final ByteBuffer buffer, final int offset,
+        final int limit)
+    {
+        final int end = Math.min(offset + BLOCK_SIZE, limit);
+        int index = offset;
+
+        for (; index + 8 <= end; index += 8)
+            if (buffer.getLong(index) != 0L)
+                return false;
+
+        for (; index < end; index++)
+            if (buffer.get(index) != 0)
+                return false;
+
+        return true;
+    }
+
+    private static void deletePartial(final Path target, final IOException e)
+    {
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e2) {
+            e.addSuppressed(e2);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.fge.filesystem.copy;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Map of hard linked source files to their first copy
+ *
+ * Only files with more than one name are recorded, and a file is removed from
+ * the map once all of its names have been seen; the map therefore only holds
+ * files with names which have not been copied yet.
+ *
+ * With a parallel walk, several names of the same file may be copied
+ * concurrently; the first one to register copies the file, and the others wait
+ * for this copy to complete before linking to it. If that copy fails, they
+ * copy the file themselves.
+ */
+@ParametersAreNonnullByDefault
+final class HardLinks
+{
+    private static final String NLINK = "unix:nlink";
+
+    private final ConcurrentMap<Object, Entry> entries
+        = new ConcurrentHashMap<>();
+
+    private volatile boolean supported = true;
+
+    /*
+     * Register a source file about to be copied to a target
+     *
+     * Returns null if the file is not hard linked. Otherwise, if the returned
+     * entry is for this target (see isFirst()), the caller must copy the file
+     * then call copied(); if not, the caller must link to it using link().
+     */
+    @Nullable
+    Entry register(final Path source, final BasicFileAttributes attrs,
+        final Path target)
+        throws IOException
+    {
+        final Object key = attrs.fileKey();
+
+        if (key == null)
+            return null;
+
+        final int nlink = linkCount(source);
+
+        if (nlink < 2)
+            return null;
+
+        final Entry entry = new Entry(key, target, nlink);
+        final Entry existing = entries.putIfAbsent(key, entry);
+
+        return existing == null ? entry : existing;
+    }
+
+    /*
+     * Record the outcome of the copy of the first name of a file
+     */
+    void copied(final Entry entry, final boolean success)
+    {
+        entry.success = success;
+        entry.done.countDown();
+        release(entry);
+    }
+
+    /*
+     * Link a target to the first copy of a file
+     *
+     * Returns false if the first copy failed, in which case the caller should
+     * copy the file itself.
+     */
+    boolean link(final Entry entry, final Path target)
+        throws IOException
+    {
+        try {
+            entry.done.await();
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for "
+                + "the copy of " + entry.target);
+        }
+
+        try {
+            if (!entry.success)
+                return false;
+            Files.createLink(target, entry.target);
+            return true;
+        } finally {
+            release(entry);
+        }
+    }
+
+    private void release(final Entry entry)
+    {
+        if (entry.remaining.decrementAndGet() == 0)
+            entries.remove(entry.key, entry);
+    }
+
+    private int linkCount(final Path source)
+        throws IOException
+    {
+        if (!supported)
+            return 1;
+
+        try {
+            return (Integer) Files.getAttribute(source, NLINK,
+                LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException | IllegalArgumentException
+            ignored) {
+            supported = false;
+            return 1;
+        }
+    }
+
+    static final class Entry
+    {
+        private final Object key;
+        private final Path target;
+        private final AtomicInteger remaining;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean success;
+
+        private Entry(final Object key, final Path target, final int nlink)
+        {
+            this.key = key;
+            this.target = target;
+            remaining = new AtomicInteger(nlink);
+        }
+
+        @SuppressWarnings("ObjectEquality")
+        boolean isFirst(final Path target)
+        {
+            return this.target == target;
+        }
+    }
+}
@@ -4,6 +4,9 @@ import com.github.fge.filesystem.MoreFiles;
 import com.github.fge.filesystem.MorePaths;
 import com.github.fge.filesystem.RecursionMode;
 import com.github.fge.filesystem.exceptions.RecursiveCopyException;
+import com.github.fge.filesystem.exceptions.RecursiveOperationException;
+import com.github.fge.filesystem.progress.ProgressListener;
+import com.github.fge.filesystem.walk.ParallelTreeWalker;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -21,10 +24,15 @@ import java.util.Objects;
  * keep going} operation
  *
  * <p>This visitor will collect all {@link IOException}s it encounters and add
- * them (as a {@link Throwable#addSuppressed(Throwable) suppressed} exception)
- * to the {@link RecursiveCopyException} argument.</p>
+ * them to the {@link RecursiveCopyException} argument (see {@link
+ * RecursiveOperationException#addFailure(IOException)}).</p>
+ *
+ * <p>This visitor is thread safe, and can therefore be used with a {@link
+ * ParallelTreeWalker}.</p>
  *
  * @see MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)
+ * @see FileCopier
+ * @see ProgressListener
  */
 @ParametersAreNonnullByDefault
 public final class KeepGoingCopyVisitor
@@ -33,9 +41,8 @@ public final class KeepGoingCopyVisitor
     private final RecursiveCopyException exception;
     private final Path src;
     private final Path dst;
-
-    private Path currentSrc;
-    private Path currentDst;
+    private final FileCopier copier;
+    private final ProgressListener listener;
 
     /**
      * Constructor
@@ -46,10 +53,42 @@ public final class KeepGoingCopyVisitor
      */
     public KeepGoingCopyVisitor(final Path src, final Path dst,
         final RecursiveCopyException exception)
+    {
+        this(src, dst, exception, new FileCopier());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param src the source to copy recursively
+     * @param dst the destination of the copy
+     * @param exception the exception to collect other exceptions
+     * @param copier the file copier to use
+     */
+    public KeepGoingCopyVisitor(final Path src, final Path dst,
+        final RecursiveCopyException exception, final FileCopier copier)
+    {
+        this(src, dst, exception, copier, ProgressListener.NONE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param src the source to copy recursively
+     * @param dst the destination of the copy
+     * @param exception the exception to collect other exceptions
+     * @param copier the file copier to use
+     * @param listener the progress listener to notify
+     */
+    public KeepGoingCopyVisitor(final Path src, final Path dst,
+        final RecursiveCopyException exception, final FileCopier copier,
+        final ProgressListener listener)
     {
         this.exception = Objects.requireNonNull(exception);
         this.src = Objects.requireNonNull(src);
         this.dst = Objects.requireNonNull(dst);
+        this.copier = Objects.requireNonNull(copier);
+        this.listener = Objects.requireNonNull(listener);
     }
 
     @Override
@@ -57,14 +96,20 @@ public final class KeepGoingCopyVisitor
         final BasicFileAttributes attrs)
         throws IOException
     {
-        currentSrc = src.relativize(dir);
-        currentDst = MorePaths.resolve(dst, currentSrc);
+        if (copier.isCompleted(dir))
+            return FileVisitResult.SKIP_SUBTREE;
+        listener.entryVisited(dir, attrs);
+        final long start = System.nanoTime();
+        final Path currentSrc = src.relativize(dir);
+        final Path currentDst = MorePaths.resolve(dst, currentSrc);
         // We must take empty path into account.
         // Note that the destination directory will have been created for us.
         try {
             Files.createDirectories(currentDst);
+            copier.directoryCreated(dir, attrs);
+            listener.entryCompleted(dir, 0L, System.nanoTime() - start);
         } catch (IOException e) {
-            exception.addSuppressed(e);
+            failed(e);
         }
         return FileVisitResult.CONTINUE;
     }
@@ -74,14 +119,17 @@ public final class KeepGoingCopyVisitor
         final BasicFileAttributes attrs)
         throws IOException
     {
-        if (!attrs.isRegularFile())
-            throw new UnsupportedOperationException();
-        currentSrc = src.relativize(file);
-        currentDst = MorePaths.resolve(dst, currentSrc);
+        if (copier.isCompleted(file))
+            return FileVisitResult.CONTINUE;
+        listener.entryVisited(file, attrs);
+        final long start = System.nanoTime();
+        final Path currentSrc = src.relativize(file);
+        final Path currentDst = MorePaths.resolve(dst, currentSrc);
         try {
-            Files.copy(file, currentDst);
+            final long bytes = copier.copy(file, currentDst, attrs);
+            listener.entryCompleted(file, bytes, System.nanoTime() - start);
         } catch (IOException e) {
-            exception.addSuppressed(e);
+            failed(e);
         }
         return FileVisitResult.CONTINUE;
     }
@@ -91,7 +139,7 @@ public final class KeepGoingCopyVisitor
         final IOException exc)
         throws IOException
     {
-        exception.addSuppressed(exc);
+        failed(exc);
         return FileVisitResult.CONTINUE;
     }
 
@@ -101,7 +149,22 @@ public final class KeepGoingCopyVisitor
         throws IOException
     {
         if (exc != null)
-            exception.addSuppressed(exc);
+            failed(exc);
+        final Path currentDst = MorePaths.resolve(dst, src.relativize(dir));
+        try {
+            copier.directoryCompleted(dir, currentDst);
+            // Only record a subtree if nothing has failed so far
+            if (exception.getFailureCount() == 0L)
+                copier.subtreeCompleted(dir);
+        } catch (IOException e) {
+            failed(e);
+        }
         return FileVisitResult.CONTINUE;
     }
+
+    private void failed(final IOException e)
+    {
+        listener.entryFailed(e);
+        exception.addFailure(e);
+    }
 }
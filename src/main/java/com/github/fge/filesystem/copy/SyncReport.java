@@ -0,0 +1,109 @@
+package com.github.fge.filesystem.copy;
+
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.RecursionMode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Report of a recursive synchronization
+ *
+ * <p>All paths reported by this class are relative to the root of the
+ * synchronization: copied files are relative to the source, deleted entries
+ * are relative to the destination.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @see MoreFiles#syncRecursive(Path, Path, RecursionMode, CopyOption...)
+ */
+@ParametersAreNonnullByDefault
+public final class SyncReport
+{
+    private final Queue<Path> copied = new ConcurrentLinkedQueue<>();
+    private final Queue<Path> deleted = new ConcurrentLinkedQueue<>();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong copiedBytes = new AtomicLong();
+
+    /**
+     * Get the list of files which have been copied
+     *
+     * @return a list of paths
+     */
+    @Nonnull
+    public List<Path> getCopied()
+    {
+        return copyOf(copied);
+    }
+
+    /**
+     * Get the list of entries which have been deleted from the destination
+     *
+     * <p>When a directory is deleted, only this directory is reported, not
+     * its entries.</p>
+     *
+     * @return a list of paths
+     */
+    @Nonnull
+    public List<Path> getDeleted()
+    {
+        return copyOf(deleted);
+    }
+
+    /**
+     * Get the number of files which were left untouched
+     *
+     * @return the number of unchanged files
+     */
+    public long getUnchangedCount()
+    {
+        return unchanged.get();
+    }
+
+    /**
+     * Get the total size of the files which have been copied
+     *
+     * @return the number of bytes copied
+     */
+    public long getCopiedBytes()
+    {
+        return copiedBytes.get();
+    }
+
+    void addCopied(final Path path, final long size)
+    {
+        copied.add(path);
+        copiedBytes.addAndGet(size);
+    }
+
+    void addDeleted(final Path path)
+    {
+        deleted.add(path);
+    }
+
+    void addUnchanged()
+    {
+        unchanged.incrementAndGet();
+    }
+
+    private static List<Path> copyOf(final Collection<Path> paths)
+    {
+        return new ArrayList<>(paths);
+    }
+
+    @Override
+    public String toString()
+    {
+        return copied.size() + " file(s) copied (" + copiedBytes + " bytes), "
+            + deleted.size() + " entries deleted, " + unchanged
+            + " file(s) unchanged";
+    }
+}
@@ -0,0 +1,358 @@
+package com.github.fge.filesystem.copy;
+
+import com.github.fge.filesystem.MoreCopyOption;
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.MorePaths;
+import com.github.fge.filesystem.RecursionMode;
+import com.github.fge.filesystem.SymbolicLinkMode;
+import com.github.fge.filesystem.exceptions.RecursiveCopyException;
+import com.github.fge.filesystem.progress.ProgressListener;
+import com.github.fge.filesystem.walk.ParallelTreeWalker;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recursive synchronization {@link FileVisitor}
+ *
+ * <p>This visitor brings a destination in line with a source: missing
+ * directories are created, and files are only copied if they are missing from
+ * the destination or differ from the source. A file is considered unchanged if
+ * its size and last modification time (to the second) are the same in the
+ * source and the destination; if {@link MoreCopyOption#COMPARE_CONTENTS} is
+ * specified, contents are compared instead of modification times. The last
+ * modification time of copied files is set to the one of the source. Changed
+ * files are replaced using {@link FileCopier#replace(Path, Path,
+ * BasicFileAttributes)}, and therefore survive a failed copy.</p>
+ *
+ * <p>Symbolic links are copied as links if {@link SymbolicLinkMode#COPY} is
+ * specified, and are skipped with {@link SymbolicLinkMode#SKIP}; a link is
+ * considered unchanged if the destination is a link with the same target.
+ * Other entries which are not regular files (symbolic links if no mode was
+ * specified, special files) cannot be synchronized, and are reported as
+ * failures.</p>
+ *
+ * <p>If {@link MoreCopyOption#DELETE_EXTRANEOUS} is specified, destination
+ * entries which do not exist in the source are deleted; destination entries
+ * whose type differs from the source entry are always replaced.</p>
+ *
+ * <p>If a {@link ProgressListener} is passed as an option, it is notified of
+ * the progress of the synchronization; unchanged files are reported as
+ * completed, with no bytes copied.</p>
+ *
+ * <p>If an exception is passed to the constructor, this visitor operates in
+ * {@link RecursionMode#KEEP_GOING keep going} mode and collects all errors
+ * into it; otherwise, it fails at the first error.</p>
+ *
+ * <p>This visitor is thread safe, and can therefore be used with a {@link
+ * ParallelTreeWalker}.</p>
+ *
+ * @see MoreFiles#syncRecursive(Path, Path, RecursionMode, CopyOption...)
+ * @see SyncReport
+ */
+@ParametersAreNonnullByDefault
+public final class SyncVisitor
+    implements FileVisitor<Path>
+{
+    private final BufferPool pool = BufferPool.getInstance();
+
+    private final Path src;
+    private final Path dst;
+    private final SyncReport report;
+    @Nullable
+    private final RecursiveCopyException exception;
+    private final RecursionMode mode;
+    private final FileCopier copier;
+    private final boolean deleteExtraneous;
+    private final boolean compareContents;
+    @Nullable
+    private final SymbolicLinkMode linkMode;
+    private final ProgressListener listener;
+
+    /**
+     * Constructor
+     *
+     * @param src the source of the synchronization
+     * @param dst the destination of the synchronization
+     * @param report the report to fill
+     * @param exception the exception to collect errors into (keep going mode),
+     * or {@code null} (fail fast mode)
+     * @param options the copy options
+     */
+    public SyncVisitor(final Path src, final Path dst, final SyncReport report,
+        @Nullable final RecursiveCopyException exception,
+        final CopyOption... options)
+    {
+        this.src = Objects.requireNonNull(src);
+        this.dst = Objects.requireNonNull(dst);
+        this.report = Objects.requireNonNull(report);
+        this.exception = exception;
+        mode = exception == null ? RecursionMode.FAIL_FAST
+            : RecursionMode.KEEP_GOING;
+        copier = new FileCopier(options);
+
+        boolean delete = false;
+        boolean compare = false;
+        SymbolicLinkMode symlinks = null;
+        ProgressListener progressListener = ProgressListener.NONE;
+
+        for (final CopyOption option: options) {
+            if (option == MoreCopyOption.DELETE_EXTRANEOUS)
+                delete = true;
+            if (option == MoreCopyOption.COMPARE_CONTENTS)
+                compare = true;
+            if (option instanceof SymbolicLinkMode)
+                symlinks = (SymbolicLinkMode) option;
+            if (option instanceof ProgressListener)
+                progressListener = (ProgressListener) option;
+        }
+
+        deleteExtraneous = delete;
+        compareContents = compare;
+        linkMode = symlinks;
+        listener = progressListener;
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(final Path dir,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        listener.entryVisited(dir, attrs);
+
+        final long start = System.nanoTime();
+        final Path target = MorePaths.resolve(dst, src.relativize(dir));
+
+        try {
+            final BasicFileAttributes targetAttrs = readAttributes(target);
+            if (targetAttrs == null || !targetAttrs.isDirectory()) {
+                if (targetAttrs != null)
+                    delete(target);
+                Files.createDirectories(target);
+            }
+            listener.entryCompleted(dir, 0L, System.nanoTime() - start);
+        } catch (IOException e) {
+            failed(e);
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+
+        if (deleteExtraneous)
+            deleteExtraneous(dir, target);
+
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(final Path file,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        final boolean link = attrs.isSymbolicLink() && linkMode != null;
+
+        if (link && linkMode == SymbolicLinkMode.SKIP)
+            return FileVisitResult.CONTINUE;
+
+        listener.entryVisited(file, attrs);
+
+        if (!(attrs.isRegularFile() || link)) {
+            failed(new FileSystemException(file.toString(), null,
+                "not a regular file"));
+            return FileVisitResult.CONTINUE;
+        }
+
+        final long start = System.nanoTime();
+        final Path relative = src.relativize(file);
+        final Path target = MorePaths.resolve(dst, relative);
+
+        try {
+            final BasicFileAttributes targetAttrs = readAttributes(target);
+            if (targetAttrs != null
+                && isUnchanged(file, attrs, target, targetAttrs)) {
+                report.addUnchanged();
+                listener.entryCompleted(file, 0L, System.nanoTime() - start);
+                return FileVisitResult.CONTINUE;
+            }
+            /*
+             * A changed entry is replaced once copied, so that it survives a
+             * failed copy; only directories are deleted first
+             */
+            if (targetAttrs == null)
+                copier.copy(file, target, attrs);
+            else if (!targetAttrs.isDirectory())
+                copier.replace(file, target, attrs);
+            else {
+                MoreFiles.deleteRecursive(target, mode);
+                copier.copy(file, target, attrs);
+            }
+            // Links are compared by target, their times need not be set
+            final long bytes = link ? 0L : attrs.size();
+            if (!link)
+                Files.getFileAttributeView(target,
+                    BasicFileAttributeView.class)
+                    .setTimes(attrs.lastModifiedTime(), null, null);
+            report.addCopied(relative, bytes);
+            listener.entryCompleted(file, bytes, System.nanoTime() - start);
+        } catch (IOException e) {
+            failed(e);
+        }
+
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(final Path file,
+        final IOException exc)
+        throws IOException
+    {
+        failed(exc);
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(final Path dir,
+        @Nullable final IOException exc)
+        throws IOException
+    {
+        if (exc != null)
+            failed(exc);
+        return FileVisitResult.CONTINUE;
+    }
+
+    private void deleteExtraneous(final Path dir, final Path target)
+        throws IOException
+    {
+        final List<Path> extraneous = new ArrayList<>();
+
+        try (
+            final DirectoryStream<Path> stream
+                = Files.newDirectoryStream(target);
+        ) {
+            for (final Path entry: stream)
+                if (!Files.exists(MorePaths.resolve(dir, entry.getFileName()),
+                    LinkOption.NOFOLLOW_LINKS))
+                    extraneous.add(entry);
+        } catch (IOException e) {
+            failed(e);
+            return;
+        }
+
+        for (final Path entry: extraneous)
+            try {
+                delete(entry);
+            } catch (IOException e) {
+                failed(e);
+            }
+    }
+
+    private void delete(final Path target)
+        throws IOException
+    {
+        MoreFiles.deleteRecursive(target, mode);
+        report.addDeleted(dst.relativize(target));
+    }
+
+    private boolean isUnchanged(final Path file,
+        final BasicFileAttributes attrs, final Path target,
+        final BasicFileAttributes targetAttrs)
+        throws IOException
+    {
+        if (attrs.isSymbolicLink())
+            return targetAttrs.isSymbolicLink()
+                && Files.readSymbolicLink(file).toString()
+                .equals(Files.readSymbolicLink(target).toString());
+
+        if (!targetAttrs.isRegularFile())
+            return false;
+
+        if (attrs.size() != targetAttrs.size())
+            return false;
+
+        if (compareContents)
+            return sameContents(file, target);
+
+        final FileTime srcTime = attrs.lastModifiedTime();
+        final FileTime dstTime = targetAttrs.lastModifiedTime();
+
+        return srcTime.to(TimeUnit.SECONDS) == dstTime.to(TimeUnit.SECONDS);
+    }
+
+    private boolean sameContents(final Path file, final Path target)
+        throws IOException
+    {
+        final ByteBuffer buf1 = pool.acquire();
+        final ByteBuffer buf2 = pool.acquire();
+
+        try (
+            final SeekableByteChannel in1 = Files.newByteChannel(file);
+            final SeekableByteChannel in2 = Files.newByteChannel(target);
+        ) {
+            while (true) {
+                fill(in1, buf1);
+                fill(in2, buf2);
+                if (!buf1.equals(buf2))
+                    return false;
+                if (!buf1.hasRemaining())
+                    return true;
+                buf1.clear();
+                buf2.clear();
+            }
+        } finally {
+            pool.release(buf1);
+            pool.release(buf2);
+        }
+    }
+
+    /*
+     * Fill a buffer as much as possible, and flip it
+     */
+    private static void fill(final ReadableByteChannel channel,
+        final ByteBuffer buffer)
+        throws IOException
+    {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) == -1)
+                break;
+        buffer.flip();
+    }
+
+    @Nullable
+    private static BasicFileAttributes readAttributes(final Path path)
+        throws IOException
+    {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException ignored) {
+            return null;
+        }
+    }
+
+    private void failed(final IOException e)
+        throws IOException
+    {
+        listener.entryFailed(e);
+        if (exception == null)
+            throw e;
+        exception.addFailure(e);
+    }
+}
@@ -1,7 +1,10 @@
 package com.github.fge.filesystem.deletion;
 
+import com.github.fge.filesystem.DeleteOption;
 import com.github.fge.filesystem.MoreFiles;
 import com.github.fge.filesystem.RecursionMode;
+import com.github.fge.filesystem.progress.ProgressListener;
+import com.github.fge.filesystem.walk.ParallelTreeWalker;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
@@ -18,13 +21,18 @@ import java.util.Objects;
  *
  * <p>This visitor will fail at the first entry it fails to delete.</p>
  *
- * @see MoreFiles#deleteRecursive(Path, RecursionMode)
+ * <p>This visitor is thread safe, and can therefore be used with a {@link
+ * ParallelTreeWalker}.</p>
+ *
+ * @see MoreFiles#deleteRecursive(Path, RecursionMode, DeleteOption...)
+ * @see ProgressListener
  */
 @ParametersAreNonnullByDefault
 public final class FailFastDeletionVisitor
     implements FileVisitor<Path>
 {
     private final FileSystemProvider provider;
+    private final ProgressListener listener;
 
     /**
      * Constructor
@@ -32,8 +40,21 @@ public final class FailFastDeletionVisitor
      * @param victim the path to delete
      */
     public FailFastDeletionVisitor(final Path victim)
+    {
+        this(victim, ProgressListener.NONE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param victim the path to delete
+     * @param listener the progress listener to notify
+     */
+    public FailFastDeletionVisitor(final Path victim,
+        final ProgressListener listener)
     {
         provider = Objects.requireNonNull(victim).getFileSystem().provider();
+        this.listener = Objects.requireNonNull(listener);
     }
 
     @SuppressWarnings("RedundantThrowsDeclaration")
@@ -42,6 +63,7 @@ public final class FailFastDeletionVisitor
         final BasicFileAttributes attrs)
         throws IOException
     {
+        listener.entryVisited(dir, attrs);
         return FileVisitResult.CONTINUE;
     }
 
@@ -50,7 +72,8 @@ public final class FailFastDeletionVisitor
         final BasicFileAttributes attrs)
         throws IOException
     {
-        provider.delete(file);
+        listener.entryVisited(file, attrs);
+        delete(file);
         return FileVisitResult.CONTINUE;
     }
 
@@ -59,6 +82,7 @@ public final class FailFastDeletionVisitor
         final IOException exc)
         throws IOException
     {
+        listener.entryFailed(exc);
         throw exc;
     }
 
@@ -67,8 +91,22 @@ public final class FailFastDeletionVisitor
         final IOException exc)
         throws IOException
     {
-        provider.delete(dir);
+        delete(dir);
         return FileVisitResult.CONTINUE;
     }
 
+    private void delete(final Path path)
+        throws IOException
+    {
+        final long start = System.nanoTime();
+
+        try {
+            provider.delete(path);
+        } catch (IOException e) {
+            listener.entryFailed(e);
+            throw e;
+        }
+
+        listener.entryCompleted(path, 0L, System.nanoTime() - start);
+    }
 }
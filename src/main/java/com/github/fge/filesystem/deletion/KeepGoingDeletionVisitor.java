@@ -1,8 +1,12 @@
 package com.github.fge.filesystem.deletion;
 
+import com.github.fge.filesystem.DeleteOption;
 import com.github.fge.filesystem.MoreFiles;
 import com.github.fge.filesystem.RecursionMode;
 import com.github.fge.filesystem.exceptions.RecursiveDeletionException;
+import com.github.fge.filesystem.exceptions.RecursiveOperationException;
+import com.github.fge.filesystem.progress.ProgressListener;
+import com.github.fge.filesystem.walk.ParallelTreeWalker;
 
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
@@ -17,16 +21,21 @@ import java.util.Objects;
  * operation
  *
  * <p>This visitor will collect all {@link IOException}s it encounters into the
- * {@link RecursiveDeletionException} argument (as a {@link
- * Throwable#addSuppressed(Throwable) suppressed} exception).</p>
+ * {@link RecursiveDeletionException} argument (see {@link
+ * RecursiveOperationException#addFailure(IOException)}).</p>
  *
- * @see MoreFiles#deleteRecursive(Path, RecursionMode)
+ * <p>This visitor is thread safe, and can therefore be used with a {@link
+ * ParallelTreeWalker}.</p>
+ *
+ * @see MoreFiles#deleteRecursive(Path, RecursionMode, DeleteOption...)
+ * @see ProgressListener
  */
 public final class KeepGoingDeletionVisitor
     implements FileVisitor<Path>
 {
     private final FileSystemProvider provider;
     private final RecursiveDeletionException exception;
+    private final ProgressListener listener;
 
     /**
      * Constructor
@@ -36,9 +45,24 @@ public final class KeepGoingDeletionVisitor
      */
     public KeepGoingDeletionVisitor(final Path victim,
         final RecursiveDeletionException exception)
+    {
+        this(victim, exception, ProgressListener.NONE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param victim the path to delete recursively
+     * @param exception the exception to add suppressed exceptions to
+     * @param listener the progress listener to notify
+     */
+    public KeepGoingDeletionVisitor(final Path victim,
+        final RecursiveDeletionException exception,
+        final ProgressListener listener)
     {
         provider = Objects.requireNonNull(victim).getFileSystem().provider();
         this.exception = Objects.requireNonNull(exception);
+        this.listener = Objects.requireNonNull(listener);
     }
 
     @Override
@@ -46,6 +70,7 @@ public final class KeepGoingDeletionVisitor
         final BasicFileAttributes attrs)
         throws IOException
     {
+        listener.entryVisited(dir, attrs);
         return FileVisitResult.CONTINUE;
     }
 
@@ -54,11 +79,8 @@ public final class KeepGoingDeletionVisitor
         final BasicFileAttributes attrs)
         throws IOException
     {
-        try {
-            provider.delete(file);
-        } catch (IOException ioException) {
-            exception.addSuppressed(ioException);
-        }
+        listener.entryVisited(file, attrs);
+        delete(file);
         return FileVisitResult.CONTINUE;
     }
 
@@ -67,7 +89,7 @@ public final class KeepGoingDeletionVisitor
         final IOException exc)
         throws IOException
     {
-        exception.addSuppressed(exc);
+        failed(exc);
         return FileVisitResult.CONTINUE;
     }
 
@@ -77,15 +99,29 @@ public final class KeepGoingDeletionVisitor
         throws IOException
     {
         if (exc != null) {
-            exception.addSuppressed(exc);
+            failed(exc);
             return FileVisitResult.CONTINUE;
         }
 
+        delete(dir);
+        return FileVisitResult.CONTINUE;
+    }
+
+    private void delete(final Path path)
+    {
+        final long start = System.nanoTime();
+
         try {
-            provider.delete(dir);
+            provider.delete(path);
+            listener.entryCompleted(path, 0L, System.nanoTime() - start);
         } catch (IOException ioException) {
-            exception.addSuppressed(ioException);
+            failed(ioException);
         }
-        return FileVisitResult.CONTINUE;
+    }
+
+    private void failed(final IOException e)
+    {
+        listener.entryFailed(e);
+        exception.addFailure(e);
     }
 }
@@ -0,0 +1,213 @@
+package com.github.fge.filesystem.deletion;
+
+import com.github.fge.filesystem.DeleteOption;
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.RecursionMode;
+import com.github.fge.filesystem.exceptions.RecursiveDeletionException;
+import com.github.fge.filesystem.progress.ProgressListener;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Recursive deletion using {@link SecureDirectoryStream}s
+ *
+ * <p>Unlike the deletion visitors, which delete entries using their full
+ * paths, this class deletes entries relative to open directory handles. With
+ * the default filesystem provider on Linux, this means {@code unlinkat()}
+ * instead of {@code unlink()}: path components are not resolved again for each
+ * entry, and the deletion cannot be tricked into following a directory which
+ * was replaced with a symbolic link during the deletion. Symbolic links are
+ * never followed; the links themselves are deleted.</p>
+ *
+ * <p>Not all providers support secure directory streams; {@link
+ * #deleteRecursive(Path)} tells whether it could be used, and does nothing if
+ * not.</p>
+ *
+ * <p>Note that one directory handle is kept open for each level of the tree
+ * being deleted.</p>
+ *
+ * <p>If an exception is passed to the constructor, this class operates in
+ * {@link RecursionMode#KEEP_GOING keep going} mode and collects all errors
+ * into it; otherwise, it fails at the first error.</p>
+ *
+ * @see MoreFiles#deleteRecursive(Path, RecursionMode, DeleteOption...)
+ */
+@ParametersAreNonnullByDefault
+public final class SecureDirectoryDeleter
+{
+    @Nullable
+    private final RecursiveDeletionException exception;
+    private final ProgressListener listener;
+    private final AtomicBoolean cancelled;
+
+    /**
+     * Constructor
+     *
+     * @param exception the exception to collect errors into (keep going mode),
+     * or {@code null} (fail fast mode)
+     * @param listener the progress listener to notify
+     * @param cancelled a flag which, when set, stops the deletion
+     */
+    public SecureDirectoryDeleter(
+        @Nullable final RecursiveDeletionException exception,
+        final ProgressListener listener, final AtomicBoolean cancelled)
+    {
+        this.exception = exception;
+        this.listener = Objects.requireNonNull(listener);
+        this.cancelled = Objects.requireNonNull(cancelled);
+    }
+
+    /**
+     * Delete a directory recursively, if possible
+     *
+     * <p>If this method returns {@code false}, nothing has been deleted: either
+     * the victim is not a directory, it could not be read, or its
+     * filesystem does not support secure directory streams. Use the deletion
+     * visitors in this case.</p>
+     *
+     * @param victim the directory to delete
+     * @return true if the deletion was performed
+     * @throws IOException fail fast mode only: failed to delete an entry
+     */
+    public boolean deleteRecursive(final Path victim)
+        throws IOException
+    {
+        final BasicFileAttributes attrs;
+        final DirectoryStream<Path> stream;
+
+        try {
+            attrs = Files.readAttributes(victim, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+            if (!attrs.isDirectory())
+                return false;
+            stream = Files.newDirectoryStream(victim);
+        } catch (IOException ignored) {
+            // Let the caller's fallback report the error
+            return false;
+        }
+
+        if (!(stream instanceof SecureDirectoryStream)) {
+            stream.close();
+            return false;
+        }
+
+        listener.entryVisited(victim, attrs);
+
+        final boolean iterated;
+
+        try {
+            iterated = deleteEntries((SecureDirectoryStream<Path>) stream);
+        } finally {
+            stream.close();
+        }
+
+        if (!iterated)
+            return true;
+
+        final long start = System.nanoTime();
+
+        try {
+            Files.delete(victim);
+            listener.entryCompleted(victim, 0L, System.nanoTime() - start);
+        } catch (IOException e) {
+            failed(e);
+        }
+
+        return true;
+    }
+
+    /*
+     * Returns false if the deletion was cancelled or the directory could not be
+     * iterated over, in which case the directory must not be deleted
+     */
+    private boolean deleteEntries(final SecureDirectoryStream<Path> dir)
+        throws IOException
+    {
+        try {
+            for (final Path entry: dir) {
+                if (cancelled.get())
+                    return false;
+                deleteEntry(dir, entry);
+            }
+        } catch (DirectoryIteratorException e) {
+            failed(e.getCause());
+            return false;
+        }
+
+        return !cancelled.get();
+    }
+
+    private void deleteEntry(final SecureDirectoryStream<Path> dir,
+        final Path entry)
+        throws IOException
+    {
+        final Path name = entry.getFileName();
+        final BasicFileAttributes attrs;
+
+        try {
+            attrs = dir.getFileAttributeView(name, BasicFileAttributeView.class,
+                LinkOption.NOFOLLOW_LINKS).readAttributes();
+        } catch (IOException e) {
+            failed(e);
+            return;
+        }
+
+        listener.entryVisited(entry, attrs);
+
+        if (attrs.isDirectory()) {
+            final SecureDirectoryStream<Path> subdir;
+
+            try {
+                subdir = dir.newDirectoryStream(name,
+                    LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                failed(e);
+                return;
+            }
+
+            final boolean iterated;
+
+            try {
+                iterated = deleteEntries(subdir);
+            } finally {
+                subdir.close();
+            }
+
+            if (!iterated)
+                return;
+        }
+
+        final long start = System.nanoTime();
+
+        try {
+            if (attrs.isDirectory())
+                dir.deleteDirectory(name);
+            else
+                dir.deleteFile(name);
+            listener.entryCompleted(entry, 0L, System.nanoTime() - start);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void failed(final IOException e)
+        throws IOException
+    {
+        listener.entryFailed(e);
+        if (exception == null)
+            throw e;
+        exception.addFailure(e);
+    }
+}
@@ -0,0 +1,232 @@
+package com.github.fge.filesystem.deletion;
+
+import com.github.fge.filesystem.DeleteOption;
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.Parallelism;
+import com.github.fge.filesystem.RateLimit;
+import com.github.fge.filesystem.RecursionMode;
+import com.github.fge.filesystem.RecursiveOperationFuture;
+import com.github.fge.filesystem.progress.ProgressListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Deletion in the background, using tombstones
+ *
+ * <p>Deleting a large tree can take a long time. With this class, the victim
+ * is instead renamed atomically to a hidden tombstone in the same directory,
+ * which is then deleted in the background; the only operation the caller
+ * waits for is the rename.</p>
+ *
+ * <p>Tombstones are named {@code .tombstone-} followed by a random UUID. If
+ * the JVM exits before a tombstone is fully deleted, it is left over; use
+ * {@link #recover(Path)} on startup to schedule the deletion of leftover
+ * tombstones in a directory.</p>
+ *
+ * <p>Background deletions run on the executor supplied when creating an
+ * instance, in {@link RecursionMode#KEEP_GOING keep going} mode, with the
+ * options supplied at that time; they can be rate limited so as not to starve
+ * other I/O on the same device.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @see MoreFiles#deleteRecursiveAsync(Path, RecursionMode, Executor,
+ * DeleteOption...)
+ */
+@ParametersAreNonnullByDefault
+public final class Trash
+{
+    private static final String TOMBSTONE_PREFIX = ".tombstone-";
+
+    private final Executor executor;
+    private final DeleteOption[] options;
+
+    private Trash(final Executor executor, final DeleteOption[] options)
+    {
+        this.executor = executor;
+        this.options = options;
+    }
+
+    /**
+     * Create a trash deleting tombstones on a given executor
+     *
+     * <p>Only {@link Parallelism}, {@link ProgressListener} and {@link
+     * RateLimit#filesPerSecond(long) files per second} options are
+     * accepted.</p>
+     *
+     * @param executor the executor to run background deletions on
+     * @param options the options to use for background deletions
+     * @return a new trash
+     * @throws UnsupportedOperationException unsupported deletion option
+     */
+    @Nonnull
+    public static Trash using(final Executor executor,
+        final DeleteOption... options)
+    {
+        return create(executor, null, options);
+    }
+
+    /**
+     * Create a trash deleting tombstones on a given executor, at a limited
+     * rate
+     *
+     * <p>This is equivalent to passing a {@link RateLimit#filesPerSecond(long)
+     * files per second} limit as an option; the limit applies to all
+     * background deletions of this trash combined.</p>
+     *
+     * @param executor the executor to run background deletions on
+     * @param maxEntriesPerSecond the maximum number of entries to delete per
+     * second
+     * @param options the options to use for background deletions
+     * @return a new trash
+     * @throws IllegalArgumentException rate is zero or negative
+     * @throws UnsupportedOperationException unsupported deletion option
+     *
+     * @see #using(Executor, DeleteOption...)
+     */
+    @Nonnull
+    public static Trash using(final Executor executor,
+        final int maxEntriesPerSecond, final DeleteOption... options)
+    {
+        return create(executor, RateLimit.filesPerSecond(maxEntriesPerSecond),
+            options);
+    }
+
+    private static Trash create(final Executor executor,
+        @Nullable final RateLimit limit, final DeleteOption... options)
+    {
+        Objects.requireNonNull(executor);
+
+        final List<DeleteOption> list = new ArrayList<>();
+        ProgressListener listener = null;
+
+        if (limit != null)
+            list.add(limit);
+
+        for (final DeleteOption option: options) {
+            Objects.requireNonNull(option);
+            if (option instanceof Parallelism)
+                list.add(option);
+            else if (option instanceof RateLimit && ((RateLimit) option)
+                .getUnit() == RateLimit.Unit.FILES)
+                list.add(option);
+            else if (option instanceof ProgressListener)
+                listener = listener == null ? (ProgressListener) option
+                    : ProgressListener.compose((ProgressListener) option,
+                        listener);
+            else
+                throw new UnsupportedOperationException(option.toString());
+        }
+
+        if (listener != null)
+            list.add(listener);
+
+        return new Trash(executor, list.toArray(new DeleteOption[list.size()]));
+    }
+
+    /**
+     * Delete a path in the background
+     *
+     * <p>The victim is renamed to a tombstone in the same directory, and the
+     * tombstone is scheduled for deletion. When this method returns, the
+     * victim does not exist anymore.</p>
+     *
+     * <p>The rename is atomic; it therefore fails if the victim cannot be
+     * renamed within its directory (for instance, if it is a mount point). In
+     * this case, nothing is scheduled for deletion.</p>
+     *
+     * @param victim the victim
+     * @return a future for the background deletion of the tombstone
+     * @throws IllegalArgumentException the victim has no parent
+     * @throws AtomicMoveNotSupportedException the victim cannot be renamed
+     * atomically
+     * @throws IOException failed to rename the victim
+     *
+     * @see RecursiveOperationFuture
+     */
+    @Nonnull
+    public RecursiveOperationFuture discard(final Path victim)
+        throws IOException
+    {
+        final Path dir = victim.toAbsolutePath().getParent();
+
+        if (dir == null)
+            throw new IllegalArgumentException("cannot discard a root path");
+
+        final Path tombstone = dir.resolve(TOMBSTONE_PREFIX
+            + UUID.randomUUID());
+
+        Files.move(victim, tombstone, StandardCopyOption.ATOMIC_MOVE);
+
+        return schedule(tombstone);
+    }
+
+    /**
+     * Schedule the deletion of leftover tombstones in a directory
+     *
+     * <p>Call this method on startup for all directories in which {@link
+     * #discard(Path)} may have been used, in order to reclaim space from
+     * tombstones whose deletion was interrupted.</p>
+     *
+     * @param dir the directory to scan
+     * @return the futures for the background deletions of the tombstones
+     * found, if any
+     * @throws IOException failed to read the directory
+     */
+    @Nonnull
+    public List<RecursiveOperationFuture> recover(final Path dir)
+        throws IOException
+    {
+        final List<RecursiveOperationFuture> futures = new ArrayList<>();
+
+        try (
+            final DirectoryStream<Path> stream
+                = Files.newDirectoryStream(dir, TOMBSTONE_PREFIX + "*");
+        ) {
+            for (final Path tombstone: stream)
+                futures.add(schedule(tombstone));
+        }
+
+        return futures;
+    }
+
+    /**
+     * Tell whether a path is a tombstone
+     *
+     * <p>This can be used to filter out tombstones when listing directories in
+     * which {@link #discard(Path)} is used.</p>
+     *
+     * @param path the path
+     * @return true if the path is a tombstone
+     */
+    public static boolean isTombstone(final Path path)
+    {
+        final Path name = path.getFileName();
+        return name != null && name.toString().startsWith(TOMBSTONE_PREFIX);
+    }
+
+    private RecursiveOperationFuture schedule(final Path tombstone)
+    {
+        return MoreFiles.deleteRecursiveAsync(tombstone,
+            RecursionMode.KEEP_GOING, executor, options);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "trash (" + executor + ')';
+    }
+}
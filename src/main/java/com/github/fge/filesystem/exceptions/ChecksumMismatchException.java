@@ -0,0 +1,29 @@
+package com.github.fge.filesystem.exceptions;
+
+import com.github.fge.filesystem.Checksum;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.FileSystemException;
+
+/**
+ * Exception thrown when the digest of a copy differs from that of its source
+ *
+ * @see Checksum#verifying()
+ */
+@ParametersAreNonnullByDefault
+public final class ChecksumMismatchException
+    extends FileSystemException
+{
+    /**
+     * Constructor
+     *
+     * @param source the source of the copy
+     * @param target the target of the copy
+     * @param reason a description of the mismatch
+     */
+    public ChecksumMismatchException(final String source, final String target,
+        final String reason)
+    {
+        super(source, target, reason);
+    }
+}
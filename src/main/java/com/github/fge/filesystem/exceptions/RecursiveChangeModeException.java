@@ -0,0 +1,40 @@
+package com.github.fge.filesystem.exceptions;
+
+import com.github.fge.filesystem.ChangeModeOption;
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.RecursionMode;
+import com.github.fge.filesystem.posix.ChangeModeVisitor;
+
+import java.nio.file.Path;
+
+/**
+ * Exception thrown when a recursive permissions change in {@link
+ * RecursionMode#KEEP_GOING keep going} mode fails to complete without errors
+ *
+ * @see ChangeModeVisitor
+ * @see MoreFiles#changeModeRecursive(Path, String, RecursionMode,
+ * ChangeModeOption...)
+ */
+public final class RecursiveChangeModeException
+    extends RecursiveOperationException
+{
+    public RecursiveChangeModeException()
+    {
+    }
+
+    public RecursiveChangeModeException(final String message)
+    {
+        super(message);
+    }
+
+    public RecursiveChangeModeException(final String message,
+        final Throwable cause)
+    {
+        super(message, cause);
+    }
+
+    public RecursiveChangeModeException(final Throwable cause)
+    {
+        super(cause);
+    }
+}
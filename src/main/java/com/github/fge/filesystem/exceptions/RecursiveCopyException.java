@@ -4,7 +4,6 @@ import com.github.fge.filesystem.MoreFiles;
 import com.github.fge.filesystem.RecursionMode;
 import com.github.fge.filesystem.copy.KeepGoingCopyVisitor;
 
-import java.io.IOException;
 import java.nio.file.CopyOption;
 import java.nio.file.Path;
 
@@ -16,7 +15,7 @@ import java.nio.file.Path;
  * @see MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)
  */
 public final class RecursiveCopyException
-    extends IOException
+    extends RecursiveOperationException
 {
     public RecursiveCopyException()
     {
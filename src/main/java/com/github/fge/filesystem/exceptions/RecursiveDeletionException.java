@@ -1,10 +1,10 @@
 package com.github.fge.filesystem.exceptions;
 
+import com.github.fge.filesystem.DeleteOption;
 import com.github.fge.filesystem.MoreFiles;
 import com.github.fge.filesystem.RecursionMode;
 import com.github.fge.filesystem.deletion.KeepGoingDeletionVisitor;
 
-import java.io.IOException;
 import java.nio.file.Path;
 
 /**
@@ -12,10 +12,10 @@ import java.nio.file.Path;
  * keep going} mode fails to complete without errors
  *
  * @see KeepGoingDeletionVisitor
- * @see MoreFiles#deleteRecursive(Path, RecursionMode)
+ * @see MoreFiles#deleteRecursive(Path, RecursionMode, DeleteOption...)
  */
 public final class RecursiveDeletionException
-    extends IOException
+    extends RecursiveOperationException
 {
     public RecursiveDeletionException()
     {
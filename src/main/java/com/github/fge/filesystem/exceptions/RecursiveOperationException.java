@@ -0,0 +1,274 @@
+package com.github.fge.filesystem.exceptions;
+
+import com.github.fge.filesystem.RecursionMode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for exceptions thrown by recursive operations in {@link
+ * RecursionMode#KEEP_GOING keep going} mode
+ *
+ * <p>A recursive operation over a huge tree may fail for a very large number
+ * of entries; keeping all of these failures (and their stack traces) around
+ * could exhaust the heap. Failures are therefore recorded as follows:</p>
+ *
+ * <ul>
+ *     <li>the first {@link #MAX_SUPPRESSED} failures are kept as {@link
+ *     #getSuppressed() suppressed} exceptions;</li>
+ *     <li>further failures are only recorded as a one line description
+ *     (exception class and message), which you can obtain using {@link
+ *     #getFailureLog()}; these descriptions are spilled to a temporary file
+ *     when too many of them accumulate in memory, which is deleted once they
+ *     are read back;</li>
+ *     <li>all failures are counted, both globally and by exception class.</li>
+ * </ul>
+ *
+ * <p>This class is thread safe.</p>
+ */
+@ParametersAreNonnullByDefault
+public abstract class RecursiveOperationException
+    extends IOException
+{
+    /**
+     * Number of failures kept as suppressed exceptions
+     */
+    public static final int MAX_SUPPRESSED = 100;
+
+    // Visible for testing
+    static final int SPILL_THRESHOLD = 10_000;
+
+    private final AtomicLong failureCount = new AtomicLong();
+    private final ConcurrentMap<Class<? extends IOException>, AtomicLong>
+        countsByType = new ConcurrentHashMap<>();
+
+    private final List<String> pending = new ArrayList<>();
+    @Nullable
+    private transient Path spillFile = null;
+    private long lostCount = 0L;
+
+    protected RecursiveOperationException()
+    {
+    }
+
+    protected RecursiveOperationException(final String message)
+    {
+        super(message);
+    }
+
+    protected RecursiveOperationException(final String message,
+        final Throwable cause)
+    {
+        super(message, cause);
+    }
+
+    protected RecursiveOperationException(final Throwable cause)
+    {
+        super(cause);
+    }
+
+    /**
+     * Record a failure
+     *
+     * @param failure the failure
+     */
+    public final void addFailure(final IOException failure)
+    {
+        final Class<? extends IOException> type = failure.getClass();
+
+        AtomicLong count = countsByType.get(type);
+
+        if (count == null) {
+            final AtomicLong newCount = new AtomicLong();
+            count = countsByType.putIfAbsent(type, newCount);
+            if (count == null)
+                count = newCount;
+        }
+
+        count.incrementAndGet();
+
+        if (failureCount.incrementAndGet() <= MAX_SUPPRESSED) {
+            addSuppressed(failure);
+            return;
+        }
+
+        log(type.getName() + ": " + failure.getMessage());
+    }
+
+    /**
+     * Get the total number of failures
+     *
+     * @return the number of failures
+     */
+    public final long getFailureCount()
+    {
+        return failureCount.get();
+    }
+
+    /**
+     * Get the number of failures by exception class
+     *
+     * @return a map of failure counts
+     */
+    @Nonnull
+    public final Map<Class<? extends IOException>, Long> getFailureCounts()
+    {
+        final Map<Class<? extends IOException>, Long> ret = new HashMap<>();
+
+        for (final Map.Entry<Class<? extends IOException>, AtomicLong> entry:
+            countsByType.entrySet())
+            ret.put(entry.getKey(), entry.getValue().get());
+
+        return ret;
+    }
+
+    /**
+     * Get the descriptions of failures which were not kept as suppressed
+     * exceptions
+     *
+     * <p>If descriptions had to be spilled to a temporary file and this file
+     * could not be written, these descriptions are lost; their number is then
+     * reported as the last element of the returned list.</p>
+     *
+     * <p>Descriptions spilled to a temporary file are read back into memory,
+     * and the file is deleted.</p>
+     *
+     * @return a list of failure descriptions
+     * @throws IOException failed to read back the spilled descriptions
+     *
+     * @see #getSpillFile()
+     */
+    @Nonnull
+    public final synchronized List<String> getFailureLog()
+        throws IOException
+    {
+        if (spillFile != null) {
+            pending.addAll(0, Files.readAllLines(spillFile,
+                StandardCharsets.UTF_8));
+            final Path file = spillFile;
+            spillFile = null;
+            SpillFiles.delete(file);
+        }
+
+        final List<String> ret = new ArrayList<>(pending);
+
+        if (lostCount != 0L)
+            ret.add(lostCount + " failure description(s) lost");
+
+        return ret;
+    }
+
+    /**
+     * Get the temporary file failure descriptions were spilled to, if any
+     *
+     * <p>This file is deleted when the {@link #getFailureLog() failure log}
+     * is read, or else when the JVM exits; you may also delete it
+     * yourself.</p>
+     *
+     * @return the path to the file, or {@code null} if no spilling happened,
+     * or if the failure log was read since
+     */
+    @Nullable
+    public final synchronized Path getSpillFile()
+    {
+        return spillFile;
+    }
+
+    @Override
+    public String getMessage()
+    {
+        final String message = super.getMessage();
+        final long count = failureCount.get();
+
+        if (count <= MAX_SUPPRESSED)
+            return message;
+
+        final String summary = count + " failures (" + MAX_SUPPRESSED
+            + " suppressed, see the failure log for the others)";
+        return message == null ? summary : message + ": " + summary;
+    }
+
+    private synchronized void log(final String description)
+    {
+        pending.add(description);
+
+        if (pending.size() < SPILL_THRESHOLD)
+            return;
+
+        try {
+            if (spillFile == null)
+                spillFile = SpillFiles.create();
+            Files.write(spillFile, pending, StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+        } catch (IOException | UnsupportedOperationException ignored) {
+            lostCount += pending.size();
+        }
+
+        pending.clear();
+    }
+
+    /*
+     * Spill files which have not been read back are deleted by a single
+     * shutdown hook; File#deleteOnExit() would instead register each of them
+     * until the JVM exits, even once deleted.
+     */
+    private static final class SpillFiles
+    {
+        private static final Set<Path> FILES = Collections.newSetFromMap(
+            new ConcurrentHashMap<Path, Boolean>());
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (final Path file: FILES)
+                        try {
+                            Files.deleteIfExists(file);
+                        } catch (IOException ignored) {
+                            // Nothing more can be done
+                        }
+                }
+            });
+        }
+
+        private SpillFiles()
+        {
+            throw new Error("nice try!");
+        }
+
+        static Path create()
+            throws IOException
+        {
+            final Path file = Files.createTempFile("failures", ".log");
+            FILES.add(file);
+            return file;
+        }
+
+        static void delete(final Path file)
+        {
+            try {
+                Files.deleteIfExists(file);
+                FILES.remove(file);
+            } catch (IOException ignored) {
+                // The shutdown hook will try again
+            }
+        }
+    }
+}
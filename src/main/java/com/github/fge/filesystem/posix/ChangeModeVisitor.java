@@ -0,0 +1,190 @@
+package com.github.fge.filesystem.posix;
+
+import com.github.fge.filesystem.ChangeModeOption;
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.RecursionMode;
+import com.github.fge.filesystem.exceptions.RecursiveChangeModeException;
+import com.github.fge.filesystem.walk.ParallelTreeWalker;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recursive POSIX permissions change {@link FileVisitor}
+ *
+ * <p>This visitor applies a {@link PermissionsSet} to all entries of a tree.
+ * Permissions are only written if they actually change.</p>
+ *
+ * <p>Symbolic links encountered during the walk are ignored, as the {@code
+ * chmod} command does.</p>
+ *
+ * <p>Directories are handled so that the walk can proceed even if the change
+ * removes read or search permissions: permissions which are added are set
+ * before the entries are visited, and permissions which are removed are only
+ * removed once all entries have been visited.</p>
+ *
+ * <p>If an exception is passed to the constructor, this visitor operates in
+ * {@link RecursionMode#KEEP_GOING keep going} mode and collects all errors
+ * into it; otherwise, it fails at the first error.</p>
+ *
+ * <p>This visitor is thread safe, and can therefore be used with a {@link
+ * ParallelTreeWalker}.</p>
+ *
+ * @see MoreFiles#changeModeRecursive(Path, String, RecursionMode,
+ * ChangeModeOption...)
+ * @see MoreFiles#changeModeRecursive(Path, int, RecursionMode,
+ * ChangeModeOption...)
+ */
+@ParametersAreNonnullByDefault
+public final class ChangeModeVisitor
+    implements FileVisitor<Path>
+{
+    private final Set<Path> pending
+        = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+
+    private final PermissionsSet permissionsSet;
+    @Nullable
+    private final RecursiveChangeModeException exception;
+
+    /**
+     * Constructor
+     *
+     * @param permissionsSet the permissions change to apply
+     * @param exception the exception to collect errors into (keep going mode),
+     * or {@code null} (fail fast mode)
+     */
+    public ChangeModeVisitor(final PermissionsSet permissionsSet,
+        @Nullable final RecursiveChangeModeException exception)
+    {
+        this.permissionsSet = Objects.requireNonNull(permissionsSet);
+        this.exception = exception;
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(final Path dir,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        try {
+            final Set<PosixFilePermission> before = getPermissions(dir, attrs);
+            final Set<PosixFilePermission> after
+                = permissionsSet.modify(before);
+
+            if (after.equals(before))
+                return FileVisitResult.CONTINUE;
+
+            /*
+             * Only add permissions for now; if some permissions are removed,
+             * modifying the union will yield the final set (see
+             * postVisitDirectory())
+             */
+            final Set<PosixFilePermission> union = EnumSet.copyOf(after);
+            union.addAll(before);
+
+            if (!union.equals(after))
+                pending.add(dir);
+            if (!union.equals(before))
+                Files.setPosixFilePermissions(dir, union);
+        } catch (IOException e) {
+            failed(e);
+        }
+
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(final Path file,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        if (attrs.isSymbolicLink())
+            return FileVisitResult.CONTINUE;
+
+        try {
+            apply(file, attrs);
+        } catch (IOException e) {
+            failed(e);
+        }
+
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(final Path file,
+        final IOException exc)
+        throws IOException
+    {
+        failed(exc);
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(final Path dir,
+        @Nullable final IOException exc)
+        throws IOException
+    {
+        if (exc != null)
+            failed(exc);
+
+        if (!pending.remove(dir))
+            return FileVisitResult.CONTINUE;
+
+        /*
+         * Permissions were changed by preVisitDirectory(), so the attributes
+         * read by the walk are stale
+         */
+        try {
+            apply(dir, null);
+        } catch (IOException e) {
+            failed(e);
+        }
+
+        return FileVisitResult.CONTINUE;
+    }
+
+    private void apply(final Path path,
+        @Nullable final BasicFileAttributes attrs)
+        throws IOException
+    {
+        final Set<PosixFilePermission> before = getPermissions(path, attrs);
+        final Set<PosixFilePermission> after = permissionsSet.modify(before);
+
+        if (!after.equals(before))
+            Files.setPosixFilePermissions(path, after);
+    }
+
+    /*
+     * The attributes read by the walk are often POSIX attributes already
+     * (they are on the default filesystem); only read permissions if not.
+     */
+    private static Set<PosixFilePermission> getPermissions(final Path path,
+        @Nullable final BasicFileAttributes attrs)
+        throws IOException
+    {
+        if (attrs instanceof PosixFileAttributes)
+            return ((PosixFileAttributes) attrs).permissions();
+        return Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    private void failed(final IOException e)
+        throws IOException
+    {
+        if (exception == null)
+            throw e;
+        exception.addFailure(e);
+    }
+}
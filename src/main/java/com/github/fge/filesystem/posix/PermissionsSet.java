@@ -21,8 +21,11 @@ public final class PermissionsSet
 
     public Set<PosixFilePermission> modify(final Set<PosixFilePermission> set)
     {
-        final Set<PosixFilePermission> ret = EnumSet.copyOf(set);
+        // Not EnumSet.copyOf(set): it fails if set is empty and not an EnumSet
+        final Set<PosixFilePermission> ret
+            = EnumSet.noneOf(PosixFilePermission.class);
 
+        ret.addAll(set);
         ret.removeAll(toRemove);
         ret.addAll(toAdd);
         return ret;
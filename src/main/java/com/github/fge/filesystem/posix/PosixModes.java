@@ -4,6 +4,7 @@ import com.github.fge.filesystem.exceptions.InvalidIntModeException;
 
 import javax.annotation.Nonnull;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.EnumSet;
@@ -18,6 +19,20 @@ public final class PosixModes
     private static final int PERMISSIONS_LENGTH = PERMISSIONS.length;
     private static final int INT_MODE_MAX = (1 << PERMISSIONS_LENGTH) - 1;
 
+    /*
+     * There are only 512 possible sets: compute them all once, so that
+     * converting an integer mode is a mere array lookup. These sets are
+     * shared, and must never be modified nor leaked to callers.
+     */
+    @SuppressWarnings("unchecked")
+    private static final EnumSet<PosixFilePermission>[] SETS
+        = (EnumSet<PosixFilePermission>[]) new EnumSet<?>[INT_MODE_MAX + 1];
+
+    static {
+        for (int intMode = 0; intMode <= INT_MODE_MAX; intMode++)
+            SETS[intMode] = buildSet(intMode);
+    }
+
     private PosixModes()
     {
         throw new Error("nice try!");
@@ -30,6 +45,9 @@ public final class PosixModes
      * you <strong>must</strong> prefix your integer with {@code 0} so that the
      * constant be octal, as in {@code 0755}.</p>
      *
+     * <p>The returned set is a new, modifiable set; it is a copy of a set
+     * computed in advance, so this method only allocates the copy.</p>
+     *
      * @param intMode the mode
      * @return a set of POSIX permissions
      * @throws InvalidIntModeException invalid integer mode
@@ -37,12 +55,68 @@ public final class PosixModes
      * @see Files#setPosixFilePermissions(Path, Set)
      */
     @Nonnull
-    public static Set<PosixFilePermission> intModeToPosix(int intMode)
+    public static Set<PosixFilePermission> intModeToPosix(final int intMode)
+    {
+        return sharedSet(intMode).clone();
+    }
+
+    /**
+     * Convert a set of {@link PosixFilePermission}s into an integer
+     *
+     * <p>This is the reverse operation of {@link #intModeToPosix(int)}.</p>
+     *
+     * @param perms the set of permissions
+     * @return the mode as an integer
+     *
+     * @see Files#getPosixFilePermissions(Path, LinkOption...)
+     */
+    public static int posixToIntMode(final Set<PosixFilePermission> perms)
+    {
+        int intMode = 0;
+
+        /*
+         * Do not iterate over the set: this would allocate an iterator
+         */
+        for (final PosixFilePermission perm: PERMISSIONS) {
+            intMode <<= 1;
+            if (perms.contains(perm))
+                intMode |= 1;
+        }
+
+        return intMode;
+    }
+
+    /**
+     * Build a permission change object setting permissions to an integer mode
+     *
+     * @param intMode the mode
+     * @return a permission change object
+     * @throws InvalidIntModeException invalid integer mode
+     *
+     * @see PermissionsSet#modify(Set)
+     */
+    @Nonnull
+    public static PermissionsSet toPermissionsSet(final int intMode)
+    {
+        // PermissionsSet never modifies the sets it is built with
+        return new PermissionsSet(sharedSet(intMode),
+            EnumSet.allOf(PosixFilePermission.class));
+    }
+
+    /*
+     * The precomputed set for an integer mode; callers must not modify it
+     */
+    static EnumSet<PosixFilePermission> sharedSet(final int intMode)
     {
         if ((intMode & INT_MODE_MAX) != intMode)
             throw new InvalidIntModeException();
 
-        final Set<PosixFilePermission> set
+        return SETS[intMode];
+    }
+
+    private static EnumSet<PosixFilePermission> buildSet(int intMode)
+    {
+        final EnumSet<PosixFilePermission> set
             = EnumSet.noneOf(PosixFilePermission.class);
 
         for (int i = 0; i < PERMISSIONS_LENGTH; i++) {
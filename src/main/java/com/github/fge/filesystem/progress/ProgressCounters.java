@@ -0,0 +1,146 @@
+package com.github.fge.filesystem.progress;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ProgressListener} maintaining counters
+ *
+ * <p>The counters of this class can be read from any thread while the
+ * operation is running; you can for instance sample them periodically in order
+ * to compute throughput numbers or detect stalls. Note that counters are read
+ * independently from each other, and can therefore be slightly out of sync
+ * with one another.</p>
+ *
+ * <p>An instance of this class can be reused for several operations; in this
+ * case, counters accumulate.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class ProgressCounters
+    extends ProgressListener
+{
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicLong visited = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    @Override
+    public void entryVisited(final Path path, final BasicFileAttributes attrs)
+    {
+        visited.incrementAndGet();
+    }
+
+    @Override
+    public void entryCompleted(final Path path, final long bytes,
+        final long nanos)
+    {
+        completed.incrementAndGet();
+        if (bytes != 0L)
+            this.bytes.addAndGet(bytes);
+        totalNanos.addAndGet(nanos);
+
+        long max;
+
+        do {
+            max = maxNanos.get();
+        } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+    }
+
+    @Override
+    public void entryFailed(final IOException exception)
+    {
+        failures.incrementAndGet();
+    }
+
+    /**
+     * Get the number of entries visited so far
+     *
+     * @return the number of visited entries
+     */
+    public long getVisitedCount()
+    {
+        return visited.get();
+    }
+
+    /**
+     * Get the number of entries successfully operated on so far
+     *
+     * @return the number of completed entries
+     */
+    public long getCompletedCount()
+    {
+        return completed.get();
+    }
+
+    /**
+     * Get the number of bytes copied so far
+     *
+     * @return the number of bytes
+     */
+    public long getBytes()
+    {
+        return bytes.get();
+    }
+
+    /**
+     * Get the number of errors so far
+     *
+     * @return the number of errors
+     */
+    public long getFailureCount()
+    {
+        return failures.get();
+    }
+
+    /**
+     * Get the total time spent operating on completed entries
+     *
+     * <p>When the operation runs in parallel, this will be greater than the
+     * elapsed time.</p>
+     *
+     * @param unit the time unit
+     * @return the total time, in the given unit
+     */
+    public long getTotalLatency(final TimeUnit unit)
+    {
+        return unit.convert(totalNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the longest time spent operating on a single entry
+     *
+     * @param unit the time unit
+     * @return the maximum time, in the given unit
+     */
+    public long getMaxLatency(final TimeUnit unit)
+    {
+        return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the time elapsed since this object was created
+     *
+     * @param unit the time unit
+     * @return the elapsed time, in the given unit
+     */
+    public long getElapsedTime(final TimeUnit unit)
+    {
+        return unit.convert(System.nanoTime() - startNanos,
+            TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        return visited + " entries visited, " + completed + " completed ("
+            + bytes + " bytes), " + failures + " failure(s)";
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.fge.filesystem.progress;
+
+import com.github.fge.filesystem.DeleteOption;
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.RecursionMode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/**
+ * Listener for the progress of recursive operations
+ *
+ * <p>Pass an instance of this class as an option to a recursive operation in
+ * order to be notified of its progress. All methods of this class do nothing;
+ * override the ones you are interested in.</p>
+ *
+ * <p>When a recursive operation runs in parallel, methods of a listener are
+ * called concurrently from several threads; implementations must therefore be
+ * thread safe. They should also be fast, since they are called for each
+ * entry.</p>
+ *
+ * @see ProgressCounters
+ * @see MoreFiles#copyRecursive(Path, Path, RecursionMode, CopyOption...)
+ * @see MoreFiles#deleteRecursive(Path, RecursionMode, DeleteOption...)
+ */
+@ParametersAreNonnullByDefault
+public abstract class ProgressListener
+    implements CopyOption, DeleteOption
+{
+    /**
+     * A listener which does nothing
+     */
+    public static final ProgressListener NONE = new ProgressListener()
+    {
+        @Override
+        public String toString()
+        {
+            return "no progress listener";
+        }
+    };
+
+    protected ProgressListener()
+    {
+    }
+
+    /**
+     * Combine two listeners into one
+     *
+     * @param first the first listener to notify
+     * @param second the second listener to notify
+     * @return a listener notifying both listeners, in order
+     */
+    @Nonnull
+    public static ProgressListener compose(final ProgressListener first,
+        final ProgressListener second)
+    {
+        Objects.requireNonNull(first);
+        Objects.requireNonNull(second);
+
+        return new ProgressListener()
+        {
+            @Override
+            public void entryVisited(final Path path,
+                final BasicFileAttributes attrs)
+            {
+                first.entryVisited(path, attrs);
+                second.entryVisited(path, attrs);
+            }
+
+            @Override
+            public void entryCompleted(final Path path, final long bytes,
+                final long nanos)
+            {
+                first.entryCompleted(path, bytes, nanos);
+                second.entryCompleted(path, bytes, nanos);
+            }
+
+            @Override
+            public void entryFailed(final IOException exception)
+            {
+                first.entryFailed(exception);
+                second.entryFailed(exception);
+            }
+
+            @Override
+            public String toString()
+            {
+                return first + ", " + second;
+            }
+        };
+    }
+
+    /**
+     * Called when an entry is visited, before it is operated on
+     *
+     * @param path the entry
+     * @param attrs the attributes of the entry
+     */
+    public void entryVisited(final Path path, final BasicFileAttributes attrs)
+    {
+    }
+
+    /**
+     * Called when the operation on an entry has completed successfully
+     *
+     * <p>For directories, this method is called once the directory itself has
+     * been operated on; for a deletion, this is after all of its entries have
+     * been deleted.</p>
+     *
+     * @param path the entry
+     * @param bytes the number of bytes copied for this entry (always 0 for
+     * directories and deletions)
+     * @param nanos the time spent operating on this entry, in nanoseconds
+     */
+    public void entryCompleted(final Path path, final long bytes,
+        final long nanos)
+    {
+    }
+
+    /**
+     * Called when an error occurs
+     *
+     * <p>In {@link RecursionMode#FAIL_FAST fail fast} mode, this is called
+     * once, with the exception which will be thrown.</p>
+     *
+     * @param exception the error
+     */
+    public void entryFailed(final IOException exception)
+    {
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.fge.filesystem.snapshot;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/*
+ * A source of entries in snapshot order: either a snapshot, or a live tree
+ */
+interface EntrySource
+{
+    /*
+     * Return the next entry, or null if there are no more entries
+     */
+    @Nullable
+    SnapshotEntry next()
+        throws IOException;
+}
@@ -0,0 +1,228 @@
+package com.github.fge.filesystem.snapshot;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * One entry of a {@link TreeSnapshot}
+ *
+ * <p>The path of an entry is relative to the root of the snapshot, with
+ * {@code /} as a separator. Entries of a snapshot are sorted by path, names
+ * being compared one by one (see {@link #comparePaths(String, String)}); this
+ * is the order in which a depth first walk visits entries if the entries of
+ * each directory are sorted by name.</p>
+ *
+ * <p>Instances of this class are immutable.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class SnapshotEntry
+{
+    /**
+     * The kind of an entry
+     */
+    public enum Kind
+    {
+        /**
+         * A directory
+         */
+        DIRECTORY,
+        /**
+         * A regular file
+         */
+        FILE,
+        /**
+         * A symbolic link
+         */
+        SYMBOLIC_LINK,
+        /**
+         * Anything else
+         */
+        OTHER,
+        ;
+
+        static Kind of(final BasicFileAttributes attrs)
+        {
+            if (attrs.isDirectory())
+                return DIRECTORY;
+            if (attrs.isRegularFile())
+                return FILE;
+            if (attrs.isSymbolicLink())
+                return SYMBOLIC_LINK;
+            return OTHER;
+        }
+    }
+
+    private final String path;
+    private final Kind kind;
+    private final long size;
+    private final long lastModified;
+    private final int mode;
+    @Nullable
+    private final byte[] digest;
+    @Nullable
+    private final String linkTarget;
+
+    SnapshotEntry(final String path, final Kind kind, final long size,
+        final long lastModified, final int mode, @Nullable final byte[] digest,
+        @Nullable final String linkTarget)
+    {
+        this.path = path;
+        this.kind = kind;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.mode = mode;
+        this.digest = digest;
+        this.linkTarget = linkTarget;
+    }
+
+    /**
+     * Compare two relative paths in snapshot order
+     *
+     * <p>Paths are compared name by name; this is the same as comparing them
+     * as strings, except that the separator sorts before any other
+     * character.</p>
+     *
+     * @param first the first path
+     * @param second the second path
+     * @return a negative integer, zero or a positive integer if the first path
+     * is respectively before, equal to or after the second one
+     */
+    public static int comparePaths(final String first, final String second)
+    {
+        final int length = Math.min(first.length(), second.length());
+        char c1, c2;
+
+        for (int i = 0; i < length; i++) {
+            c1 = first.charAt(i);
+            c2 = second.charAt(i);
+            if (c1 == c2)
+                continue;
+            if (c1 == '/')
+                return -1;
+            if (c2 == '/')
+                return 1;
+            return c1 - c2;
+        }
+
+        return first.length() - second.length();
+    }
+
+    /**
+     * Get the path of this entry, relative to the root of the snapshot
+     *
+     * @return the path
+     */
+    @Nonnull
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * Get the kind of this entry
+     *
+     * @return the kind
+     */
+    @Nonnull
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * Get the size of this entry
+     *
+     * @return the size, in bytes
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Get the last modification time of this entry
+     *
+     * @return the number of milliseconds since the epoch
+     */
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * Get the POSIX permissions of this entry, as an integer
+     *
+     * @return the permissions, or {@code -1} if the filesystem does not
+     * support POSIX permissions
+     */
+    public int getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Get the digest of the contents of this entry
+     *
+     * @return the digest, or {@code null} if the snapshot has no digests or
+     * this entry is not a regular file
+     */
+    @Nullable
+    public byte[] getDigest()
+    {
+        return digest == null ? null : digest.clone();
+    }
+
+    /**
+     * Get the target of this entry, if it is a symbolic link
+     *
+     * @return the target, as read from the link, or {@code null} if this
+     * entry is not a symbolic link
+     */
+    @Nullable
+    public String getLinkTarget()
+    {
+        return linkTarget;
+    }
+
+    /*
+     * Tell whether an entry with the same path has changed
+     *
+     * Directories only change if their kind or mode change, since their last
+     * modification time changes each time an entry is added or removed.
+     * Symbolic links change if their target changes. The contents of files
+     * are compared using digests if both entries have one, and using sizes
+     * and modification times otherwise.
+     */
+    boolean isModified(final SnapshotEntry other, final boolean digests)
+    {
+        if (kind != other.kind)
+            return true;
+        if (mode != -1 && other.mode != -1 && mode != other.mode)
+            return true;
+        if (kind == Kind.DIRECTORY)
+            return false;
+        if (kind == Kind.SYMBOLIC_LINK && linkTarget != null
+            && other.linkTarget != null)
+            return !linkTarget.equals(other.linkTarget);
+        if (size != other.size)
+            return true;
+        if (digests && digest != null && other.digest != null)
+            return !Arrays.equals(digest, other.digest);
+        return lastModified != other.lastModified;
+    }
+
+    @Nullable
+    byte[] rawDigest()
+    {
+        return digest;
+    }
+
+    @Override
+    public String toString()
+    {
+        return path + " (" + kind + ", " + size + " bytes)";
+    }
+}
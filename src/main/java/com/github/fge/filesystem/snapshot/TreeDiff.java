@@ -0,0 +1,197 @@
+package com.github.fge.filesystem.snapshot;
+
+import com.github.fge.filesystem.Checksum;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The differences between two states of a file tree
+ *
+ * <p>A diff is computed between a {@link TreeSnapshot} and either another
+ * snapshot or a live tree. Since both sides are read in snapshot order, they
+ * are compared in a single pass; when comparing against a live tree, the tree
+ * is walked as it is compared, and only the differences are held in
+ * memory.</p>
+ *
+ * <p>An entry is modified if its kind or permissions changed, or, for
+ * entries other than directories, if its contents changed. Contents are
+ * compared using digests if both sides have digests computed with the same
+ * algorithm, and using sizes and last modification times otherwise.</p>
+ *
+ * <p>All lists of paths are in snapshot order, that is, a directory always
+ * comes before its entries. Instances of this class are immutable.</p>
+ *
+ * @see com.github.fge.filesystem.MoreFiles#applyDiff(Path, Path, TreeDiff,
+ * com.github.fge.filesystem.RecursionMode, CopyOption...)
+ */
+@ParametersAreNonnullByDefault
+public final class TreeDiff
+{
+    private final List<String> added;
+    private final List<String> removed;
+    private final List<String> modified;
+
+    private TreeDiff(final List<String> added, final List<String> removed,
+        final List<String> modified)
+    {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.modified = Collections.unmodifiableList(modified);
+    }
+
+    /**
+     * Compute the differences between two snapshots
+     *
+     * @param before the older snapshot
+     * @param after the newer snapshot
+     * @return the differences
+     */
+    @Nonnull
+    public static TreeDiff between(final TreeSnapshot before,
+        final TreeSnapshot after)
+    {
+        try {
+            return compute(before.source(), after.source(),
+                sameAlgorithm(before.getAlgorithm(), after.getAlgorithm()));
+        } catch (IOException e) {
+            // Cannot happen: snapshots do not do I/O once read
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compute the differences between a snapshot and a live tree
+     *
+     * <p>The only supported option is {@link Checksum}: if specified, the
+     * digests of the regular files of the tree are computed, and are used to
+     * compare them if the snapshot has digests computed with the same
+     * algorithm.</p>
+     *
+     * @param before the snapshot
+     * @param root the root of the live tree
+     * @param options the options
+     * @return the differences
+     * @throws NotDirectoryException root is not a directory
+     * @throws UnsupportedOperationException unsupported option
+     * @throws IOException failed to read the tree
+     */
+    @Nonnull
+    public static TreeDiff between(final TreeSnapshot before, final Path root,
+        final CopyOption... options)
+        throws IOException
+    {
+        final Checksum checksum = TreeSnapshot.checksumOption(options);
+        final EntrySource after
+            = new TreeScanner(Objects.requireNonNull(root), checksum);
+        final boolean digests = checksum != null
+            && sameAlgorithm(before.getAlgorithm(), checksum.getAlgorithm());
+
+        return compute(before.source(), after, digests);
+    }
+
+    /**
+     * Get the paths of the entries which were added
+     *
+     * @return an unmodifiable list
+     */
+    @Nonnull
+    public List<String> getAdded()
+    {
+        return added;
+    }
+
+    /**
+     * Get the paths of the entries which were removed
+     *
+     * <p>If a directory was removed, all its entries are also listed.</p>
+     *
+     * @return an unmodifiable list
+     */
+    @Nonnull
+    public List<String> getRemoved()
+    {
+        return removed;
+    }
+
+    /**
+     * Get the paths of the entries which were modified
+     *
+     * @return an unmodifiable list
+     */
+    @Nonnull
+    public List<String> getModified()
+    {
+        return modified;
+    }
+
+    /**
+     * Tell whether both states of the tree are the same
+     *
+     * @return true if there are no differences
+     */
+    public boolean isEmpty()
+    {
+        return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "added: " + added + ", removed: " + removed + ", modified: "
+            + modified;
+    }
+
+    private static boolean sameAlgorithm(@Nullable final String first,
+        @Nullable final String second)
+    {
+        return first != null && first.equals(second);
+    }
+
+    private static TreeDiff compute(final EntrySource before,
+        final EntrySource after, final boolean digests)
+        throws IOException
+    {
+        final List<String> added = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+        final List<String> modified = new ArrayList<>();
+
+        SnapshotEntry left = before.next();
+        SnapshotEntry right = after.next();
+        int cmp;
+
+        while (left != null || right != null) {
+            if (left == null)
+                cmp = 1;
+            else if (right == null)
+                cmp = -1;
+            else
+                cmp = SnapshotEntry.comparePaths(left.getPath(),
+                    right.getPath());
+
+            if (cmp < 0) {
+                removed.add(left.getPath());
+                left = before.next();
+            } else if (cmp > 0) {
+                added.add(right.getPath());
+                right = after.next();
+            } else {
+                if (left.isModified(right, digests))
+                    modified.add(left.getPath());
+                left = before.next();
+                right = after.next();
+            }
+        }
+
+        return new TreeDiff(added, removed, modified);
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.fge.filesystem.snapshot;
+
+import com.github.fge.filesystem.Checksum;
+import com.github.fge.filesystem.posix.PosixModes;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/*
+ * A depth first walk of a live tree, producing entries in snapshot order
+ *
+ * The entries of each directory are sorted by name, and only the names of the
+ * directories being walked are held in memory. Entries which disappear
+ * between the listing of their directory and the reading of their attributes
+ * are ignored.
+ */
+@ParametersAreNonnullByDefault
+final class TreeScanner
+    implements EntrySource
+{
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Class<? extends BasicFileAttributes> attributesClass;
+    @Nullable
+    private final Checksum checksum;
+    private final Deque<Frame> stack = new ArrayDeque<>();
+
+    private ByteBuffer buffer = null;
+
+    TreeScanner(final Path root, @Nullable final Checksum checksum)
+        throws IOException
+    {
+        this.checksum = checksum;
+        attributesClass = root.getFileSystem().supportedFileAttributeViews()
+            .contains("posix") ? PosixFileAttributes.class
+            : BasicFileAttributes.class;
+
+        if (!Files.readAttributes(root, BasicFileAttributes.class)
+            .isDirectory())
+            throw new NotDirectoryException(root.toString());
+
+        push(root, "");
+    }
+
+    @Override
+    @Nullable
+    public SnapshotEntry next()
+        throws IOException
+    {
+        Frame frame;
+        String name;
+        Path path;
+        BasicFileAttributes attrs;
+
+        while (!stack.isEmpty()) {
+            frame = stack.peek();
+            if (!frame.names.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            name = frame.names.next();
+            path = frame.dir.resolve(name);
+            try {
+                attrs = Files.readAttributes(path, attributesClass,
+                    LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException ignored) {
+                continue;
+            }
+            final String relative = frame.prefix + name;
+            final SnapshotEntry entry = toEntry(relative, path, attrs);
+            if (attrs.isDirectory())
+                push(path, relative + '/');
+            return entry;
+        }
+
+        return null;
+    }
+
+    private void push(final Path dir, final String prefix)
+        throws IOException
+    {
+        final List<String> names = new ArrayList<>();
+
+        try (
+            final DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+        ) {
+            for (final Path entry: stream)
+                names.add(entry.getFileName().toString());
+        }
+
+        Collections.sort(names);
+        stack.push(new Frame(dir, prefix, names.iterator()));
+    }
+
+    private SnapshotEntry toEntry(final String relative, final Path path,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        final int mode = attrs instanceof PosixFileAttributes
+            ? PosixModes.posixToIntMode(
+                ((PosixFileAttributes) attrs).permissions())
+            : -1;
+        final byte[] digest = checksum != null && attrs.isRegularFile()
+            ? digest(path) : null;
+        final String linkTarget = attrs.isSymbolicLink()
+            ? Files.readSymbolicLink(path).toString() : null;
+
+        return new SnapshotEntry(relative, SnapshotEntry.Kind.of(attrs),
+            attrs.size(), attrs.lastModifiedTime().toMillis(), mode, digest,
+            linkTarget);
+    }
+
+    private byte[] digest(final Path path)
+        throws IOException
+    {
+        final MessageDigest digest = checksum.newDigest();
+
+        if (buffer == null)
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        try (
+            final SeekableByteChannel in = Files.newByteChannel(path);
+        ) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        final byte[] ret = digest.digest();
+        checksum.record(path, ret);
+        return ret;
+    }
+
+    private static final class Frame
+    {
+        private final Path dir;
+        private final String prefix;
+        private final Iterator<String> names;
+
+        private Frame(final Path dir, final String prefix,
+            final Iterator<String> names)
+        {
+            this.dir = dir;
+            this.prefix = prefix;
+            this.names = names;
+        }
+    }
+}
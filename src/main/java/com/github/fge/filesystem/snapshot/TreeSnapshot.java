@@ -0,0 +1,390 @@
+package com.github.fge.filesystem.snapshot;
+
+import com.github.fge.filesystem.Checksum;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A compact snapshot of the entries of a file tree
+ *
+ * <p>A snapshot records, for each entry below its root, its path relative to
+ * the root, its kind, size, last modification time, POSIX permissions (if the
+ * filesystem supports them), the target of symbolic links and, if a {@link
+ * Checksum} option was given when creating it, the digest of regular
+ * files. Entries are sorted in {@link
+ * SnapshotEntry#comparePaths(String, String) snapshot order}, which allows
+ * two snapshots, or a snapshot and a live tree, to be {@link TreeDiff
+ * compared} in a single pass.</p>
+ *
+ * <p>A snapshot is held in memory in its serialized form, in which each path
+ * only stores what differs from the previous path, and numbers are variable
+ * length integers; entries are decoded as they are iterated. The serialized
+ * form can be {@link #write(Path) written} to a file, and {@link #read(Path)
+ * read} back by mapping this file in memory.</p>
+ *
+ * <p>Instances of this class are immutable, and thread safe.</p>
+ *
+ * @see TreeDiff
+ */
+@ParametersAreNonnullByDefault
+public final class TreeSnapshot
+    implements Iterable<SnapshotEntry>
+{
+    // "TSNP"
+    private static final int MAGIC = 0x54534e50;
+    private static final byte VERSION = 2;
+
+    private static final SnapshotEntry.Kind[] KINDS
+        = SnapshotEntry.Kind.values();
+
+    private final ByteBuffer buffer;
+    private final int count;
+    @Nullable
+    private final String algorithm;
+
+    private TreeSnapshot(final ByteBuffer buffer)
+        throws IOException
+    {
+        this.buffer = buffer.asReadOnlyBuffer();
+
+        try {
+            if (this.buffer.getInt() != MAGIC)
+                throw new IOException("not a tree snapshot");
+            if (this.buffer.get() != VERSION)
+                throw new IOException("unsupported tree snapshot version");
+            count = this.buffer.getInt();
+            final byte[] name = new byte[this.buffer.get() & 0xff];
+            this.buffer.get(name);
+            algorithm = name.length == 0 ? null
+                : new String(name, StandardCharsets.UTF_8);
+        } catch (BufferUnderflowException ignored) {
+            throw new IOException("truncated tree snapshot");
+        }
+    }
+
+    /**
+     * Take a snapshot of a live tree
+     *
+     * <p>The only supported option is {@link Checksum}: if specified, the
+     * contents of all regular files are read to compute their digest.</p>
+     *
+     * @param root the root of the tree
+     * @param options the options
+     * @return a snapshot
+     * @throws NotDirectoryException root is not a directory
+     * @throws UnsupportedOperationException unsupported option
+     * @throws IOException failed to read the tree
+     */
+    @Nonnull
+    public static TreeSnapshot create(final Path root,
+        final CopyOption... options)
+        throws IOException
+    {
+        final Checksum checksum = checksumOption(options);
+        final EntrySource source
+            = new TreeScanner(Objects.requireNonNull(root), checksum);
+        final Encoder encoder = new Encoder();
+
+        for (SnapshotEntry entry = source.next(); entry != null;
+            entry = source.next())
+            encoder.add(entry);
+
+        return new TreeSnapshot(encoder.toBuffer(checksum == null ? null
+            : checksum.getAlgorithm()));
+    }
+
+    /**
+     * Read a snapshot from a file
+     *
+     * <p>The file is mapped in memory if its filesystem supports it, and read
+     * otherwise.</p>
+     *
+     * @param file the file
+     * @return a snapshot
+     * @throws IOException failed to read the file, or the file is not a valid
+     * snapshot
+     */
+    @Nonnull
+    public static TreeSnapshot read(final Path file)
+        throws IOException
+    {
+        try (
+            final FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ);
+        ) {
+            return new TreeSnapshot(channel.map(FileChannel.MapMode.READ_ONLY,
+                0L, channel.size()));
+        } catch (UnsupportedOperationException ignored) {
+            return new TreeSnapshot(ByteBuffer.wrap(Files.readAllBytes(file)));
+        }
+    }
+
+    /**
+     * Write this snapshot to a file
+     *
+     * <p>The file is created if it does not exist, and overwritten
+     * otherwise.</p>
+     *
+     * @param file the file
+     * @throws IOException failed to write the file
+     */
+    public void write(final Path file)
+        throws IOException
+    {
+        final ByteBuffer data = buffer.duplicate();
+        data.clear();
+
+        try (
+            final SeekableByteChannel channel = Files.newByteChannel(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ) {
+            while (data.hasRemaining())
+                channel.write(data);
+        }
+    }
+
+    /**
+     * Get the number of entries of this snapshot
+     *
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * Get the digest algorithm of this snapshot
+     *
+     * @return the algorithm, or {@code null} if this snapshot has no digests
+     */
+    @Nullable
+    public String getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    /**
+     * Get the size of the serialized form of this snapshot
+     *
+     * @return a number of bytes
+     */
+    public int getSerializedSize()
+    {
+        return buffer.capacity();
+    }
+
+    @Override
+    public Iterator<SnapshotEntry> iterator()
+    {
+        final ByteBuffer data = buffer.duplicate();
+
+        return new Iterator<SnapshotEntry>()
+        {
+            private byte[] path = new byte[0];
+            private int remaining = count;
+
+            @Override
+            public boolean hasNext()
+            {
+                return remaining > 0;
+            }
+
+            @Override
+            public SnapshotEntry next()
+            {
+                if (remaining == 0)
+                    throw new NoSuchElementException();
+                remaining--;
+                try {
+                    return decode(data);
+                } catch (BufferUnderflowException e) {
+                    throw new IllegalStateException("truncated snapshot", e);
+                }
+            }
+
+            private SnapshotEntry decode(final ByteBuffer data)
+            {
+                final int shared = readInt(data);
+                final int length = readInt(data);
+                path = Arrays.copyOf(path, shared + length);
+                data.get(path, shared, length);
+
+                final SnapshotEntry.Kind kind = KINDS[data.get()];
+                final long size = readLong(data);
+                final long lastModified = unzigzag(readLong(data));
+                final int mode = readInt(data) - 1;
+                final int digestLength = data.get() & 0xff;
+                byte[] digest = null;
+                if (digestLength != 0) {
+                    digest = new byte[digestLength];
+                    data.get(digest);
+                }
+                String linkTarget = null;
+                if (kind == SnapshotEntry.Kind.SYMBOLIC_LINK) {
+                    final byte[] target = new byte[readInt(data)];
+                    data.get(target);
+                    linkTarget = new String(target, StandardCharsets.UTF_8);
+                }
+
+                return new SnapshotEntry(
+                    new String(path, StandardCharsets.UTF_8), kind, size,
+                    lastModified, mode, digest, linkTarget);
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /*
+     * The entries of this snapshot, as an entry source
+     */
+    EntrySource source()
+    {
+        final Iterator<SnapshotEntry> iterator = iterator();
+
+        return new EntrySource()
+        {
+            @Nullable
+            @Override
+            public SnapshotEntry next()
+            {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+        };
+    }
+
+    @Nullable
+    static Checksum checksumOption(final CopyOption... options)
+    {
+        Checksum checksum = null;
+
+        for (final CopyOption option: options)
+            if (Objects.requireNonNull(option) instanceof Checksum)
+                checksum = (Checksum) option;
+            else
+                throw new UnsupportedOperationException(option.toString());
+
+        return checksum;
+    }
+
+    private static int readInt(final ByteBuffer data)
+    {
+        return (int) readLong(data);
+    }
+
+    private static long readLong(final ByteBuffer data)
+    {
+        long value = 0L;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = data.get();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        return value;
+    }
+
+    private static long unzigzag(final long value)
+    {
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    /*
+     * Serialization of entries, in order
+     */
+    private static final class Encoder
+    {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private byte[] previous = new byte[0];
+        private int count = 0;
+
+        private void add(final SnapshotEntry entry)
+        {
+            final byte[] path = entry.getPath()
+                .getBytes(StandardCharsets.UTF_8);
+            final int max = Math.min(path.length, previous.length);
+            int shared = 0;
+
+            while (shared < max && path[shared] == previous[shared])
+                shared++;
+
+            writeLong(shared);
+            writeLong(path.length - shared);
+            out.write(path, shared, path.length - shared);
+
+            out.write(entry.getKind().ordinal());
+            writeLong(entry.getSize());
+            writeLong((entry.getLastModified() << 1)
+                ^ (entry.getLastModified() >> 63));
+            writeLong(entry.getMode() + 1L);
+            final byte[] digest = entry.rawDigest();
+            if (digest == null)
+                out.write(0);
+            else {
+                out.write(digest.length);
+                out.write(digest, 0, digest.length);
+            }
+            if (entry.getKind() == SnapshotEntry.Kind.SYMBOLIC_LINK) {
+                final String linkTarget = entry.getLinkTarget();
+                final byte[] target = linkTarget == null ? new byte[0]
+                    : linkTarget.getBytes(StandardCharsets.UTF_8);
+                writeLong(target.length);
+                out.write(target, 0, target.length);
+            }
+
+            previous = path;
+            count++;
+        }
+
+        private void writeLong(final long value)
+        {
+            long v = value;
+
+            while ((v & ~0x7fL) != 0L) {
+                out.write((int) (v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+
+        private ByteBuffer toBuffer(@Nullable final String algorithm)
+        {
+            final byte[] name = algorithm == null ? new byte[0]
+                : algorithm.getBytes(StandardCharsets.UTF_8);
+            final ByteBuffer buffer
+                = ByteBuffer.allocate(10 + name.length + out.size());
+
+            buffer.putInt(MAGIC).put(VERSION).putInt(count)
+                .put((byte) name.length).put(name).put(out.toByteArray());
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
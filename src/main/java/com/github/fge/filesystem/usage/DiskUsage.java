@@ -0,0 +1,146 @@
+package com.github.fge.filesystem.usage;
+
+import com.github.fge.filesystem.MoreFiles;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The disk usage of a file tree
+ *
+ * <p>The apparent size is the sum of the sizes of the regular files of the
+ * tree, that is the number of bytes a copy of this tree would have to copy.
+ * The allocated size is an estimate of the space these files and directories
+ * take on disk: the API offers no way to read the number of blocks allocated
+ * to a file, so each size is rounded up to a multiple of {@link
+ * #BLOCK_SIZE}; sparse files are therefore overestimated.</p>
+ *
+ * <p>Files with several names in the tree only have their size counted once;
+ * all of their names are counted as files, though.</p>
+ *
+ * <p>The usage of the tree is broken down by top level entries, that is the
+ * entries of the root directory (see {@link #getEntries()}).</p>
+ *
+ * <p>Instances of this class are immutable.</p>
+ *
+ * @see MoreFiles#sizeOf(Path, CopyOption...)
+ */
+@ParametersAreNonnullByDefault
+public final class DiskUsage
+{
+    /**
+     * The block size used to estimate allocated sizes
+     */
+    public static final long BLOCK_SIZE = 4096L;
+
+    private final long apparentSize;
+    private final long allocatedSize;
+    private final long fileCount;
+    private final long directoryCount;
+    private final long otherCount;
+    private final long failureCount;
+    private final Map<Path, DiskUsage> entries;
+
+    DiskUsage(final long apparentSize, final long allocatedSize,
+        final long fileCount, final long directoryCount, final long otherCount,
+        final long failureCount, final Map<Path, DiskUsage> entries)
+    {
+        this.apparentSize = apparentSize;
+        this.allocatedSize = allocatedSize;
+        this.fileCount = fileCount;
+        this.directoryCount = directoryCount;
+        this.otherCount = otherCount;
+        this.failureCount = failureCount;
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Get the total size of regular files
+     *
+     * @return a number of bytes
+     */
+    public long getApparentSize()
+    {
+        return apparentSize;
+    }
+
+    /**
+     * Get an estimate of the space taken on disk
+     *
+     * @return a number of bytes
+     */
+    public long getAllocatedSize()
+    {
+        return allocatedSize;
+    }
+
+    /**
+     * Get the number of regular files
+     *
+     * @return the number of regular files
+     */
+    public long getFileCount()
+    {
+        return fileCount;
+    }
+
+    /**
+     * Get the number of directories, including the root if it is a directory
+     *
+     * @return the number of directories
+     */
+    public long getDirectoryCount()
+    {
+        return directoryCount;
+    }
+
+    /**
+     * Get the number of other entries (symbolic links, special files)
+     *
+     * @return the number of other entries
+     */
+    public long getOtherCount()
+    {
+        return otherCount;
+    }
+
+    /**
+     * Get the number of entries which could not be read
+     *
+     * <p>If this number is not zero, sizes and counts are lower bounds.</p>
+     *
+     * @return the number of failures
+     */
+    public long getFailureCount()
+    {
+        return failureCount;
+    }
+
+    /**
+     * Get the usage of each top level entry
+     *
+     * <p>Keys of the returned map are the entries of the root directory; the
+     * map is empty if the root is not a directory. The usages of top level
+     * entries have no entries themselves.</p>
+     *
+     * @return an unmodifiable map
+     */
+    @Nonnull
+    public Map<Path, DiskUsage> getEntries()
+    {
+        return entries;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "apparent size: " + apparentSize + ", allocated size: "
+            + allocatedSize + ", files: " + fileCount + ", directories: "
+            + directoryCount + ", other: " + otherCount + ", failures: "
+            + failureCount;
+    }
+}
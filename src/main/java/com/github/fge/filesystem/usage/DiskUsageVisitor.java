@@ -0,0 +1,244 @@
+package com.github.fge.filesystem.usage;
+
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.walk.ParallelTreeWalker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link FileVisitor} computing the {@link DiskUsage disk usage} of a tree
+ *
+ * <p>This visitor never fails: entries which cannot be read are counted as
+ * failures, and the walk goes on.</p>
+ *
+ * <p>Hard links are detected using the link count of files, which is read
+ * using the {@code "unix"} attribute view; if the filesystem does not support
+ * this view, the size of a file is counted once per name. Only files with
+ * names which have not been visited yet are remembered.</p>
+ *
+ * <p>When symbolic links are followed, a file can be reached through several
+ * paths whatever its link count: all files are then remembered, using their
+ * {@link BasicFileAttributes#fileKey() file key}, so that each is only counted
+ * once.</p>
+ *
+ * <p>This visitor is thread safe, and can therefore be used with a {@link
+ * ParallelTreeWalker}.</p>
+ *
+ * @see MoreFiles#sizeOf(Path, CopyOption...)
+ */
+@ParametersAreNonnullByDefault
+public final class DiskUsageVisitor
+    implements FileVisitor<Path>
+{
+    private static final String NLINK = "unix:nlink";
+
+    private final Path root;
+    private final boolean followLinks;
+    private final boolean unix;
+    private final Counters total = new Counters();
+    private final ConcurrentMap<Path, Counters> entries
+        = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Object, AtomicInteger> links
+        = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param root the root of the walk
+     */
+    public DiskUsageVisitor(final Path root)
+    {
+        this(root, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param root the root of the walk
+     * @param followLinks whether the walk follows symbolic links
+     */
+    public DiskUsageVisitor(final Path root, final boolean followLinks)
+    {
+        this.root = Objects.requireNonNull(root);
+        this.followLinks = followLinks;
+        unix = root.getFileSystem().supportedFileAttributeViews()
+            .contains("unix");
+    }
+
+    /**
+     * Get the disk usage of the entries visited so far
+     *
+     * @return the disk usage
+     */
+    @Nonnull
+    public DiskUsage getUsage()
+    {
+        final Map<Path, DiskUsage> map = new HashMap<>();
+
+        for (final Map.Entry<Path, Counters> entry: entries.entrySet())
+            map.put(entry.getKey(), entry.getValue().toUsage(
+                new HashMap<Path, DiskUsage>()));
+
+        return total.toUsage(map);
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(final Path dir,
+        final BasicFileAttributes attrs)
+    {
+        final long allocated = allocated(attrs.size());
+
+        for (final Counters counters: countersFor(dir)) {
+            counters.allocatedSize.addAndGet(allocated);
+            counters.directoryCount.incrementAndGet();
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(final Path file,
+        final BasicFileAttributes attrs)
+    {
+        if (!attrs.isRegularFile()) {
+            for (final Counters counters: countersFor(file))
+                counters.otherCount.incrementAndGet();
+            return FileVisitResult.CONTINUE;
+        }
+
+        final long size;
+
+        try {
+            size = isFirstName(file, attrs) ? attrs.size() : 0L;
+        } catch (IOException e) {
+            return visitFileFailed(file, e);
+        }
+
+        final long allocated = allocated(size);
+
+        for (final Counters counters: countersFor(file)) {
+            counters.apparentSize.addAndGet(size);
+            counters.allocatedSize.addAndGet(allocated);
+            counters.fileCount.incrementAndGet();
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(final Path file,
+        final IOException exc)
+    {
+        for (final Counters counters: countersFor(file))
+            counters.failureCount.incrementAndGet();
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(final Path dir,
+        @Nullable final IOException exc)
+    {
+        if (exc != null)
+            for (final Counters counters: countersFor(dir))
+                counters.failureCount.incrementAndGet();
+        return FileVisitResult.CONTINUE;
+    }
+
+    /*
+     * Tell whether this is the first name of a file seen by this visitor
+     */
+    private boolean isFirstName(final Path file,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        final Object key = attrs.fileKey();
+
+        if (key == null)
+            return true;
+
+        if (followLinks)
+            return links.putIfAbsent(key, new AtomicInteger()) == null;
+
+        if (!unix)
+            return true;
+
+        // The walk does not follow links, and neither must this read
+        final int nlink = (Integer) Files.getAttribute(file, NLINK,
+            LinkOption.NOFOLLOW_LINKS);
+
+        if (nlink < 2)
+            return true;
+
+        /*
+         * With a parallel walk, other names may decrement the count before the
+         * first one does; whichever name brings it to 0 removes the entry.
+         */
+        final AtomicInteger remaining = new AtomicInteger(nlink);
+        final AtomicInteger existing = links.putIfAbsent(key, remaining);
+        final AtomicInteger count = existing == null ? remaining : existing;
+
+        if (count.decrementAndGet() == 0)
+            links.remove(key, count);
+        return existing == null;
+    }
+
+    /*
+     * The counters to update for an entry: the total, and those of the top
+     * level entry it belongs to, if any
+     */
+    private Counters[] countersFor(final Path path)
+    {
+        if (path.equals(root))
+            return new Counters[] { total };
+
+        final Path top = root.resolve(root.relativize(path).getName(0));
+        Counters counters = entries.get(top);
+
+        if (counters == null) {
+            final Counters newCounters = new Counters();
+            counters = entries.putIfAbsent(top, newCounters);
+            if (counters == null)
+                counters = newCounters;
+        }
+
+        return new Counters[] { total, counters };
+    }
+
+    private static long allocated(final long size)
+    {
+        return (size + DiskUsage.BLOCK_SIZE - 1L) / DiskUsage.BLOCK_SIZE
+            * DiskUsage.BLOCK_SIZE;
+    }
+
+    private static final class Counters
+    {
+        private final AtomicLong apparentSize = new AtomicLong();
+        private final AtomicLong allocatedSize = new AtomicLong();
+        private final AtomicLong fileCount = new AtomicLong();
+        private final AtomicLong directoryCount = new AtomicLong();
+        private final AtomicLong otherCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+
+        private DiskUsage toUsage(final Map<Path, DiskUsage> entries)
+        {
+            return new DiskUsage(apparentSize.get(), allocatedSize.get(),
+                fileCount.get(), directoryCount.get(), otherCount.get(),
+                failureCount.get(), entries);
+        }
+    }
+}
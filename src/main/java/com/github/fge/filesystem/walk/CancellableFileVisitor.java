@@ -0,0 +1,84 @@
+package com.github.fge.filesystem.walk;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link FileVisitor} which can be cancelled
+ *
+ * <p>This visitor delegates to another visitor until its cancellation flag is
+ * set; from then on, all of its methods return {@link
+ * FileVisitResult#TERMINATE} without calling the delegate, which stops the
+ * walk.</p>
+ *
+ * <p>This visitor is thread safe if its delegate is.</p>
+ *
+ * @param <T> the type of file references
+ *
+ * @see Files#walkFileTree(Path, FileVisitor)
+ * @see ParallelTreeWalker
+ */
+@ParametersAreNonnullByDefault
+public final class CancellableFileVisitor<T>
+    implements FileVisitor<T>
+{
+    private final FileVisitor<T> delegate;
+    private final AtomicBoolean cancelled;
+
+    /**
+     * Constructor
+     *
+     * @param delegate the visitor to delegate to
+     * @param cancelled the cancellation flag
+     */
+    public CancellableFileVisitor(final FileVisitor<T> delegate,
+        final AtomicBoolean cancelled)
+    {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.cancelled = Objects.requireNonNull(cancelled);
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(final T dir,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        return cancelled.get() ? FileVisitResult.TERMINATE
+            : delegate.preVisitDirectory(dir, attrs);
+    }
+
+    @Override
+    public FileVisitResult visitFile(final T file,
+        final BasicFileAttributes attrs)
+        throws IOException
+    {
+        return cancelled.get() ? FileVisitResult.TERMINATE
+            : delegate.visitFile(file, attrs);
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(final T file,
+        final IOException exc)
+        throws IOException
+    {
+        return cancelled.get() ? FileVisitResult.TERMINATE
+            : delegate.visitFileFailed(file, exc);
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(final T dir,
+        @Nullable final IOException exc)
+        throws IOException
+    {
+        return cancelled.get() ? FileVisitResult.TERMINATE
+            : delegate.postVisitDirectory(dir, exc);
+    }
+}
@@ -0,0 +1,347 @@
+package com.github.fge.filesystem.walk;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A parallel equivalent of {@link Files#walkFileTree(Path, FileVisitor)}
+ *
+ * <p>The entries of a directory are split into batches which are visited as
+ * fork/join tasks on a {@link ForkJoinPool}; each directory found in a batch
+ * is in turn walked as a separate task. This walker offers the following
+ * guarantees:</p>
+ *
+ * <ul>
+ *     <li>{@link FileVisitor#preVisitDirectory(Object, BasicFileAttributes)}
+ *     is called for a directory before any of its entries is visited;</li>
+ *     <li>{@link FileVisitor#postVisitDirectory(Object, IOException)} is
+ *     called for a directory only once all of its entries have been visited
+ *     (and, for subdirectories, post visited);</li>
+ *     <li>symbolic links are not followed unless {@link
+ *     FileVisitOption#FOLLOW_LINKS} is specified.</li>
+ * </ul>
+ *
+ * <p>When following links, the behaviour is the same as {@link
+ * Files#walkFileTree(Path, Set, int, FileVisitor)}: a link whose target cannot
+ * be read is visited as a link, and a link to a directory which is one of its
+ * ancestors is reported to {@link FileVisitor#visitFileFailed(Object,
+ * IOException)} with a {@link FileSystemLoopException}. Loops can only be
+ * detected if the filesystem supports {@link BasicFileAttributes#fileKey()
+ * file keys}.</p>
+ *
+ * <p>Other than that, the order in which entries are visited is undefined,
+ * and visitor methods are called concurrently from several threads: <strong>
+ * the visitor must be thread safe</strong>.</p>
+ *
+ * <p>{@link FileVisitResult#TERMINATE} stops the walk as soon as possible;
+ * since siblings have no defined order, {@link FileVisitResult#SKIP_SIBLINGS}
+ * is treated as {@link FileVisitResult#SKIP_SUBTREE} when returned by {@link
+ * FileVisitor#preVisitDirectory(Object, BasicFileAttributes)} and ignored
+ * otherwise.</p>
+ *
+ * <p>If a visitor method throws an exception, the walk is stopped as soon as
+ * possible and the first exception thrown is rethrown by {@link #walk(Path,
+ * FileVisitor, ForkJoinPool)}.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class ParallelTreeWalker
+{
+    private static final int BATCH_SIZE = 64;
+
+    private final FileVisitor<? super Path> visitor;
+    private final boolean follow;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private volatile boolean stopped = false;
+
+    private ParallelTreeWalker(final FileVisitor<? super Path> visitor,
+        final boolean follow)
+    {
+        this.visitor = visitor;
+        this.follow = follow;
+    }
+
+    /**
+     * Walk a file tree in parallel
+     *
+     * @param start the starting path
+     * @param visitor the visitor (must be thread safe)
+     * @param pool the pool to run the walk on
+     * @throws IOException an I/O error was thrown by the visitor
+     */
+    public static void walk(final Path start,
+        final FileVisitor<? super Path> visitor, final ForkJoinPool pool)
+        throws IOException
+    {
+        walk(start, EnumSet.noneOf(FileVisitOption.class), visitor, pool);
+    }
+
+    /**
+     * Walk a file tree in parallel, with options
+     *
+     * @param start the starting path
+     * @param options the walk options
+     * @param visitor the visitor (must be thread safe)
+     * @param pool the pool to run the walk on
+     * @throws IOException an I/O error was thrown by the visitor
+     *
+     * @see Files#walkFileTree(Path, Set, int, FileVisitor)
+     */
+    public static void walk(final Path start,
+        final Set<FileVisitOption> options,
+        final FileVisitor<? super Path> visitor, final ForkJoinPool pool)
+        throws IOException
+    {
+        Objects.requireNonNull(start);
+        Objects.requireNonNull(visitor);
+        Objects.requireNonNull(pool);
+
+        final boolean follow = options.contains(FileVisitOption.FOLLOW_LINKS);
+        final ParallelTreeWalker walker
+            = new ParallelTreeWalker(visitor, follow);
+
+        pool.invoke(walker.new EntriesTask(Collections.singletonList(start),
+            null));
+
+        final Throwable t = walker.failure.get();
+
+        if (t == null)
+            return;
+        if (t instanceof IOException)
+            throw (IOException) t;
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+        // Cannot happen: visitor methods only throw IOException
+        throw new IllegalStateException(t);
+    }
+
+    /*
+     * Visit one entry; if this entry is a directory, it is walked as a
+     * separate task, which is returned so that the caller can join it.
+     */
+    @Nullable
+    private DirectoryTask visit(final Path entry,
+        @Nullable final Ancestor parent)
+        throws IOException
+    {
+        final BasicFileAttributes attrs;
+
+        try {
+            attrs = readAttributes(entry);
+        } catch (IOException e) {
+            handle(visitor.visitFileFailed(entry, e));
+            return null;
+        }
+
+        if (!attrs.isDirectory()) {
+            handle(visitor.visitFile(entry, attrs));
+            return null;
+        }
+
+        final Object key = attrs.fileKey();
+
+        if (follow && key != null)
+            for (Ancestor a = parent; a != null; a = a.parent)
+                if (key.equals(a.key)) {
+                    handle(visitor.visitFileFailed(entry,
+                        new FileSystemLoopException(entry.toString())));
+                    return null;
+                }
+
+        return new DirectoryTask(entry, attrs, new Ancestor(key, parent));
+    }
+
+    private BasicFileAttributes readAttributes(final Path entry)
+        throws IOException
+    {
+        if (follow)
+            try {
+                return Files.readAttributes(entry, BasicFileAttributes.class);
+            } catch (IOException ignored) {
+                // Broken link, or other error: retry without following
+            }
+
+        return Files.readAttributes(entry, BasicFileAttributes.class,
+            LinkOption.NOFOLLOW_LINKS);
+    }
+
+    private void visitDirectory(final Path dir, final BasicFileAttributes attrs,
+        final Ancestor self)
+        throws IOException
+    {
+        final DirectoryStream<Path> stream;
+
+        try {
+            stream = Files.newDirectoryStream(dir);
+        } catch (IOException e) {
+            handle(visitor.visitFileFailed(dir, e));
+            return;
+        }
+
+        final List<EntriesTask> tasks = new ArrayList<>();
+        IOException exc = null;
+
+        /*
+         * Collect all entries first, and close the stream before forking:
+         * this way we never hold more open directories than we have threads.
+         */
+        try {
+            final FileVisitResult result = visitor.preVisitDirectory(dir,
+                attrs);
+            if (result != FileVisitResult.CONTINUE) {
+                handle(result);
+                return;
+            }
+            List<Path> batch = new ArrayList<>(BATCH_SIZE);
+            for (final Path entry: stream) {
+                if (stopped)
+                    return;
+                batch.add(entry);
+                if (batch.size() < BATCH_SIZE)
+                    continue;
+                tasks.add(new EntriesTask(batch, self));
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+            if (!batch.isEmpty())
+                tasks.add(new EntriesTask(batch, self));
+        } catch (DirectoryIteratorException e) {
+            exc = e.getCause();
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                if (exc == null)
+                    exc = e;
+            }
+        }
+
+        ForkJoinTask.invokeAll(tasks);
+
+        if (!stopped)
+            handle(visitor.postVisitDirectory(dir, exc));
+    }
+
+    private void handle(final FileVisitResult result)
+    {
+        if (Objects.requireNonNull(result) == FileVisitResult.TERMINATE)
+            stopped = true;
+    }
+
+    private void fail(final Throwable t)
+    {
+        failure.compareAndSet(null, t);
+        stopped = true;
+    }
+
+    private final class EntriesTask
+        extends RecursiveAction
+    {
+        private final List<Path> entries;
+        @Nullable
+        private final Ancestor parent;
+
+        private EntriesTask(final List<Path> entries,
+            @Nullable final Ancestor parent)
+        {
+            this.entries = entries;
+            this.parent = parent;
+        }
+
+        @SuppressWarnings("OverlyBroadCatchBlock")
+        @Override
+        protected void compute()
+        {
+            final List<DirectoryTask> forked = new ArrayList<>();
+            DirectoryTask task;
+
+            for (final Path entry: entries) {
+                if (stopped)
+                    break;
+                try {
+                    task = visit(entry, parent);
+                } catch (Throwable t) {
+                    fail(t);
+                    break;
+                }
+                if (task == null)
+                    continue;
+                task.fork();
+                forked.add(task);
+            }
+
+            for (final DirectoryTask directoryTask: forked)
+                directoryTask.join();
+        }
+    }
+
+    private final class DirectoryTask
+        extends RecursiveAction
+    {
+        private final Path dir;
+        private final BasicFileAttributes attrs;
+        private final Ancestor self;
+
+        private DirectoryTask(final Path dir, final BasicFileAttributes attrs,
+            final Ancestor self)
+        {
+            this.dir = dir;
+            this.attrs = attrs;
+            this.self = self;
+        }
+
+        @SuppressWarnings("OverlyBroadCatchBlock")
+        @Override
+        protected void compute()
+        {
+            if (stopped)
+                return;
+            try {
+                visitDirectory(dir, attrs, self);
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+    }
+
+    /*
+     * The chain of directories leading to an entry, used to detect loops when
+     * following links
+     */
+    private static final class Ancestor
+    {
+        @Nullable
+        private final Object key;
+        @Nullable
+        private final Ancestor parent;
+
+        private Ancestor(@Nullable final Object key,
+            @Nullable final Ancestor parent)
+        {
+            this.key = key;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.github.fge.filesystem.walk;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A sequential equivalent of {@link Files#walkFileTree(Path, Set, int,
+ * FileVisitor)} which reads directory entries and their attributes ahead of
+ * the visitor
+ *
+ * <p>With {@link Files#walkFileTree(Path, FileVisitor)}, the attributes of
+ * entries are read one by one by the thread running the visitor; on high
+ * latency storage (NFS, FUSE, etc), most of the walk is spent waiting for
+ * these round trips. This walker calls the visitor from the calling thread,
+ * with the same order and semantics as {@link Files#walkFileTree(Path, Set,
+ * int, FileVisitor)}, but directories are listed, and the attributes of their
+ * entries read, by worker threads:</p>
+ *
+ * <ul>
+ *     <li>the entries of a directory are split into batches of {@link
+ *     #BATCH_SIZE} entries; when the visitor enters a directory, the
+ *     attributes of the entries of the first batches are read concurrently,
+ *     and a new batch is read each time the visitor is done with one;</li>
+ *     <li>subdirectories found in these batches are listed in advance, and the
+ *     attributes of their first batch are read.</li>
+ * </ul>
+ *
+ * <p>The number of batches read ahead of the visitor in a directory (the
+ * window) bounds the work done in advance: at most {@code window} batches,
+ * and the listings of the directories they contain, are read ahead for each
+ * directory being visited. If the visitor falls behind, workers stop reading
+ * until it catches up.</p>
+ *
+ * <p>If the filesystem supports the {@code "posix"} attribute view, the
+ * attributes passed to the visitor are {@link PosixFileAttributes}.</p>
+ *
+ * <p>Since the visitor is only called from the calling thread, it does not
+ * need to be thread safe. Exceptions thrown by the visitor are rethrown as is
+ * by {@code walk()}.</p>
+ *
+ * @see ParallelTreeWalker
+ */
+@ParametersAreNonnullByDefault
+public final class PrefetchingTreeWalker
+{
+    /**
+     * The number of entries whose attributes are read by one task
+     */
+    public static final int BATCH_SIZE = 32;
+
+    private static final LinkOption[] NOFOLLOW = {
+        LinkOption.NOFOLLOW_LINKS
+    };
+    private static final LinkOption[] FOLLOW = {};
+
+    private final FileVisitor<? super Path> visitor;
+    private final Executor executor;
+    private final int window;
+    private final boolean follow;
+    private final Class<? extends BasicFileAttributes> attributesClass;
+
+    private volatile boolean stopped = false;
+
+    private PrefetchingTreeWalker(final FileVisitor<? super Path> visitor,
+        final Executor executor, final int window, final boolean follow,
+        final Class<? extends BasicFileAttributes> attributesClass)
+    {
+        this.visitor = visitor;
+        this.executor = executor;
+        this.window = window;
+        this.follow = follow;
+        this.attributesClass = attributesClass;
+    }
+
+    /**
+     * Walk a file tree, reading ahead on a dedicated thread pool
+     *
+     * <p>The pool is shut down when the walk completes; its window is twice the
+     * number of threads.</p>
+     *
+     * @param start the starting path
+     * @param options the walk options
+     * @param visitor the visitor
+     * @param threads the number of threads reading ahead
+     * @throws IOException an I/O error was thrown by the visitor
+     * @throws IllegalArgumentException the number of threads is zero or
+     * negative
+     */
+    public static void walk(final Path start,
+        final Set<FileVisitOption> options,
+        final FileVisitor<? super Path> visitor, final int threads)
+        throws IOException
+    {
+        if (threads <= 0)
+            throw new IllegalArgumentException("number of threads must be "
+                + "strictly positive");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads,
+            new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(final Runnable r)
+                {
+                    final Thread thread = new Thread(r, "prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+        try {
+            walk(start, options, visitor, executor, 2 * threads);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Walk a file tree, reading ahead on an existing executor
+     *
+     * <p>Tasks may still be running on the executor when this method returns,
+     * notably if the walk was terminated early; they do not call the
+     * visitor.</p>
+     *
+     * @param start the starting path
+     * @param options the walk options
+     * @param visitor the visitor
+     * @param executor the executor to read ahead on
+     * @param window the number of batches read ahead per directory
+     * @throws IOException an I/O error was thrown by the visitor
+     * @throws IllegalArgumentException the window is zero or negative
+     *
+     * @see Files#walkFileTree(Path, Set, int, FileVisitor)
+     */
+    public static void walk(final Path start,
+        final Set<FileVisitOption> options,
+        final FileVisitor<? super Path> visitor, final Executor executor,
+        final int window)
+        throws IOException
+    {
+        Objects.requireNonNull(start);
+        Objects.requireNonNull(visitor);
+        Objects.requireNonNull(executor);
+        if (window <= 0)
+            throw new IllegalArgumentException("window must be strictly "
+                + "positive");
+
+        final boolean follow = options.contains(FileVisitOption.FOLLOW_LINKS);
+        final Class<? extends BasicFileAttributes> attributesClass
+            = start.getFileSystem().supportedFileAttributeViews()
+            .contains("posix") ? PosixFileAttributes.class
+            : BasicFileAttributes.class;
+        final PrefetchingTreeWalker walker = new PrefetchingTreeWalker(visitor,
+            executor, window, follow, attributesClass);
+
+        try {
+            walker.walk(walker.read(start, null, false));
+        } finally {
+            walker.stopped = true;
+        }
+    }
+
+    /*
+     * Visit an entry; return false if the walk is terminated, or the
+     * remaining siblings of the entry must be skipped
+     */
+    private boolean walk(final Entry entry)
+        throws IOException
+    {
+        if (entry.exc != null)
+            return proceed(visitor.visitFileFailed(entry.path, entry.exc));
+
+        if (entry.directory == null)
+            return proceed(visitor.visitFile(entry.path, entry.attrs));
+
+        final Path dir = entry.path;
+        final Listing listing;
+
+        try {
+            listing = get(entry.directory);
+        } catch (IOException e) {
+            return proceed(visitor.visitFileFailed(dir, e));
+        }
+
+        final FileVisitResult result = visitor.preVisitDirectory(dir,
+            entry.attrs);
+
+        if (result == FileVisitResult.SKIP_SUBTREE)
+            return true;
+        if (!proceed(result))
+            return false;
+
+        final List<Batch> batches = listing.batches;
+        final int size = batches.size();
+
+        for (int i = 0; i < Math.min(window, size); i++)
+            executor.execute(batches.get(i));
+
+        boolean skipSiblings = false;
+
+        for (int i = 0; !skipSiblings && i < size; i++) {
+            if (i + window < size)
+                executor.execute(batches.get(i + window));
+            for (final Entry child: get(batches.get(i)))
+                if (!walk(child)) {
+                    skipSiblings = true;
+                    break;
+                }
+        }
+
+        if (stopped)
+            return false;
+
+        return proceed(visitor.postVisitDirectory(dir, listing.exc));
+    }
+
+    private boolean proceed(final FileVisitResult result)
+    {
+        switch (Objects.requireNonNull(result)) {
+            case TERMINATE:
+                stopped = true;
+                return false;
+            case SKIP_SIBLINGS:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /*
+     * Read the attributes of an entry; if this is a directory, it is listed
+     * in advance if required
+     */
+    private Entry read(final Path path, @Nullable final Ancestor parent,
+        final boolean prefetch)
+    {
+        final BasicFileAttributes attrs;
+
+        try {
+            attrs = readAttributes(path);
+        } catch (IOException e) {
+            return new Entry(path, null, e, null);
+        }
+
+        if (!attrs.isDirectory())
+            return new Entry(path, attrs, null, null);
+
+        final Object key = attrs.fileKey();
+
+        if (follow && key != null)
+            for (Ancestor a = parent; a != null; a = a.parent)
+                if (key.equals(a.key))
+                    return new Entry(path, attrs,
+                        new FileSystemLoopException(path.toString()), null);
+
+        final Ancestor self = new Ancestor(key, parent);
+        final FutureTask<Listing> directory
+            = new FutureTask<>(new Callable<Listing>()
+            {
+                @Override
+                public Listing call()
+                    throws IOException
+                {
+                    return list(path, self);
+                }
+            });
+
+        if (prefetch)
+            executor.execute(directory);
+
+        return new Entry(path, attrs, null, directory);
+    }
+
+    private BasicFileAttributes readAttributes(final Path path)
+        throws IOException
+    {
+        if (follow)
+            try {
+                return Files.readAttributes(path, attributesClass, FOLLOW);
+            } catch (IOException ignored) {
+                // Broken link, or other error: retry without following
+            }
+
+        return Files.readAttributes(path, attributesClass, NOFOLLOW);
+    }
+
+    /*
+     * List a directory, and read the first batch of its entries; entries of
+     * this first batch are not listed in advance, since this would prefetch
+     * the whole tree
+     */
+    private Listing list(final Path dir, final Ancestor self)
+        throws IOException
+    {
+        final List<Batch> batches = new ArrayList<>();
+        IOException exc = null;
+
+        try (
+            final DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+        ) {
+            List<Path> paths = new ArrayList<>(BATCH_SIZE);
+            for (final Path path: stream) {
+                if (stopped)
+                    break;
+                paths.add(path);
+                if (paths.size() < BATCH_SIZE)
+                    continue;
+                batches.add(new Batch(paths, self, !batches.isEmpty()));
+                paths = new ArrayList<>(BATCH_SIZE);
+            }
+            if (!paths.isEmpty())
+                batches.add(new Batch(paths, self, !batches.isEmpty()));
+        } catch (DirectoryIteratorException e) {
+            exc = e.getCause();
+        }
+
+        if (!batches.isEmpty())
+            batches.get(0).run();
+
+        return new Listing(batches, exc);
+    }
+
+    /*
+     * Get the result of a task, running it in the calling thread if it has
+     * not started yet
+     */
+    private static <T> T get(final FutureTask<T> task)
+        throws IOException
+    {
+        task.run();
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while walking");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            // Cannot happen: tasks only throw IOException
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private final class Batch
+        extends FutureTask<List<Entry>>
+    {
+        private Batch(final List<Path> paths, final Ancestor parent,
+            final boolean prefetch)
+        {
+            super(new Callable<List<Entry>>()
+            {
+                @Override
+                public List<Entry> call()
+                {
+                    if (stopped)
+                        return Collections.emptyList();
+                    final List<Entry> entries = new ArrayList<>(paths.size());
+                    for (final Path path: paths)
+                        entries.add(read(path, parent, prefetch));
+                    return entries;
+                }
+            });
+        }
+    }
+
+    private static final class Listing
+    {
+        private final List<Batch> batches;
+        @Nullable
+        private final IOException exc;
+
+        private Listing(final List<Batch> batches,
+            @Nullable final IOException exc)
+        {
+            this.batches = batches;
+            this.exc = exc;
+        }
+    }
+
+    private static final class Entry
+    {
+        private final Path path;
+        @Nullable
+        private final BasicFileAttributes attrs;
+        @Nullable
+        private final IOException exc;
+        @Nullable
+        private final FutureTask<Listing> directory;
+
+        private Entry(final Path path,
+            @Nullable final BasicFileAttributes attrs,
+            @Nullable final IOException exc,
+            @Nullable final FutureTask<Listing> directory)
+        {
+            this.path = path;
+            this.attrs = attrs;
+            this.exc = exc;
+            this.directory = directory;
+        }
+    }
+
+    /*
+     * The chain of directories leading to an entry, used to detect loops when
+     * following links
+     */
+    private static final class Ancestor
+    {
+        @Nullable
+        private final Object key;
+        @Nullable
+        private final Ancestor parent;
+
+        private Ancestor(@Nullable final Object key,
+            @Nullable final Ancestor parent)
+        {
+            this.key = key;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.fge.filesystem;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class ChecksumTest
+{
+    private static final byte[] CHECK
+        = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private FileSystem fs;
+
+    @BeforeMethod
+    public void initfs()
+    {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+    }
+
+    @Test
+    public void crc32MatchesCheckValue()
+    {
+        final byte[] digest = Checksum.crc32().newDigest().digest(CHECK);
+
+        assertThat(Checksum.toHex(digest)).isEqualTo("cbf43926");
+    }
+
+    @Test
+    public void sha256MatchesCheckValue()
+    {
+        final byte[] digest = Checksum.sha256().newDigest().digest(CHECK);
+
+        assertThat(Checksum.toHex(digest)).isEqualTo("15e2b0d3c33891ebb0f1ef60"
+            + "9ec419420c20e320ce94c65fbc8c3312448eb225");
+    }
+
+    @Test
+    public void unknownAlgorithmIsRejected()
+    {
+        try {
+            Checksum.of("nope");
+            shouldHaveThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void recursiveCopyProducesManifest()
+        throws IOException
+    {
+        final Path src = fs.getPath("/src");
+        final Path file1 = Files.write(Files.createDirectories(src)
+            .resolve("file1"), CHECK);
+        final Path file2 = Files.write(Files.createDirectories(src
+            .resolve("dir")).resolve("file2"), new byte[0]);
+        final Checksum checksum = Checksum.crc32().verifying();
+
+        MoreFiles.copyRecursive(src, fs.getPath("/dst"),
+            RecursionMode.FAIL_FAST, checksum, Parallelism.of(2));
+
+        final Map<Path, String> manifest = checksum.getManifest();
+        assertThat(manifest).hasSize(2);
+        assertThat(manifest.get(file1)).isEqualTo("cbf43926");
+        assertThat(manifest.get(file2)).isEqualTo("00000000");
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+}
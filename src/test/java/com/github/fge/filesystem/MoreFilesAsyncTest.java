@@ -0,0 +1,137 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.exceptions.RecursiveDeletionException;
+import com.github.fge.filesystem.progress.ProgressListener;
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class MoreFilesAsyncTest
+{
+    private FileSystem fs;
+    private Path victim;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        fs = MemoryFileSystemBuilder.newLinux().build("MoreFilesAsyncTest");
+
+        victim = fs.getPath("/victim");
+
+        Path dir;
+
+        for (int i = 0; i < 4; i++) {
+            dir = Files.createDirectories(victim.resolve("dir" + i));
+            for (int j = 0; j < 10; j++)
+                Files.createFile(dir.resolve("file" + j));
+        }
+
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @Test
+    public void asyncOperationsComplete()
+        throws IOException, ExecutionException, InterruptedException
+    {
+        final Path copy = fs.getPath("/copy");
+
+        RecursiveOperationFuture future;
+
+        future = MoreFiles.copyRecursiveAsync(victim, copy,
+            RecursionMode.FAIL_FAST, executor, Parallelism.of(2));
+        future.get();
+
+        assertThat(copy.resolve("dir3/file9")).exists();
+        assertThat(future.getProgress().getCompletedCount()).isEqualTo(45L);
+
+        future = MoreFiles.deleteRecursiveAsync(copy, RecursionMode.FAIL_FAST,
+            executor);
+        future.get();
+
+        assertThat(copy).doesNotExist();
+        assertThat(future.getProgress().getCompletedCount()).isEqualTo(45L);
+    }
+
+    @Test
+    public void cancellationStopsTheWalk()
+        throws InterruptedException
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+
+        final ProgressListener listener = new ProgressListener()
+        {
+            @Override
+            public void entryCompleted(final Path path, final long bytes,
+                final long nanos)
+            {
+                started.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        final RecursiveOperationFuture future = MoreFiles.deleteRecursiveAsync(
+            victim, RecursionMode.FAIL_FAST, executor, listener);
+
+        started.await();
+        assertThat(future.cancel(false)).isTrue();
+        resume.countDown();
+
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5L, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(future.isCancelled()).isTrue();
+        assertThat(future.getProgress().getCompletedCount()).isEqualTo(1L);
+        assertThat(victim).exists();
+    }
+
+    @Test
+    public void failuresAreReportedByTheFuture()
+        throws IOException, InterruptedException
+    {
+        Files.setPosixFilePermissions(victim.resolve("dir1"),
+            PosixFilePermissions.fromString("r-xr-xr-x"));
+
+        final RecursiveOperationFuture future = MoreFiles.deleteRecursiveAsync(
+            victim, RecursionMode.KEEP_GOING, executor);
+
+        try {
+            future.get();
+            shouldHaveThrown(ExecutionException.class);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause())
+                .isInstanceOf(RecursiveDeletionException.class);
+        }
+
+        assertThat(future.getProgress().getFailureCount()).isGreaterThan(0L);
+    }
+
+    @AfterMethod
+    public void close()
+        throws IOException
+    {
+        executor.shutdownNow();
+        fs.close();
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.fge.filesystem;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class MoreFilesAttributeCopyTest
+{
+    private static final FileTime FILE_TIME
+        = FileTime.from(1000000L, TimeUnit.SECONDS);
+    private static final FileTime DIR_TIME
+        = FileTime.from(2000000L, TimeUnit.SECONDS);
+    private static final Set<PosixFilePermission> FILE_PERMS
+        = PosixFilePermissions.fromString("r--r-----");
+    private static final Set<PosixFilePermission> DIR_PERMS
+        = PosixFilePermissions.fromString("r-x------");
+
+    private FileSystem fs;
+    private Path src;
+
+    @BeforeMethod
+    public void initfs()
+        throws IOException
+    {
+        fs = Jimfs.newFileSystem(Configuration.unix().toBuilder()
+            .setAttributeViews("posix").build());
+        src = createTree(fs.getPath("/src"));
+    }
+
+    @DataProvider
+    public Iterator<Object[]> modes()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { RecursionMode.FAIL_FAST, new CopyOption[] {
+            StandardCopyOption.COPY_ATTRIBUTES
+        } });
+        list.add(new Object[] { RecursionMode.KEEP_GOING, new CopyOption[] {
+            StandardCopyOption.COPY_ATTRIBUTES
+        } });
+        list.add(new Object[] { RecursionMode.FAIL_FAST, new CopyOption[] {
+            StandardCopyOption.COPY_ATTRIBUTES, Parallelism.of(4)
+        } });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "modes")
+    public void attributesAreCopied(final RecursionMode mode,
+        final CopyOption[] options)
+        throws IOException
+    {
+        final Path dst = fs.getPath("/dst");
+
+        MoreFiles.copyRecursive(src, dst, mode, options);
+
+        checkAttributes(dst);
+        assertThat(Files.getOwner(dst.resolve("dir/file")))
+            .isEqualTo(Files.getOwner(src.resolve("dir/file")));
+    }
+
+    @Test
+    public void ownerAndGroupAreCopied()
+        throws IOException
+    {
+        final Path file = src.resolve("dir/file");
+        final UserPrincipalLookupService service
+            = fs.getUserPrincipalLookupService();
+        final PosixFileAttributeView view = Files.getFileAttributeView(file,
+            PosixFileAttributeView.class);
+        final Path dst = fs.getPath("/dst");
+
+        view.setOwner(service.lookupPrincipalByName("alice"));
+        view.setGroup(service.lookupPrincipalByGroupName("staff"));
+
+        MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST,
+            StandardCopyOption.COPY_ATTRIBUTES);
+
+        final PosixFileAttributes attrs = Files.readAttributes(
+            dst.resolve("dir/file"), PosixFileAttributes.class);
+        assertThat(attrs.owner().getName()).isEqualTo("alice");
+        assertThat(attrs.group().getName()).isEqualTo("staff");
+        assertThat(Files.getOwner(dst.resolve("dir")))
+            .isEqualTo(Files.getOwner(src.resolve("dir")));
+    }
+
+    @Test
+    public void attributesAreNotCopiedByDefault()
+        throws IOException
+    {
+        final Path dst = fs.getPath("/dst");
+
+        MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST);
+
+        assertThat(Files.getLastModifiedTime(dst.resolve("dir/file")))
+            .isNotEqualTo(FILE_TIME);
+        assertThat(Files.getLastModifiedTime(dst.resolve("dir")))
+            .isNotEqualTo(DIR_TIME);
+    }
+
+    @Test
+    public void attributesAreCopiedOnDefaultFileSystem()
+        throws IOException
+    {
+        final Path tempDir = Files.createTempDirectory("attributes");
+        final Path dst = tempDir.resolve("dst");
+
+        try {
+            MoreFiles.copyRecursive(createTree(tempDir.resolve("src")), dst,
+                RecursionMode.FAIL_FAST, StandardCopyOption.COPY_ATTRIBUTES);
+            checkAttributes(dst);
+        } finally {
+            // Read only directories cannot be deleted from
+            Files.setPosixFilePermissions(tempDir.resolve("src/dir"),
+                PosixFilePermissions.fromString("rwx------"));
+            if (Files.exists(dst))
+                Files.setPosixFilePermissions(dst.resolve("dir"),
+                    PosixFilePermissions.fromString("rwx------"));
+            MoreFiles.deleteRecursive(tempDir, RecursionMode.FAIL_FAST);
+        }
+    }
+
+    /*
+     * A read only directory with a read only file in it; attributes are set
+     * last, starting with the file
+     */
+    private static Path createTree(final Path root)
+        throws IOException
+    {
+        final Path dir = Files.createDirectories(root.resolve("dir"));
+        final Path file = Files.write(dir.resolve("file"), new byte[10]);
+
+        Files.setLastModifiedTime(file, FILE_TIME);
+        Files.setPosixFilePermissions(file, FILE_PERMS);
+        Files.setLastModifiedTime(dir, DIR_TIME);
+        Files.setPosixFilePermissions(dir, DIR_PERMS);
+
+        return root;
+    }
+
+    private static void checkAttributes(final Path dst)
+        throws IOException
+    {
+        final Path dir = dst.resolve("dir");
+        final Path file = dir.resolve("file");
+
+        assertThat(Files.readAllBytes(file)).hasSize(10);
+        assertThat(Files.getLastModifiedTime(file)).isEqualTo(FILE_TIME);
+        assertThat(Files.getPosixFilePermissions(file)).isEqualTo(FILE_PERMS);
+        assertThat(Files.getLastModifiedTime(dir)).isEqualTo(DIR_TIME);
+        assertThat(Files.getPosixFilePermissions(dir)).isEqualTo(DIR_PERMS);
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.exceptions.InvalidModeInstructionException;
+import com.github.fge.filesystem.exceptions.RecursiveChangeModeException;
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class MoreFilesChangeModeTest
+{
+    private FileSystem fs;
+    private Path root;
+
+    @BeforeMethod
+    public void initfs()
+        throws IOException
+    {
+        fs = MemoryFileSystemBuilder.newLinux()
+            .build("MoreFilesChangeModeTest");
+
+        root = fs.getPath("/root");
+
+        Path dir;
+
+        for (int i = 0; i < 4; i++) {
+            dir = Files.createDirectories(root.resolve("dir" + i + "/sub"));
+            for (int j = 0; j < 10; j++)
+                Files.createFile(dir.resolve("file" + j));
+        }
+
+        MoreFiles.changeModeRecursive(root, 0750, RecursionMode.FAIL_FAST);
+    }
+
+    @Test
+    public void intModeIsAppliedToWholeTree()
+        throws IOException
+    {
+        MoreFiles.changeModeRecursive(root, 0640, RecursionMode.FAIL_FAST,
+            Parallelism.of(4));
+
+        // Removing search permissions on directories must not stop the walk
+        assertThat(collectModes().values()).containsOnly("rw-r-----");
+    }
+
+    @Test
+    public void instructionsAreAppliedToWholeTree()
+        throws IOException
+    {
+        final Path file = root.resolve("dir2/sub/file3");
+        Files.setPosixFilePermissions(file,
+            PosixFilePermissions.fromString("rw-------"));
+
+        MoreFiles.changeModeRecursive(root, "g+w,o+r", RecursionMode.FAIL_FAST,
+            Parallelism.of(4));
+
+        final Map<Path, String> modes = collectModes();
+
+        assertThat(modes.remove(file)).isEqualTo("rw--w-r--");
+        assertThat(modes.values()).containsOnly("rwxrwxr--");
+    }
+
+    @Test
+    public void keepGoingModeCollectsFailures()
+        throws IOException
+    {
+        /*
+         * memoryfilesystem requires write access to a file in order to change
+         * its permissions
+         */
+        final Path file = root.resolve("dir2/sub/file3");
+        Files.setPosixFilePermissions(file,
+            PosixFilePermissions.fromString("r--------"));
+
+        try {
+            MoreFiles.changeModeRecursive(root, "o+r",
+                RecursionMode.KEEP_GOING, Parallelism.of(4));
+            shouldHaveThrown(RecursiveChangeModeException.class);
+        } catch (RecursiveChangeModeException e) {
+            assertThat(e.getFailureCount()).isEqualTo(1L);
+            assertThat(e.getSuppressed()[0])
+                .isInstanceOf(AccessDeniedException.class);
+        }
+
+        final Map<Path, String> modes = collectModes();
+
+        assertThat(modes.remove(file)).isEqualTo("r--------");
+        assertThat(modes.values()).containsOnly("rwxr-xr--");
+    }
+
+    @Test
+    public void invalidInstructionsAreRejectedBeforeWalking()
+        throws IOException
+    {
+        try {
+            MoreFiles.changeModeRecursive(root, "u+rwx,g+q",
+                RecursionMode.FAIL_FAST);
+            shouldHaveThrown(InvalidModeInstructionException.class);
+        } catch (InvalidModeInstructionException ignored) {
+        }
+
+        assertThat(collectModes().values()).containsOnly("rwxr-x---");
+    }
+
+    @Test
+    public void unsupportedOptionsAreRejectedBeforeWalking()
+        throws IOException
+    {
+        final ChangeModeOption option = new ChangeModeOption()
+        {
+            @Override
+            public String toString()
+            {
+                return "unsupported";
+            }
+        };
+
+        try {
+            MoreFiles.changeModeRecursive(root, 0700, RecursionMode.FAIL_FAST,
+                Parallelism.of(2), option);
+            shouldHaveThrown(UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException e) {
+            assertThat(e).hasMessage("unsupported");
+        }
+
+        assertThat(collectModes().values()).containsOnly("rwxr-x---");
+    }
+
+    private Map<Path, String> collectModes()
+        throws IOException
+    {
+        final Map<Path, String> modes = new HashMap<>();
+
+        // We need to read the permissions of a directory before entering it
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir,
+                final BasicFileAttributes attrs)
+                throws IOException
+            {
+                modes.put(dir, toString(dir));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attrs)
+                throws IOException
+            {
+                modes.put(file, toString(file));
+                return FileVisitResult.CONTINUE;
+            }
+
+            private String toString(final Path path)
+                throws IOException
+            {
+                final Set<PosixFilePermission> perms
+                    = Files.getPosixFilePermissions(path);
+                return PosixFilePermissions.toString(perms);
+            }
+        });
+
+        assertThat(modes).hasSize(4 * 2 + 4 * 10 + 1);
+        return modes;
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.progress.ProgressCounters;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class MoreFilesHardLinkCopyTest
+{
+    private static final byte[] CONTENT = new byte[1024];
+
+    private FileSystem fs;
+    private Path src;
+
+    @BeforeMethod
+    public void initfs()
+        throws IOException
+    {
+        // The "unix" view is required to read link counts
+        fs = Jimfs.newFileSystem(Configuration.unix().toBuilder()
+            .setAttributeViews("unix").build());
+        src = createTree(fs.getPath("/src"));
+    }
+
+    @Test
+    public void hardLinksArePreserved()
+        throws IOException
+    {
+        final Path dst = fs.getPath("/dst");
+        final ProgressCounters counters = new ProgressCounters();
+
+        MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST,
+            MoreCopyOption.PRESERVE_HARD_LINKS, counters);
+
+        checkLinks(dst);
+        // Only "a" and "single" were actually copied
+        assertThat(counters.getBytes())
+            .isEqualTo(2L * CONTENT.length);
+    }
+
+    @Test
+    public void hardLinksArePreservedByParallelCopies()
+        throws IOException
+    {
+        final Path dst = fs.getPath("/dst");
+
+        MoreFiles.copyRecursive(src, dst, RecursionMode.KEEP_GOING,
+            MoreCopyOption.PRESERVE_HARD_LINKS, Parallelism.of(4));
+
+        checkLinks(dst);
+    }
+
+    @Test
+    public void hardLinksArePreservedOnDefaultFileSystem()
+        throws IOException
+    {
+        final Path tempDir = Files.createTempDirectory("hardlinks");
+
+        try {
+            final Path dst = tempDir.resolve("dst");
+            MoreFiles.copyRecursive(createTree(tempDir.resolve("src")), dst,
+                RecursionMode.FAIL_FAST, MoreCopyOption.PRESERVE_HARD_LINKS);
+            checkLinks(dst);
+        } finally {
+            MoreFiles.deleteRecursive(tempDir, RecursionMode.FAIL_FAST);
+        }
+    }
+
+    @Test
+    public void hardLinksAreNotPreservedByDefault()
+        throws IOException
+    {
+        final Path dst = fs.getPath("/dst");
+
+        MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST);
+
+        assertThat(Files.isSameFile(dst.resolve("a"), dst.resolve("d1/b")))
+            .isFalse();
+    }
+
+    /*
+     * "a", "d1/b" and "d2/c" are the same file, which also has a name outside
+     * of the tree; "single" is not linked
+     */
+    private static Path createTree(final Path root)
+        throws IOException
+    {
+        final Path a = Files.write(Files.createDirectories(root).resolve("a"),
+            CONTENT);
+
+        Files.createLink(Files.createDirectory(root.resolve("d1"))
+            .resolve("b"), a);
+        Files.createLink(Files.createDirectory(root.resolve("d2"))
+            .resolve("c"), a);
+        Files.createLink(root.resolveSibling("outside"), a);
+        Files.write(root.resolve("single"), CONTENT);
+
+        return root;
+    }
+
+    private static void checkLinks(final Path dst)
+        throws IOException
+    {
+        final Path a = dst.resolve("a");
+
+        assertThat(Files.isSameFile(a, dst.resolve("d1/b"))).isTrue();
+        assertThat(Files.isSameFile(a, dst.resolve("d2/c"))).isTrue();
+        assertThat(Files.isSameFile(a, dst.resolve("single"))).isFalse();
+        assertThat(Files.getAttribute(a, "unix:nlink",
+            LinkOption.NOFOLLOW_LINKS)).isEqualTo(3);
+        assertThat(Files.readAllBytes(a)).isEqualTo(CONTENT);
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+}
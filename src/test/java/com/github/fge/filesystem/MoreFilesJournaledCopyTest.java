@@ -0,0 +1,268 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.progress.ProgressListener;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class MoreFilesJournaledCopyTest
+{
+    private static final int FILES = 10;
+
+    private FileSystem fs;
+    private Path src;
+    private Path dst;
+    private Path journalFile;
+
+    /*
+     * src/a/file0 .. src/a/file9
+     * src/b/file0 .. src/b/file9
+     */
+    @BeforeMethod
+    public void initfs()
+        throws IOException
+    {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+        src = fs.getPath("/src");
+        dst = fs.getPath("/dst");
+        journalFile = fs.getPath("/journal");
+
+        for (final String dir: new String[] { "a", "b" }) {
+            final Path path = Files.createDirectories(src.resolve(dir));
+            for (int i = 0; i < FILES; i++)
+                Files.write(path.resolve("file" + i),
+                    (dir + i).getBytes("UTF-8"));
+        }
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+
+    @Test
+    public void journalIsDeletedOnceCopyCompletes()
+        throws IOException
+    {
+        final CopyJournal journal = CopyJournal.at(journalFile);
+
+        MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST, journal);
+
+        assertThat(journal.isResuming()).isFalse();
+        assertThat(Files.exists(journalFile)).isFalse();
+        assertThat(Files.readAllBytes(dst.resolve("b/file9")))
+            .isEqualTo("b9".getBytes("UTF-8"));
+    }
+
+    @Test
+    public void interruptedCopyIsResumed()
+        throws IOException
+    {
+        try {
+            MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST,
+                CopyJournal.at(journalFile), new Interrupter(FILES + 3));
+            shouldHaveThrown(IllegalStateException.class);
+        } catch (IllegalStateException ignored) {
+        }
+
+        assertThat(Files.exists(journalFile)).isTrue();
+
+        // Simulate the file which was in flight when the copy died
+        final Path inFlight = dst.resolve("b/file3");
+        Files.write(inFlight, new byte[1]);
+
+        final Recorder recorder = new Recorder();
+        final CopyJournal journal = CopyJournal.at(journalFile);
+        MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST, journal,
+            recorder);
+
+        assertThat(journal.isResuming()).isTrue();
+        assertThat(Files.exists(journalFile)).isFalse();
+        // Directory "a" was completed, and is not walked again
+        assertThat(recorder.paths).doesNotContain(src.resolve("a"),
+            src.resolve("a/file0"));
+        assertThat(recorder.paths).contains(src.resolve("b/file3"));
+        assertThat(Files.readAllBytes(inFlight))
+            .isEqualTo("b3".getBytes("UTF-8"));
+        for (int i = 0; i < FILES; i++)
+            assertThat(Files.readAllBytes(dst.resolve("a/file" + i)))
+                .isEqualTo(("a" + i).getBytes("UTF-8"));
+    }
+
+    @Test
+    public void cancelledCopyKeepsItsJournal()
+        throws IOException, InterruptedException
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+
+        final ProgressListener listener = new ProgressListener()
+        {
+            @Override
+            public void entryCompleted(final Path path, final long bytes,
+                final long nanos)
+            {
+                started.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        final RecursiveOperationFuture future = MoreFiles.copyRecursiveAsync(
+            src, dst, RecursionMode.FAIL_FAST, executor,
+            CopyJournal.at(journalFile), listener);
+
+        started.await();
+        assertThat(future.cancel(false)).isTrue();
+        resume.countDown();
+
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5L, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(Files.exists(journalFile)).isTrue();
+
+        final CopyJournal journal = CopyJournal.at(journalFile);
+        MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST, journal);
+
+        assertThat(journal.isResuming()).isTrue();
+        assertThat(Files.exists(journalFile)).isFalse();
+        assertThat(Files.readAllBytes(dst.resolve("b/file9")))
+            .isEqualTo("b9".getBytes("UTF-8"));
+    }
+
+    /*
+     * Journaled files are flushed in batches, after their attributes were
+     * copied; read only copies must not prevent it. On the default filesystem
+     * since Jimfs does not check permissions; only meaningful if not root.
+     */
+    @Test
+    public void readOnlyFilesCanBeJournaled()
+        throws IOException
+    {
+        final Path dir = Files.createTempDirectory("journal");
+        final Path source = Files.createDirectory(dir.resolve("src"));
+        final Path target = dir.resolve("dst");
+        final Path file = dir.resolve("journal");
+        final Set<PosixFilePermission> readOnly
+            = PosixFilePermissions.fromString("r--r--r--");
+
+        try {
+            for (int i = 0; i <= CopyJournal.BATCH_SIZE; i++)
+                Files.setPosixFilePermissions(Files.createFile(
+                    source.resolve("ro" + i)), readOnly);
+
+            MoreFiles.copyRecursive(source, target, RecursionMode.FAIL_FAST,
+                StandardCopyOption.COPY_ATTRIBUTES, CopyJournal.at(file));
+
+            final Path copy = target.resolve("ro" + CopyJournal.BATCH_SIZE);
+            assertThat(Files.getPosixFilePermissions(copy))
+                .isEqualTo(readOnly);
+            assertThat(Files.exists(file)).isFalse();
+        } finally {
+            MoreFiles.deleteRecursive(dir, RecursionMode.KEEP_GOING);
+        }
+    }
+
+    @Test
+    public void journalOfAnotherCopyIsRejected()
+        throws IOException
+    {
+        try {
+            MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST,
+                CopyJournal.at(journalFile), new Interrupter(1));
+            shouldHaveThrown(IllegalStateException.class);
+        } catch (IllegalStateException ignored) {
+        }
+
+        try {
+            MoreFiles.copyRecursive(src, fs.getPath("/other"),
+                RecursionMode.FAIL_FAST, CopyJournal.at(journalFile));
+            shouldHaveThrown(FileSystemException.class);
+        } catch (FileSystemException e) {
+            assertThat(e.getReason()).isEqualTo("journal of another copy");
+        }
+    }
+
+    @Test
+    public void journalIsDiscardedIfCopyCannotStart()
+        throws IOException
+    {
+        Files.createDirectory(dst);
+
+        try {
+            MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST,
+                CopyJournal.at(journalFile));
+            shouldHaveThrown(FileSystemException.class);
+        } catch (FileSystemException ignored) {
+        }
+
+        assertThat(Files.exists(journalFile)).isFalse();
+    }
+
+    /*
+     * Simulates a crash by throwing an unchecked exception after a given
+     * number of entries were completed
+     */
+    private static final class Interrupter
+        extends ProgressListener
+    {
+        private final AtomicInteger remaining;
+
+        private Interrupter(final int count)
+        {
+            remaining = new AtomicInteger(count);
+        }
+
+        @Override
+        public void entryCompleted(final Path path, final long bytes,
+            final long nanos)
+        {
+            if (remaining.decrementAndGet() == 0)
+                throw new IllegalStateException("crash");
+        }
+    }
+
+    private static final class Recorder
+        extends ProgressListener
+    {
+        private final List<Path> paths
+            = Collections.synchronizedList(new ArrayList<Path>());
+
+        @Override
+        public void entryVisited(final Path path,
+            final BasicFileAttributes attrs)
+        {
+            paths.add(path);
+        }
+    }
+}
@@ -139,6 +139,50 @@ public final class MoreFilesRecursiveCopyTest
         assertThat(copied).isEqualTo(content);
     }
 
+    @Test
+    public void parallelCopyCopiesWholeTree()
+        throws IOException
+    {
+        final Path src = fs.getPath("/parallelSrc");
+        final Path dst = fs.getPath("/parallelDst");
+
+        Path dir;
+
+        for (int i = 0; i < 8; i++) {
+            dir = Files.createDirectories(src.resolve("dir" + i + "/sub"));
+            for (int j = 0; j < 50; j++)
+                Files.write(dir.resolve("file" + j), new byte[] { (byte) j });
+        }
+
+        MoreFiles.copyRecursive(src, dst, RecursionMode.KEEP_GOING,
+            Parallelism.of(4));
+
+        Path path;
+
+        for (int i = 0; i < 8; i++) {
+            dir = dst.resolve("dir" + i + "/sub");
+            assertThat(dir).exists().isDirectory();
+            for (int j = 0; j < 50; j++) {
+                path = dir.resolve("file" + j);
+                assertThat(path).exists().isRegularFile();
+                assertThat(Files.readAllBytes(path))
+                    .isEqualTo(new byte[] { (byte) j });
+            }
+        }
+    }
+
+    @Test
+    public void unsupportedCopyOptionIsRejected()
+        throws IOException
+    {
+        try {
+            MoreFiles.copyRecursive(srcDir, nonExistingDestination,
+                RecursionMode.FAIL_FAST, StandardCopyOption.ATOMIC_MOVE);
+            shouldHaveThrown(UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
     @AfterClass
     public void closefs()
         throws IOException
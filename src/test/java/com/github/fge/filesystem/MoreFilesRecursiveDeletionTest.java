@@ -0,0 +1,90 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.exceptions.RecursiveDeletionException;
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class MoreFilesRecursiveDeletionTest
+{
+    private FileSystem fs;
+    private Path victim;
+
+    @BeforeMethod
+    public void initfs()
+        throws IOException
+    {
+        fs = MemoryFileSystemBuilder.newLinux()
+            .build("MoreFilesRecursiveDeletionTest");
+
+        victim = fs.getPath("/victim");
+
+        Path dir;
+
+        for (int i = 0; i < 8; i++) {
+            dir = Files.createDirectories(victim.resolve("dir" + i + "/sub"));
+            for (int j = 0; j < 100; j++)
+                Files.createFile(dir.resolve("file" + j));
+        }
+    }
+
+    @Test
+    public void parallelDeletionDeletesWholeTree()
+        throws IOException
+    {
+        MoreFiles.deleteRecursive(victim, RecursionMode.FAIL_FAST,
+            Parallelism.of(4));
+
+        assertThat(victim).doesNotExist();
+    }
+
+    @Test
+    public void prefetchingDeletionDeletesWholeTree()
+        throws IOException
+    {
+        MoreFiles.deleteRecursive(victim, RecursionMode.FAIL_FAST,
+            Parallelism.prefetching(4));
+
+        assertThat(victim).doesNotExist();
+    }
+
+    @Test
+    public void parallelDeletionCollectsFailures()
+        throws IOException
+    {
+        final Path dir = victim.resolve("dir3/sub");
+        Files.setPosixFilePermissions(dir,
+            PosixFilePermissions.fromString("r-xr-xr-x"));
+
+        try {
+            MoreFiles.deleteRecursive(victim, RecursionMode.KEEP_GOING,
+                Parallelism.of(4));
+            shouldHaveThrown(RecursiveDeletionException.class);
+        } catch (RecursiveDeletionException e) {
+            assertThat(e.getSuppressed()).isNotEmpty();
+            assertThat(e.getSuppressed()[0])
+                .isInstanceOf(AccessDeniedException.class);
+        }
+
+        assertThat(victim.resolve("dir1")).doesNotExist();
+        assertThat(dir.resolve("file1")).exists();
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+}
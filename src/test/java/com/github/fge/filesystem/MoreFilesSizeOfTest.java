@@ -0,0 +1,142 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.usage.DiskUsage;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class MoreFilesSizeOfTest
+{
+    private FileSystem fs;
+    private Path root;
+
+    /*
+     * root/a/file1 (100 bytes)
+     * root/a/file2 (5000 bytes)
+     * root/b/link (hard link to root/a/file2)
+     * root/b/sub/file3 (10 bytes)
+     * root/c (symbolic link to a)
+     */
+    @BeforeMethod
+    public void initfs()
+        throws IOException
+    {
+        // The "unix" view is required to read link counts
+        fs = Jimfs.newFileSystem(Configuration.unix().toBuilder()
+            .setAttributeViews("unix").build());
+        root = fs.getPath("/root");
+
+        final Path a = Files.createDirectories(root.resolve("a"));
+        final Path b = Files.createDirectories(root.resolve("b/sub"))
+            .getParent();
+
+        Files.write(a.resolve("file1"), new byte[100]);
+        Files.write(a.resolve("file2"), new byte[5000]);
+        Files.createLink(b.resolve("link"), a.resolve("file2"));
+        Files.write(b.resolve("sub/file3"), new byte[10]);
+        Files.createSymbolicLink(root.resolve("c"), fs.getPath("a"));
+    }
+
+    @DataProvider
+    public Iterator<Object[]> parallelism()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { new CopyOption[0] });
+        list.add(new Object[] { new CopyOption[] { Parallelism.of(4) } });
+        list.add(new Object[] {
+            new CopyOption[] { Parallelism.prefetching(4) }
+        });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "parallelism")
+    public void sizesAndCountsAreComputed(final CopyOption[] options)
+        throws IOException
+    {
+        final DiskUsage usage = MoreFiles.sizeOf(root, options);
+
+        assertThat(usage.getApparentSize()).isEqualTo(5110L);
+        assertThat(usage.getFileCount()).isEqualTo(4L);
+        assertThat(usage.getDirectoryCount()).isEqualTo(4L);
+        assertThat(usage.getOtherCount()).isEqualTo(1L);
+        assertThat(usage.getFailureCount()).isEqualTo(0L);
+        assertThat(usage.getEntries().keySet()).containsOnly(
+            root.resolve("a"), root.resolve("b"), root.resolve("c"));
+
+        final DiskUsage b = usage.getEntries().get(root.resolve("b"));
+        assertThat(b.getFileCount()).isEqualTo(2L);
+        assertThat(b.getDirectoryCount()).isEqualTo(2L);
+        assertThat(b.getEntries()).isEmpty();
+    }
+
+    @Test
+    public void allocatedSizeIsRoundedToBlocks()
+        throws IOException
+    {
+        final DiskUsage usage = MoreFiles.sizeOf(root.resolve("a"));
+
+        // The directory itself, then 100 and 5000 bytes
+        final long dirSize = usage.getAllocatedSize() - 3L * 4096L;
+        assertThat(dirSize % DiskUsage.BLOCK_SIZE).isEqualTo(0L);
+        assertThat(usage.getApparentSize()).isEqualTo(5100L);
+    }
+
+    @Test
+    public void symbolicLinksCanBeFollowed()
+        throws IOException
+    {
+        final DiskUsage usage = MoreFiles.sizeOf(root,
+            SymbolicLinkMode.FOLLOW);
+
+        assertThat(usage.getOtherCount()).isEqualTo(0L);
+        assertThat(usage.getFileCount()).isEqualTo(6L);
+        // Files seen through the link are hard links to the same files
+        assertThat(usage.getApparentSize()).isEqualTo(5110L);
+    }
+
+    @Test
+    public void copyOptionsAreAccepted()
+        throws IOException
+    {
+        final DiskUsage usage = MoreFiles.sizeOf(root,
+            MoreCopyOption.PRESERVE_HARD_LINKS, SymbolicLinkMode.COPY);
+
+        assertThat(usage.getApparentSize()).isEqualTo(5110L);
+    }
+
+    @Test
+    public void missingRootIsReported()
+        throws IOException
+    {
+        try {
+            MoreFiles.sizeOf(fs.getPath("/nope"));
+            shouldHaveThrown(NoSuchFileException.class);
+        } catch (NoSuchFileException ignored) {
+        }
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+}
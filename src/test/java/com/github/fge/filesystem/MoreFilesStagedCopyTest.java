@@ -0,0 +1,270 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.progress.ProgressListener;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class MoreFilesStagedCopyTest
+{
+    private FileSystem fs;
+    private Path src;
+    private Path dst;
+
+    /*
+     * src/dir/file1
+     * src/dir/file2
+     * src/link (symbolic link to dir)
+     */
+    @BeforeMethod
+    public void initfs()
+        throws IOException
+    {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+        src = fs.getPath("/data/src");
+        dst = fs.getPath("/data/dst");
+
+        final Path dir = Files.createDirectories(src.resolve("dir"));
+        Files.write(dir.resolve("file1"), "hello".getBytes("UTF-8"));
+        Files.write(dir.resolve("file2"), "world".getBytes("UTF-8"));
+        Files.createSymbolicLink(src.resolve("link"), fs.getPath("dir"));
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+
+    @DataProvider
+    public Iterator<Object[]> modes()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { RecursionMode.FAIL_FAST });
+        list.add(new Object[] { RecursionMode.KEEP_GOING });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "modes")
+    public void stagedCopyIsRenamedIntoPlace(final RecursionMode mode)
+        throws IOException
+    {
+        MoreFiles.copyRecursive(src, dst, mode, MoreCopyOption.ATOMIC_STAGING,
+            SymbolicLinkMode.COPY);
+
+        assertThat(Files.readAllBytes(dst.resolve("dir/file2")))
+            .isEqualTo("world".getBytes("UTF-8"));
+        assertThat(Files.isSymbolicLink(dst.resolve("link"))).isTrue();
+        assertThat(names(dst.getParent())).containsOnly("src", "dst");
+    }
+
+    @Test(dataProvider = "modes")
+    public void failedStagedCopyLeavesNoDebris(final RecursionMode mode)
+        throws IOException
+    {
+        // No symbolic link mode: the copy fails when it meets the link
+        try {
+            MoreFiles.copyRecursive(src, dst, mode,
+                MoreCopyOption.ATOMIC_STAGING);
+            shouldHaveThrown(UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        assertThat(names(dst.getParent())).containsOnly("src");
+    }
+
+    @Test
+    public void cancelledStagedCopyIsNotRenamedIntoPlace()
+        throws IOException, InterruptedException
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+
+        final ProgressListener listener = new ProgressListener()
+        {
+            @Override
+            public void entryCompleted(final Path path, final long bytes,
+                final long nanos)
+            {
+                started.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        final RecursiveOperationFuture future = MoreFiles.copyRecursiveAsync(
+            src, dst, RecursionMode.FAIL_FAST, executor,
+            MoreCopyOption.ATOMIC_STAGING, SymbolicLinkMode.COPY, listener);
+
+        started.await();
+        assertThat(future.cancel(false)).isTrue();
+        resume.countDown();
+
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5L, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(names(dst.getParent())).containsOnly("src");
+    }
+
+    @Test(dataProvider = "modes")
+    public void singleFileCanBeStaged(final RecursionMode mode)
+        throws IOException
+    {
+        MoreFiles.copyRecursive(src.resolve("dir/file1"), dst, mode,
+            MoreCopyOption.ATOMIC_STAGING);
+
+        assertThat(Files.readAllBytes(dst))
+            .isEqualTo("hello".getBytes("UTF-8"));
+        assertThat(names(dst.getParent())).containsOnly("src", "dst");
+    }
+
+    @Test
+    public void nonEmptyDestinationIsRejectedBeforeCopying()
+        throws IOException
+    {
+        Files.createDirectories(dst.resolve("old"));
+
+        final Recorder recorder = new Recorder();
+        try {
+            MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST,
+                MoreCopyOption.ATOMIC_STAGING, SymbolicLinkMode.COPY,
+                StandardCopyOption.REPLACE_EXISTING, recorder);
+            shouldHaveThrown(DirectoryNotEmptyException.class);
+        } catch (DirectoryNotEmptyException ignored) {
+        }
+
+        assertThat(recorder.visited).isEqualTo(0);
+        assertThat(names(dst.getParent())).containsOnly("src", "dst");
+    }
+
+    @Test
+    public void existingDestinationIsNotReplacedByDefault()
+        throws IOException
+    {
+        Files.createDirectory(dst);
+
+        try {
+            MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST,
+                MoreCopyOption.ATOMIC_STAGING, SymbolicLinkMode.COPY);
+            shouldHaveThrown(FileAlreadyExistsException.class);
+        } catch (FileAlreadyExistsException ignored) {
+        }
+
+        assertThat(names(dst.getParent())).containsOnly("src", "dst");
+    }
+
+    @Test
+    public void emptyDirectoryOrFileIsReplaced()
+        throws IOException
+    {
+        final CopyOption[] options = {
+            MoreCopyOption.ATOMIC_STAGING, SymbolicLinkMode.COPY,
+            StandardCopyOption.REPLACE_EXISTING
+        };
+
+        Files.createDirectory(dst);
+        MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST, options);
+        assertThat(Files.isDirectory(dst.resolve("dir"))).isTrue();
+
+        final Path file = dst.getParent().resolve("file");
+        Files.write(file, "old".getBytes("UTF-8"));
+        MoreFiles.copyRecursive(src.resolve("dir/file1"), file,
+            RecursionMode.FAIL_FAST, options);
+        assertThat(Files.readAllBytes(file))
+            .isEqualTo(Files.readAllBytes(src.resolve("dir/file1")));
+    }
+
+    @Test
+    public void entryOfAnotherKindIsRejectedBeforeCopying()
+        throws IOException
+    {
+        Files.createFile(dst);
+
+        final Recorder recorder = new Recorder();
+        try {
+            MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST,
+                MoreCopyOption.ATOMIC_STAGING, SymbolicLinkMode.COPY,
+                StandardCopyOption.REPLACE_EXISTING, recorder);
+            shouldHaveThrown(FileAlreadyExistsException.class);
+        } catch (FileAlreadyExistsException ignored) {
+        }
+
+        assertThat(recorder.visited).isEqualTo(0);
+        assertThat(Files.isRegularFile(dst)).isTrue();
+        assertThat(names(dst.getParent())).containsOnly("src", "dst");
+    }
+
+    @Test
+    public void stagingCannotBeJournaled()
+        throws IOException
+    {
+        try {
+            MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST,
+                MoreCopyOption.ATOMIC_STAGING,
+                CopyJournal.at(fs.getPath("/journal")));
+            shouldHaveThrown(UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        assertThat(Files.exists(fs.getPath("/journal"))).isFalse();
+    }
+
+    private static final class Recorder
+        extends ProgressListener
+    {
+        private volatile int visited = 0;
+
+        @Override
+        public void entryVisited(final Path path,
+            final BasicFileAttributes attrs)
+        {
+            visited++;
+        }
+    }
+
+    private static List<String> names(final Path dir)
+        throws IOException
+    {
+        final List<String> names = new ArrayList<>();
+
+        try (
+            final DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+        ) {
+            for (final Path entry: stream)
+                names.add(entry.getFileName().toString());
+        }
+
+        return names;
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.exceptions.RecursiveCopyException;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class MoreFilesSymbolicLinkCopyTest
+{
+    private static final byte[] CONTENT = { 1, 2, 3 };
+
+    private FileSystem fs;
+    private Path src;
+    private Path dst;
+
+    /*
+     * src/dir/file
+     * src/fileLink -> dir/file
+     * src/dirLink -> dir
+     */
+    @BeforeMethod
+    public void initfs()
+        throws IOException
+    {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+        src = fs.getPath("/src");
+        dst = fs.getPath("/dst");
+
+        final Path dir = Files.createDirectories(src.resolve("dir"));
+        Files.write(dir.resolve("file"), CONTENT);
+        Files.createSymbolicLink(src.resolve("fileLink"),
+            fs.getPath("dir/file"));
+        Files.createSymbolicLink(src.resolve("dirLink"), fs.getPath("dir"));
+    }
+
+    @DataProvider
+    public Iterator<Object[]> parallelism()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { new CopyOption[0] });
+        list.add(new Object[] { new CopyOption[] { Parallelism.of(4) } });
+
+        return list.iterator();
+    }
+
+    @Test
+    public void symbolicLinksAreNotSupportedByDefault()
+        throws IOException
+    {
+        try {
+            MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST);
+            shouldHaveThrown(UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    @Test(dataProvider = "parallelism")
+    public void symbolicLinksCanBeCopiedAsLinks(final CopyOption[] options)
+        throws IOException
+    {
+        copy(SymbolicLinkMode.COPY, options);
+
+        assertThat(Files.isSymbolicLink(dst.resolve("fileLink"))).isTrue();
+        assertThat(Files.readSymbolicLink(dst.resolve("fileLink")))
+            .isEqualTo(fs.getPath("dir/file"));
+        assertThat(Files.isSymbolicLink(dst.resolve("dirLink"))).isTrue();
+        // Relative links now point into the copy
+        assertThat(Files.readAllBytes(dst.resolve("fileLink")))
+            .isEqualTo(CONTENT);
+    }
+
+    @Test(dataProvider = "parallelism")
+    public void symbolicLinksCanBeFollowed(final CopyOption[] options)
+        throws IOException
+    {
+        copy(SymbolicLinkMode.FOLLOW, options);
+
+        final Path fileLink = dst.resolve("fileLink");
+        final Path dirLink = dst.resolve("dirLink");
+
+        assertThat(Files.isRegularFile(fileLink, LinkOption.NOFOLLOW_LINKS))
+            .isTrue();
+        assertThat(Files.readAllBytes(fileLink)).isEqualTo(CONTENT);
+        assertThat(Files.isDirectory(dirLink, LinkOption.NOFOLLOW_LINKS))
+            .isTrue();
+        assertThat(Files.readAllBytes(dirLink.resolve("file")))
+            .isEqualTo(CONTENT);
+    }
+
+    @Test(dataProvider = "parallelism")
+    public void symbolicLinksCanBeSkipped(final CopyOption[] options)
+        throws IOException
+    {
+        copy(SymbolicLinkMode.SKIP, options);
+
+        assertThat(dst.resolve("dir/file")).exists();
+        assertThat(Files.exists(dst.resolve("fileLink"),
+            LinkOption.NOFOLLOW_LINKS)).isFalse();
+        assertThat(Files.exists(dst.resolve("dirLink"),
+            LinkOption.NOFOLLOW_LINKS)).isFalse();
+    }
+
+    @Test(dataProvider = "parallelism")
+    public void loopsAndBrokenLinksAreReportedWhenFollowing(
+        final CopyOption[] options)
+        throws IOException
+    {
+        Files.createSymbolicLink(src.resolve("dir/loop"), fs.getPath(".."));
+        Files.createSymbolicLink(src.resolve("broken"), fs.getPath("nope"));
+
+        try {
+            MoreFiles.copyRecursive(src, dst, RecursionMode.KEEP_GOING,
+                plus(options, SymbolicLinkMode.FOLLOW));
+            shouldHaveThrown(RecursiveCopyException.class);
+        } catch (RecursiveCopyException e) {
+            final List<Class<?>> classes = new ArrayList<>();
+            for (final Throwable t: e.getSuppressed())
+                classes.add(t.getClass());
+            // One loop through "dir", one through "dirLink"
+            assertThat(classes).containsOnly(FileSystemLoopException.class,
+                NoSuchFileException.class).hasSize(3);
+        }
+
+        assertThat(dst.resolve("dirLink/file")).exists();
+    }
+
+    private void copy(final SymbolicLinkMode mode, final CopyOption[] options)
+        throws IOException
+    {
+        MoreFiles.copyRecursive(src, dst, RecursionMode.FAIL_FAST,
+            plus(options, mode));
+    }
+
+    private static CopyOption[] plus(final CopyOption[] options,
+        final CopyOption option)
+    {
+        final CopyOption[] ret = Arrays.copyOf(options, options.length + 1);
+        ret[options.length] = option;
+        return ret;
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+}
@@ -0,0 +1,279 @@
+package com.github.fge.filesystem;
+
+import com.github.fge.filesystem.copy.SyncReport;
+import com.github.fge.filesystem.exceptions.RecursiveCopyException;
+import com.github.fge.filesystem.progress.ProgressListener;
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class MoreFilesSyncTest
+{
+    private FileSystem fs;
+    private Path src;
+    private Path dst;
+
+    @BeforeMethod
+    public void initfs()
+        throws IOException
+    {
+        fs = MemoryFileSystemBuilder.newLinux().build("MoreFilesSyncTest");
+
+        src = fs.getPath("/src");
+        dst = fs.getPath("/dst");
+
+        Files.createDirectories(src.resolve("dir1/dir2"));
+        Files.createDirectory(src.resolve("dir3"));
+        write(src.resolve("file1"), "hello");
+        write(src.resolve("dir1/file2"), "world");
+        write(src.resolve("dir1/dir2/file3"), "foo");
+    }
+
+    @Test
+    public void copyOnlyOptionsAreRejected()
+        throws IOException
+    {
+        final MoreCopyOption[] options = {
+            MoreCopyOption.PRESERVE_HARD_LINKS,
+            MoreCopyOption.SKIP_SPECIAL_FILES,
+            MoreCopyOption.ATOMIC_STAGING
+        };
+
+        for (final MoreCopyOption option: options)
+            try {
+                MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST,
+                    option);
+                shouldHaveThrown(UnsupportedOperationException.class);
+            } catch (UnsupportedOperationException e) {
+                assertThat(e).hasMessage(option.toString());
+            }
+
+        assertThat(dst).doesNotExist();
+    }
+
+    @Test
+    public void firstSyncCopiesEverything()
+        throws IOException
+    {
+        final SyncReport report = MoreFiles.syncRecursive(src, dst,
+            RecursionMode.FAIL_FAST);
+
+        assertThat(report.getCopied()).hasSize(3);
+        assertThat(report.getCopiedBytes()).isEqualTo(13L);
+        assertThat(report.getUnchangedCount()).isEqualTo(0L);
+        assertThat(dst.resolve("dir3")).isDirectory();
+        assertThat(read(dst.resolve("dir1/dir2/file3"))).isEqualTo("foo");
+    }
+
+    @Test
+    public void secondSyncOnlyCopiesChangedFiles()
+        throws IOException
+    {
+        MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST);
+
+        final Path changed = src.resolve("dir1/file2");
+        write(changed, "world!");
+
+        final SyncReport report = MoreFiles.syncRecursive(src, dst,
+            RecursionMode.KEEP_GOING, Parallelism.of(2));
+
+        assertThat(report.getCopied()).containsExactly(src.relativize(changed));
+        assertThat(report.getUnchangedCount()).isEqualTo(2L);
+        assertThat(report.getDeleted()).isEmpty();
+        assertThat(read(dst.resolve("dir1/file2"))).isEqualTo("world!");
+    }
+
+    @Test
+    public void extraneousEntriesAreOnlyDeletedOnRequest()
+        throws IOException
+    {
+        MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST);
+
+        final Path extraneousDir
+            = Files.createDirectories(dst.resolve("dir1/extra/sub"));
+        final Path extraneousFile = dst.resolve("extra");
+        write(extraneousFile, "bar");
+
+        MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST);
+
+        assertThat(extraneousDir).exists();
+        assertThat(extraneousFile).exists();
+
+        final SyncReport report = MoreFiles.syncRecursive(src, dst,
+            RecursionMode.FAIL_FAST, MoreCopyOption.DELETE_EXTRANEOUS);
+
+        assertThat(report.getDeleted()).hasSize(2);
+        assertThat(dst.resolve("dir1/extra")).doesNotExist();
+        assertThat(extraneousFile).doesNotExist();
+        assertThat(report.getUnchangedCount()).isEqualTo(3L);
+    }
+
+    @Test
+    public void contentComparisonDetectsSameSizeChanges()
+        throws IOException
+    {
+        MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST);
+
+        final Path file = src.resolve("file1");
+        final FileTime time = Files.getLastModifiedTime(file);
+        write(file, "HELLO");
+        Files.setLastModifiedTime(file, time);
+
+        SyncReport report;
+
+        report = MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST);
+        assertThat(report.getCopied()).isEmpty();
+
+        report = MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST,
+            MoreCopyOption.COMPARE_CONTENTS);
+        assertThat(report.getCopied()).hasSize(1);
+        assertThat(read(dst.resolve("file1"))).isEqualTo("HELLO");
+    }
+
+    @Test
+    public void typeMismatchesAreReplaced()
+        throws IOException
+    {
+        Files.createDirectories(dst.resolve("file1/sub"));
+        write(dst.resolve("dir3"), "not a directory");
+
+        MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST);
+
+        assertThat(read(dst.resolve("file1"))).isEqualTo("hello");
+        assertThat(dst.resolve("dir3")).isDirectory();
+    }
+
+    @Test
+    public void changedFilesSurviveFailedCopies()
+        throws IOException
+    {
+        MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST);
+
+        final Path file = src.resolve("file1");
+        write(file, "hello, world");
+
+        // Make the copy fail by removing the source once it is visited
+        final ProgressListener listener = new ProgressListener()
+        {
+            @Override
+            public void entryVisited(final Path path,
+                final BasicFileAttributes attrs)
+            {
+                if (!path.equals(file))
+                    return;
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+
+        try {
+            MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST,
+                listener);
+            shouldHaveThrown(NoSuchFileException.class);
+        } catch (NoSuchFileException ignored) {
+        }
+
+        assertThat(read(dst.resolve("file1"))).isEqualTo("hello");
+
+        final List<String> names = new ArrayList<>();
+        try (
+            final DirectoryStream<Path> stream = Files.newDirectoryStream(dst);
+        ) {
+            for (final Path entry: stream)
+                names.add(entry.getFileName().toString());
+        }
+        assertThat(names).containsOnly("dir1", "dir3", "file1");
+    }
+
+    @Test
+    public void symbolicLinksAreSynchronizedOnRequest()
+        throws IOException
+    {
+        final Path link = src.resolve("link");
+        Files.createSymbolicLink(link, fs.getPath("file1"));
+
+        try {
+            MoreFiles.syncRecursive(src, dst, RecursionMode.KEEP_GOING);
+            shouldHaveThrown(RecursiveCopyException.class);
+        } catch (RecursiveCopyException e) {
+            assertThat(e.getFailureCount()).isEqualTo(1L);
+            final Throwable failure = e.getSuppressed()[0];
+            assertThat(failure).isExactlyInstanceOf(FileSystemException.class)
+                .hasMessageContaining("not a regular file");
+        }
+        assertThat(read(dst.resolve("dir1/file2"))).isEqualTo("world");
+
+        try {
+            MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST);
+            shouldHaveThrown(FileSystemException.class);
+        } catch (FileSystemException e) {
+            assertThat(e.getFile()).isEqualTo(link.toString());
+        }
+
+        SyncReport report;
+
+        report = MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST,
+            SymbolicLinkMode.SKIP);
+        assertThat(report.getCopied()).isEmpty();
+        assertThat(dst.resolve("link")).doesNotExist();
+
+        report = MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST,
+            SymbolicLinkMode.COPY);
+        assertThat(report.getCopied()).containsExactly(src.relativize(link));
+        assertThat(Files.readSymbolicLink(dst.resolve("link")))
+            .isEqualTo(fs.getPath("file1"));
+
+        report = MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST,
+            SymbolicLinkMode.COPY);
+        assertThat(report.getCopied()).isEmpty();
+        assertThat(report.getUnchangedCount()).isEqualTo(4L);
+
+        Files.delete(link);
+        Files.createSymbolicLink(link, fs.getPath("dir1/file2"));
+
+        report = MoreFiles.syncRecursive(src, dst, RecursionMode.FAIL_FAST,
+            SymbolicLinkMode.COPY);
+        assertThat(report.getCopied()).containsExactly(src.relativize(link));
+        assertThat(Files.readSymbolicLink(dst.resolve("link")))
+            .isEqualTo(fs.getPath("dir1/file2"));
+    }
+
+    private static void write(final Path path, final String content)
+        throws IOException
+    {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(final Path path)
+        throws IOException
+    {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+}
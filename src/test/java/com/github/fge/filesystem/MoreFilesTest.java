@@ -62,6 +62,22 @@ public final class MoreFilesTest
         assertThat(actualPerms).isEqualTo(expectedPerms);
     }
 
+    @Test
+    public void permissionsNotStrippedByUmaskAreSetAtCreation()
+        throws IOException
+    {
+        final Path file = MoreFiles.createFile(fs.getPath("/umaskFile"), 0640);
+        final Path subdir
+            = MoreFiles.createDirectories(fs.getPath("/umaskDir/a"), 0750);
+
+        assertThat(Files.getPosixFilePermissions(file))
+            .isEqualTo(PosixFilePermissions.fromString("rw-r-----"));
+        assertThat(Files.getPosixFilePermissions(subdir))
+            .isEqualTo(PosixFilePermissions.fromString("rwxr-x---"));
+        assertThat(Files.getPosixFilePermissions(subdir.getParent()))
+            .isEqualTo(PosixFilePermissions.fromString("rwxr-x---"));
+    }
+
     @Test
     public void createDirectoryIgnoresUmask()
         throws IOException
@@ -0,0 +1,115 @@
+package com.github.fge.filesystem;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class RateLimitTest
+{
+    private FileSystem fs;
+
+    @BeforeMethod
+    public void initfs()
+    {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+    }
+
+    @Test
+    public void rateMustBePositive()
+    {
+        try {
+            RateLimit.bytesPerSecond(0L);
+            shouldHaveThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void oneSecondWorthOfPermitsIsAvailableRightAway()
+        throws IOException
+    {
+        final RateLimit limit = RateLimit.filesPerSecond(10L);
+
+        long start = System.nanoTime();
+        limit.acquire(10L);
+        assertThat(elapsedMillis(start)).isLessThan(100L);
+
+        start = System.nanoTime();
+        limit.acquire(5L);
+        assertThat(elapsedMillis(start)).isGreaterThanOrEqualTo(400L);
+    }
+
+    @Test
+    public void copyIsLimitedInBytesPerSecond()
+        throws IOException
+    {
+        final Path src = Files.createDirectory(fs.getPath("/src"));
+        Files.write(src.resolve("file"), new byte[48 * 1024]);
+
+        final long start = System.nanoTime();
+        // 32 KiB right away, the remaining 16 KiB in 500 ms
+        MoreFiles.copyRecursive(src, fs.getPath("/dst"),
+            RecursionMode.FAIL_FAST, RateLimit.bytesPerSecond(32 * 1024L));
+
+        assertThat(elapsedMillis(start)).isGreaterThanOrEqualTo(400L);
+        assertThat(Files.size(fs.getPath("/dst/file"))).isEqualTo(48 * 1024L);
+    }
+
+    @Test
+    public void deletionIsLimitedInFilesPerSecond()
+        throws IOException
+    {
+        final Path victim = fs.getPath("/victim");
+
+        for (int i = 0; i < 7; i++)
+            Files.createFile(Files.createDirectories(victim)
+                .resolve("file" + i));
+
+        final long start = System.nanoTime();
+        // 8 entries: 5 right away, then 200 ms for each of the others
+        MoreFiles.deleteRecursive(victim, RecursionMode.FAIL_FAST,
+            RateLimit.filesPerSecond(5L));
+
+        assertThat(elapsedMillis(start)).isGreaterThanOrEqualTo(500L);
+        assertThat(victim).doesNotExist();
+    }
+
+    @Test
+    public void bytesPerSecondIsNotSupportedForDeletions()
+        throws IOException
+    {
+        final Path victim = Files.createDirectory(fs.getPath("/victim"));
+
+        try {
+            MoreFiles.deleteRecursive(victim, RecursionMode.FAIL_FAST,
+                RateLimit.bytesPerSecond(1L));
+            shouldHaveThrown(UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        assertThat(victim).exists();
+    }
+
+    private static long elapsedMillis(final long start)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+}
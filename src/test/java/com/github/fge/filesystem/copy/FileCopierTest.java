@@ -0,0 +1,213 @@
+package com.github.fge.filesystem.copy;
+
+import com.github.fge.filesystem.Checksum;
+import com.github.fge.filesystem.MoreCopyOption;
+import com.github.fge.filesystem.MoreFileSystems;
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.RecursionMode;
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class FileCopierTest
+{
+    private final FileCopier copier = new FileCopier();
+
+    private byte[] content;
+    private byte[] sparseContent;
+
+    private FileSystem memoryFs;
+    private FileSystem jimFs;
+    private FileSystem zipFs;
+    private Path tempDir;
+
+    @BeforeClass
+    public void initfs()
+        throws IOException
+    {
+        // Larger than a pooled buffer
+        content = new byte[3 * BufferPool.BUFFER_SIZE + 17];
+        new Random().nextBytes(content);
+
+        // Holes at the start, in the middle, and at the end
+        sparseContent = content.clone();
+        Arrays.fill(sparseContent, 0, 2 * FileCopier.BLOCK_SIZE, (byte) 0);
+        Arrays.fill(sparseContent, BufferPool.BUFFER_SIZE - 100,
+            2 * BufferPool.BUFFER_SIZE + 100, (byte) 0);
+        Arrays.fill(sparseContent, sparseContent.length - 5000,
+            sparseContent.length, (byte) 0);
+
+        memoryFs = MemoryFileSystemBuilder.newLinux().build("FileCopierTest");
+        jimFs = Jimfs.newFileSystem(Configuration.unix());
+        tempDir = Files.createTempDirectory("filecopier");
+        zipFs = MoreFileSystems.createZip(tempDir.resolve("test.zip"));
+    }
+
+    @DataProvider
+    public Iterator<Object[]> fileSystems()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        final FileSystem[] all = { memoryFs, jimFs, zipFs };
+        int index = 0;
+
+        for (final FileSystem src: all)
+            for (final FileSystem dst: all) {
+                list.add(new Object[] { src, dst, index });
+                index++;
+            }
+
+        list.add(new Object[] { tempDir.getFileSystem(), zipFs, index++ });
+        list.add(new Object[] { zipFs, tempDir.getFileSystem(), index });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "fileSystems")
+    public void copyPreservesContents(final FileSystem srcFs,
+        final FileSystem dstFs, final int index)
+        throws IOException
+    {
+        final Path src = path(srcFs, "src" + index);
+        final Path dst = path(dstFs, "dst" + index);
+
+        Files.write(src, content);
+        copier.copy(src, dst);
+
+        assertThat(Files.readAllBytes(dst)).isEqualTo(content);
+    }
+
+    @Test(dataProvider = "fileSystems")
+    public void sparseCopyPreservesContents(final FileSystem srcFs,
+        final FileSystem dstFs, final int index)
+        throws IOException
+    {
+        final FileCopier sparseCopier = new FileCopier(MoreCopyOption.SPARSE);
+
+        final Path src = path(srcFs, "sparseSrc" + index);
+        final Path dst = path(dstFs, "sparseDst" + index);
+
+        Files.write(src, sparseContent);
+        sparseCopier.copy(src, dst);
+
+        assertThat(Files.readAllBytes(dst)).isEqualTo(sparseContent);
+    }
+
+    @Test(dataProvider = "fileSystems")
+    public void checksummedCopyRecordsDigests(final FileSystem srcFs,
+        final FileSystem dstFs, final int index)
+        throws IOException, NoSuchAlgorithmException
+    {
+        final Checksum checksum = Checksum.sha256().verifying();
+        final FileCopier checksumCopier = new FileCopier(checksum);
+
+        final Path src = path(srcFs, "checksumSrc" + index);
+        final Path dst = path(dstFs, "checksumDst" + index);
+
+        Files.write(src, content);
+        checksumCopier.copy(src, dst);
+
+        final byte[] expected = MessageDigest.getInstance("SHA-256")
+            .digest(content);
+        assertThat(Files.readAllBytes(dst)).isEqualTo(content);
+        assertThat(checksum.getManifest())
+            .containsEntry(src, Checksum.toHex(expected)).hasSize(1);
+    }
+
+    @Test
+    public void sparseChecksummedCopyDigestsHoles()
+        throws IOException
+    {
+        final Checksum checksum = Checksum.crc32();
+        final FileCopier checksumCopier
+            = new FileCopier(checksum, MoreCopyOption.SPARSE);
+
+        final Path src = path(jimFs, "sparseChecksumSrc");
+        final Path dst = path(jimFs, "sparseChecksumDst");
+
+        Files.write(src, sparseContent);
+        checksumCopier.copy(src, dst);
+
+        final CRC32 crc = new CRC32();
+        crc.update(sparseContent);
+        assertThat(Files.readAllBytes(dst)).isEqualTo(sparseContent);
+        assertThat(checksum.getManifest().get(src))
+            .isEqualTo(String.format("%08x", crc.getValue()));
+    }
+
+    @Test
+    public void sparseCopyOfEmptyOrAllZeroesFilesWorks()
+        throws IOException
+    {
+        final FileCopier sparseCopier = new FileCopier(MoreCopyOption.SPARSE);
+
+        final Path empty = Files.createFile(tempDir.resolve("empty"));
+        final Path emptyCopy = tempDir.resolve("emptyCopy");
+        final Path zeroes = Files.write(tempDir.resolve("zeroes"),
+            new byte[BufferPool.BUFFER_SIZE + 1]);
+        final Path zeroesCopy = tempDir.resolve("zeroesCopy");
+
+        sparseCopier.copy(empty, emptyCopy);
+        sparseCopier.copy(zeroes, zeroesCopy);
+
+        assertThat(Files.size(emptyCopy)).isEqualTo(0L);
+        assertThat(Files.readAllBytes(zeroesCopy))
+            .isEqualTo(new byte[BufferPool.BUFFER_SIZE + 1]);
+    }
+
+    @Test
+    public void copyOntoExistingTargetFails()
+        throws IOException
+    {
+        final Path src = memoryFs.getPath("/existingSrc");
+        final Path dst = jimFs.getPath("/existingDst");
+
+        Files.write(src, content);
+        Files.createFile(dst);
+
+        try {
+            copier.copy(src, dst);
+            shouldHaveThrown(FileAlreadyExistsException.class);
+        } catch (FileAlreadyExistsException ignored) {
+        }
+
+        assertThat(Files.size(dst)).isEqualTo(0L);
+    }
+
+    private Path path(final FileSystem fs, final String name)
+    {
+        return fs == tempDir.getFileSystem() ? tempDir.resolve(name)
+            : fs.getPath("/" + name);
+    }
+
+    @AfterClass
+    public void closefs()
+        throws IOException
+    {
+        zipFs.close();
+        jimFs.close();
+        memoryFs.close();
+        MoreFiles.deleteRecursive(tempDir, RecursionMode.FAIL_FAST);
+    }
+}
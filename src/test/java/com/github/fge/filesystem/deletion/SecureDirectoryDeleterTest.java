@@ -0,0 +1,107 @@
+package com.github.fge.filesystem.deletion;
+
+import com.github.fge.filesystem.progress.ProgressCounters;
+import com.github.fge.filesystem.progress.ProgressListener;
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class SecureDirectoryDeleterTest
+{
+    // Jimfs supports secure directory streams
+    private FileSystem fs;
+
+    @BeforeMethod
+    public void initfs()
+    {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+    }
+
+    @Test
+    public void treeIsDeletedWithoutFollowingLinks()
+        throws IOException
+    {
+        final Path victim = createTree(fs.getPath("/victim"));
+        final Path outside = createTree(fs.getPath("/outside"));
+        Files.createSymbolicLink(victim.resolve("dir1/link"), outside);
+
+        final ProgressCounters counters = new ProgressCounters();
+        final SecureDirectoryDeleter deleter
+            = new SecureDirectoryDeleter(null, counters, new AtomicBoolean());
+
+        assertThat(deleter.deleteRecursive(victim)).isTrue();
+
+        assertThat(victim).doesNotExist();
+        assertThat(outside.resolve("dir1/sub/file")).exists();
+        // root, 2 directories, 2 subdirectories, 2 files, 1 link
+        assertThat(counters.getCompletedCount()).isEqualTo(8L);
+    }
+
+    @Test
+    public void cancelledDeletionDeletesNothing()
+        throws IOException
+    {
+        final Path victim = createTree(fs.getPath("/victim"));
+        final SecureDirectoryDeleter deleter = new SecureDirectoryDeleter(null,
+            ProgressListener.NONE, new AtomicBoolean(true));
+
+        assertThat(deleter.deleteRecursive(victim)).isTrue();
+        assertThat(victim.resolve("dir0/sub/file")).exists();
+    }
+
+    @Test
+    public void deleterIsNotUsedForFiles()
+        throws IOException
+    {
+        final Path file = Files.createFile(fs.getPath("/file"));
+        final SecureDirectoryDeleter deleter = new SecureDirectoryDeleter(null,
+            ProgressListener.NONE, new AtomicBoolean());
+
+        assertThat(deleter.deleteRecursive(file)).isFalse();
+        assertThat(file).exists();
+    }
+
+    @Test
+    public void deleterIsNotUsedWithoutSecureDirectoryStreams()
+        throws IOException
+    {
+        try (
+            final FileSystem memfs = MemoryFileSystemBuilder.newLinux()
+                .build("SecureDirectoryDeleterTest");
+        ) {
+            final Path victim = createTree(memfs.getPath("/victim"));
+            final SecureDirectoryDeleter deleter = new SecureDirectoryDeleter(
+                null, ProgressListener.NONE, new AtomicBoolean());
+
+            assertThat(deleter.deleteRecursive(victim)).isFalse();
+            assertThat(victim.resolve("dir0/sub/file")).exists();
+        }
+    }
+
+    private static Path createTree(final Path root)
+        throws IOException
+    {
+        for (int i = 0; i < 2; i++)
+            Files.createFile(Files.createDirectories(
+                root.resolve("dir" + i + "/sub")).resolve("file"));
+        return root;
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.fge.filesystem.deletion;
+
+import com.github.fge.filesystem.DeleteOption;
+import com.github.fge.filesystem.RecursiveOperationFuture;
+import com.github.fge.filesystem.progress.ProgressCounters;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class TrashTest
+{
+    private FileSystem fs;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void init()
+    {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @Test
+    public void victimIsRenamedThenDeletedInTheBackground()
+        throws IOException, ExecutionException, InterruptedException
+    {
+        final Path parent = Files.createDirectory(fs.getPath("/parent"));
+        final Path victim = createTree(parent.resolve("victim"));
+        final ProgressCounters counters = new ProgressCounters();
+        final Trash trash = Trash.using(executor, counters);
+
+        final RecursiveOperationFuture future = trash.discard(victim);
+
+        assertThat(victim).doesNotExist();
+
+        future.get();
+
+        assertThat(list(parent)).isEmpty();
+        // root, 2 directories, 2 subdirectories, 2 files
+        assertThat(counters.getCompletedCount()).isEqualTo(7L);
+    }
+
+    @Test
+    public void discardingMissingVictimFails()
+        throws IOException
+    {
+        final Trash trash = Trash.using(executor);
+
+        try {
+            trash.discard(fs.getPath("/nope"));
+            shouldHaveThrown(NoSuchFileException.class);
+        } catch (NoSuchFileException ignored) {
+        }
+    }
+
+    @Test
+    public void leftoverTombstonesAreRecovered()
+        throws IOException, ExecutionException, InterruptedException
+    {
+        final Path parent = Files.createDirectory(fs.getPath("/parent"));
+        final Path keep = Files.createFile(parent.resolve("keep"));
+
+        createTree(parent.resolve(".tombstone-1"));
+        createTree(parent.resolve(".tombstone-2"));
+
+        assertThat(Trash.isTombstone(parent.resolve(".tombstone-1")))
+            .isTrue();
+        assertThat(Trash.isTombstone(keep)).isFalse();
+
+        final List<RecursiveOperationFuture> futures
+            = Trash.using(executor).recover(parent);
+
+        assertThat(futures).hasSize(2);
+
+        for (final RecursiveOperationFuture future: futures)
+            future.get();
+
+        assertThat(list(parent)).containsExactly(keep);
+    }
+
+    @Test
+    public void backgroundDeletionIsRateLimited()
+        throws IOException, ExecutionException, InterruptedException
+    {
+        final Path victim = createTree(fs.getPath("/victim"));
+        final Trash trash = Trash.using(executor, 5);
+
+        final long start = System.nanoTime();
+        trash.discard(victim).get();
+        final long elapsed = System.nanoTime() - start;
+
+        // 7 entries: 5 are allowed right away, the 2 others wait 200 ms each
+        assertThat(TimeUnit.NANOSECONDS.toMillis(elapsed))
+            .isGreaterThanOrEqualTo(350L);
+    }
+
+    @Test
+    public void unsupportedOptionIsRejected()
+    {
+        try {
+            Trash.using(executor, new DeleteOption()
+            {
+            });
+            shouldHaveThrown(UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    private static Path createTree(final Path root)
+        throws IOException
+    {
+        for (int i = 0; i < 2; i++)
+            Files.createFile(Files.createDirectories(
+                root.resolve("dir" + i + "/sub")).resolve("file"));
+        return root;
+    }
+
+    private static List<Path> list(final Path dir)
+        throws IOException
+    {
+        final List<Path> list = new ArrayList<>();
+
+        try (
+            final DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+        ) {
+            for (final Path entry: stream)
+                list.add(entry);
+        }
+
+        return list;
+    }
+
+    @AfterMethod
+    public void cleanup()
+        throws IOException
+    {
+        executor.shutdownNow();
+        fs.close();
+    }
+}
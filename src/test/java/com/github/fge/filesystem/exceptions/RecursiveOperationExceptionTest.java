@@ -0,0 +1,77 @@
+package com.github.fge.filesystem.exceptions;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class RecursiveOperationExceptionTest
+{
+    @Test
+    public void failuresBeyondMaximumAreNotSuppressed()
+        throws IOException
+    {
+        final RecursiveOperationException exception
+            = new RecursiveCopyException();
+        final int max = RecursiveOperationException.MAX_SUPPRESSED;
+
+        for (int i = 0; i < max; i++)
+            exception.addFailure(new AccessDeniedException("denied" + i));
+        for (int i = 0; i < 50; i++)
+            exception.addFailure(new NoSuchFileException("missing" + i));
+
+        assertThat(exception.getSuppressed()).hasSize(max);
+        assertThat(exception.getFailureCount()).isEqualTo(max + 50L);
+        assertThat(exception.getSpillFile()).isNull();
+        assertThat(exception.getMessage()).contains(max + 50 + " failures");
+
+        final Map<Class<? extends IOException>, Long> counts
+            = exception.getFailureCounts();
+
+        assertThat(counts).hasSize(2)
+            .containsEntry(AccessDeniedException.class, (long) max)
+            .containsEntry(NoSuchFileException.class, 50L);
+
+        final List<String> log = exception.getFailureLog();
+
+        assertThat(log).hasSize(50);
+        assertThat(log.get(0)).isEqualTo(NoSuchFileException.class.getName()
+            + ": missing0");
+    }
+
+    @Test
+    public void failureLogIsSpilledToDisk()
+        throws IOException
+    {
+        final RecursiveOperationException exception
+            = new RecursiveDeletionException();
+        final int total = RecursiveOperationException.MAX_SUPPRESSED
+            + RecursiveOperationException.SPILL_THRESHOLD + 10;
+
+        for (int i = 0; i < total; i++)
+            exception.addFailure(new NoSuchFileException("missing" + i));
+
+        final Path spillFile = exception.getSpillFile();
+
+        assertThat(spillFile).isNotNull();
+        assertThat(exception.getFailureLog())
+            .hasSize(RecursiveOperationException.SPILL_THRESHOLD + 10);
+
+        // Once read back, descriptions are kept in memory
+        assertThat(spillFile).doesNotExist();
+        assertThat(exception.getSpillFile()).isNull();
+
+        final List<String> log = exception.getFailureLog();
+
+        assertThat(log).hasSize(RecursiveOperationException.SPILL_THRESHOLD
+            + 10);
+        assertThat(log.get(0)).isEqualTo(NoSuchFileException.class.getName()
+            + ": missing" + RecursiveOperationException.MAX_SUPPRESSED);
+    }
+}
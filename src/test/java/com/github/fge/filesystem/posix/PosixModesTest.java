@@ -7,6 +7,7 @@ import org.testng.annotations.Test;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -60,4 +61,36 @@ public final class PosixModesTest
             .as("integer mode is correctly translated")
             .isEqualTo(expected);
     }
+
+    @Test(dataProvider = "intModeTestData")
+    public void translatingFromPosixPermissionsWorks(final int intMode,
+        final String asString)
+    {
+        final Set<PosixFilePermission> perms
+            = PosixFilePermissions.fromString(asString);
+
+        assertThat(PosixModes.posixToIntMode(perms))
+            .as("POSIX permissions are correctly translated")
+            .isEqualTo(intMode);
+    }
+
+    @Test
+    public void allModesRoundTrip()
+    {
+        for (int intMode = 0; intMode <= 0777; intMode++)
+            assertThat(PosixModes.posixToIntMode(
+                PosixModes.intModeToPosix(intMode))).isEqualTo(intMode);
+    }
+
+    @Test
+    public void returnedSetsCanBeModified()
+    {
+        final Set<PosixFilePermission> perms = PosixModes.intModeToPosix(0);
+
+        perms.add(PosixFilePermission.OWNER_READ);
+
+        assertThat(perms).containsOnly(PosixFilePermission.OWNER_READ);
+        assertThat(PosixModes.intModeToPosix(0)).isEmpty();
+        assertThat(EnumSet.copyOf(PosixModes.intModeToPosix(0))).isEmpty();
+    }
 }
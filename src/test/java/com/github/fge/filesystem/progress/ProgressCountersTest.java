@@ -0,0 +1,99 @@
+package com.github.fge.filesystem.progress;
+
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.Parallelism;
+import com.github.fge.filesystem.RecursionMode;
+import com.github.fge.filesystem.exceptions.RecursiveDeletionException;
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class ProgressCountersTest
+{
+    private static final int DIRS = 4;
+    private static final int FILES_PER_DIR = 10;
+    private static final int FILE_SIZE = 100;
+
+    private FileSystem fs;
+    private Path root;
+
+    @BeforeMethod
+    public void initfs()
+        throws IOException
+    {
+        fs = MemoryFileSystemBuilder.newLinux().build("ProgressCountersTest");
+
+        root = fs.getPath("/root");
+
+        final byte[] content = new byte[FILE_SIZE];
+        Path dir;
+
+        for (int i = 0; i < DIRS; i++) {
+            dir = Files.createDirectories(root.resolve("dir" + i));
+            for (int j = 0; j < FILES_PER_DIR; j++)
+                Files.write(dir.resolve("file" + j), content);
+        }
+    }
+
+    @Test
+    public void copyProgressIsCounted()
+        throws IOException
+    {
+        final ProgressCounters counters = new ProgressCounters();
+        final long entries = 1 + DIRS + DIRS * FILES_PER_DIR;
+
+        MoreFiles.copyRecursive(root, fs.getPath("/copy"),
+            RecursionMode.FAIL_FAST, Parallelism.of(4), counters);
+
+        assertThat(counters.getVisitedCount()).isEqualTo(entries);
+        assertThat(counters.getCompletedCount()).isEqualTo(entries);
+        assertThat(counters.getBytes())
+            .isEqualTo((long) DIRS * FILES_PER_DIR * FILE_SIZE);
+        assertThat(counters.getFailureCount()).isZero();
+        assertThat(counters.getMaxLatency(TimeUnit.NANOSECONDS))
+            .isLessThanOrEqualTo(
+                counters.getTotalLatency(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void deletionFailuresAreCounted()
+        throws IOException
+    {
+        final ProgressCounters counters = new ProgressCounters();
+
+        Files.setPosixFilePermissions(root.resolve("dir2"),
+            PosixFilePermissions.fromString("r-xr-xr-x"));
+
+        try {
+            MoreFiles.deleteRecursive(root, RecursionMode.KEEP_GOING,
+                counters);
+            shouldHaveThrown(RecursiveDeletionException.class);
+        } catch (RecursiveDeletionException e) {
+            assertThat(counters.getFailureCount())
+                .isEqualTo(e.getFailureCount());
+        }
+
+        // dir2 and its files are left; so is the root
+        assertThat(counters.getCompletedCount())
+            .isEqualTo((DIRS - 1) * (FILES_PER_DIR + 1L));
+        assertThat(counters.getBytes()).isZero();
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+}
@@ -0,0 +1,331 @@
+package com.github.fge.filesystem.snapshot;
+
+import com.github.fge.filesystem.Checksum;
+import com.github.fge.filesystem.MoreFiles;
+import com.github.fge.filesystem.RecursionMode;
+import com.github.fge.filesystem.SymbolicLinkMode;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class TreeSnapshotTest
+{
+    private FileSystem fs;
+    private Path root;
+
+    /*
+     * root/a/file1 ("hello")
+     * root/a-b (empty file; sorts after a/file1 in snapshot order)
+     * root/a/sub/file2 ("world")
+     * root/link (symbolic link to a)
+     */
+    @BeforeMethod
+    public void initfs()
+        throws IOException
+    {
+        fs = Jimfs.newFileSystem(Configuration.unix().toBuilder()
+            .setAttributeViews("posix").build());
+        root = fs.getPath("/root");
+
+        final Path a = Files.createDirectories(root.resolve("a/sub"))
+            .getParent();
+        Files.write(a.resolve("file1"), "hello".getBytes("UTF-8"));
+        Files.write(a.resolve("sub/file2"), "world".getBytes("UTF-8"));
+        Files.createFile(root.resolve("a-b"));
+        Files.createSymbolicLink(root.resolve("link"), fs.getPath("a"));
+    }
+
+    @AfterMethod
+    public void closefs()
+        throws IOException
+    {
+        fs.close();
+    }
+
+    @Test
+    public void entriesAreInSnapshotOrder()
+        throws IOException
+    {
+        final TreeSnapshot snapshot = TreeSnapshot.create(root);
+        final List<String> paths = new ArrayList<>();
+
+        for (final SnapshotEntry entry: snapshot)
+            paths.add(entry.getPath());
+
+        assertThat(paths).containsExactly("a", "a/file1", "a/sub",
+            "a/sub/file2", "a-b", "link");
+        assertThat(snapshot.size()).isEqualTo(6);
+        assertThat(snapshot.getAlgorithm()).isNull();
+    }
+
+    @Test
+    public void entriesHaveKindsSizesAndModes()
+        throws IOException
+    {
+        final List<SnapshotEntry> entries = new ArrayList<>();
+
+        for (final SnapshotEntry entry: TreeSnapshot.create(root))
+            entries.add(entry);
+
+        assertThat(entries.get(0).getKind())
+            .isEqualTo(SnapshotEntry.Kind.DIRECTORY);
+        assertThat(entries.get(1).getKind())
+            .isEqualTo(SnapshotEntry.Kind.FILE);
+        assertThat(entries.get(1).getSize()).isEqualTo(5L);
+        assertThat(entries.get(1).getMode()).isNotEqualTo(-1);
+        assertThat(entries.get(1).getDigest()).isNull();
+        assertThat(entries.get(1).getLinkTarget()).isNull();
+        assertThat(entries.get(5).getKind())
+            .isEqualTo(SnapshotEntry.Kind.SYMBOLIC_LINK);
+        assertThat(entries.get(5).getLinkTarget()).isEqualTo("a");
+    }
+
+    @Test
+    public void digestsAreComputedIfRequested()
+        throws IOException
+    {
+        final Checksum checksum = Checksum.crc32();
+        final TreeSnapshot snapshot = TreeSnapshot.create(root, checksum);
+        final SnapshotEntry file1 = snapshot.iterator().next();
+
+        assertThat(snapshot.getAlgorithm()).isEqualTo(Checksum.CRC32);
+        assertThat(file1.getDigest()).isNull();
+        assertThat(checksum.getManifest()).hasSize(3)
+            .containsEntry(root.resolve("a/file1"), "3610a686");
+    }
+
+    @Test
+    public void snapshotsRoundTripThroughFiles()
+        throws IOException
+    {
+        final TreeSnapshot snapshot = TreeSnapshot.create(root,
+            Checksum.sha256());
+        final Path jimfsFile = fs.getPath("/snapshot");
+
+        snapshot.write(jimfsFile);
+        assertSameEntries(TreeSnapshot.read(jimfsFile), snapshot);
+
+        // Mapped in memory on the default filesystem
+        final Path file = Files.createTempFile("snapshot", ".bin");
+        try {
+            snapshot.write(file);
+            assertThat(Files.size(file))
+                .isEqualTo((long) snapshot.getSerializedSize());
+            final TreeSnapshot read = TreeSnapshot.read(file);
+            assertThat(read.getAlgorithm()).isEqualTo("SHA-256");
+            assertSameEntries(read, snapshot);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void invalidSnapshotsAreRejected()
+        throws IOException
+    {
+        final Path file = fs.getPath("/garbage");
+        Files.write(file, "not a snapshot".getBytes("UTF-8"));
+
+        try {
+            TreeSnapshot.read(file);
+            shouldHaveThrown(IOException.class);
+        } catch (IOException e) {
+            assertThat(e).hasMessage("not a tree snapshot");
+        }
+    }
+
+    @Test
+    public void snapshotRootMustBeADirectory()
+        throws IOException
+    {
+        try {
+            TreeSnapshot.create(root.resolve("a-b"));
+            shouldHaveThrown(NotDirectoryException.class);
+        } catch (NotDirectoryException ignored) {
+        }
+    }
+
+    @Test
+    public void diffBetweenSnapshotsListsChanges()
+        throws IOException
+    {
+        final TreeSnapshot before = TreeSnapshot.create(root);
+
+        Files.delete(root.resolve("a/sub/file2"));
+        Files.delete(root.resolve("a/sub"));
+        Files.write(root.resolve("a-b"), new byte[3]);
+        Files.createFile(root.resolve("b"));
+
+        final TreeDiff diff = TreeDiff.between(before,
+            TreeSnapshot.create(root));
+
+        assertThat(diff.getAdded()).containsExactly("b");
+        assertThat(diff.getRemoved()).containsExactly("a/sub",
+            "a/sub/file2");
+        assertThat(diff.getModified()).containsExactly("a-b");
+        assertThat(TreeDiff.between(before, before).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void liveDiffUsesDigestsWhenAvailable()
+        throws IOException
+    {
+        final Path file1 = root.resolve("a/file1");
+        final FileTime mtime = Files.getLastModifiedTime(file1);
+        final TreeSnapshot before = TreeSnapshot.create(root,
+            Checksum.sha256());
+
+        Files.setLastModifiedTime(file1, FileTime.fromMillis(0L));
+        assertThat(TreeDiff.between(before, root, Checksum.sha256())
+            .isEmpty()).isTrue();
+        assertThat(TreeDiff.between(before, root).getModified())
+            .containsExactly("a/file1");
+
+        Files.write(file1, "jello".getBytes("UTF-8"));
+        Files.setLastModifiedTime(file1, mtime);
+        assertThat(TreeDiff.between(before, root).isEmpty()).isTrue();
+        assertThat(TreeDiff.between(before, root, Checksum.sha256())
+            .getModified()).containsExactly("a/file1");
+    }
+
+    @Test
+    public void diffCanBeAppliedToACopy()
+        throws IOException
+    {
+        final Path copy = fs.getPath("/copy");
+        MoreFiles.copyRecursive(root, copy, RecursionMode.FAIL_FAST,
+            StandardCopyOption.COPY_ATTRIBUTES, SymbolicLinkMode.COPY);
+        final TreeSnapshot before = TreeSnapshot.create(root);
+
+        Files.delete(root.resolve("a/sub/file2"));
+        Files.delete(root.resolve("a/sub"));
+        Files.write(root.resolve("a/sub"), "now a file".getBytes("UTF-8"));
+        Files.write(root.resolve("a-b"), new byte[3]);
+        Files.createDirectories(root.resolve("b/c"));
+        Files.write(root.resolve("b/c/file3"), new byte[10]);
+
+        final TreeDiff diff = TreeDiff.between(before, root);
+        MoreFiles.applyDiff(root, copy, diff, RecursionMode.FAIL_FAST,
+            StandardCopyOption.COPY_ATTRIBUTES, SymbolicLinkMode.COPY);
+
+        assertThat(Files.readAllBytes(copy.resolve("a/sub")))
+            .isEqualTo("now a file".getBytes("UTF-8"));
+        assertThat(Files.size(copy.resolve("a-b"))).isEqualTo(3L);
+        assertThat(Files.size(copy.resolve("b/c/file3"))).isEqualTo(10L);
+
+        // The times of symbolic links are not copied, but links are compared
+        // by target
+        final TreeDiff after = TreeDiff.between(TreeSnapshot.create(root),
+            copy);
+        assertThat(after.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void linksInDiffsAreCopiedAsLinks()
+        throws IOException
+    {
+        final Path copy = fs.getPath("/copy");
+        MoreFiles.copyRecursive(root, copy, RecursionMode.FAIL_FAST,
+            SymbolicLinkMode.COPY);
+        final TreeSnapshot before = TreeSnapshot.create(root);
+
+        Files.createSymbolicLink(root.resolve("link2"),
+            fs.getPath("a/file1"));
+
+        final TreeDiff diff = TreeDiff.between(before, root);
+        assertThat(diff.getAdded()).containsExactly("link2");
+
+        try {
+            MoreFiles.applyDiff(root, copy, diff, RecursionMode.FAIL_FAST,
+                SymbolicLinkMode.FOLLOW);
+            shouldHaveThrown(UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        MoreFiles.applyDiff(root, copy, diff, RecursionMode.FAIL_FAST,
+            SymbolicLinkMode.COPY);
+
+        final Path link = copy.resolve("link2");
+        assertThat(Files.isSymbolicLink(link)).isTrue();
+        assertThat(Files.readAllBytes(link))
+            .isEqualTo("hello".getBytes("UTF-8"));
+    }
+
+    @Test
+    public void replacedEntriesSurviveFailedCopies()
+        throws IOException
+    {
+        final Path copy = fs.getPath("/copy");
+        MoreFiles.copyRecursive(root, copy, RecursionMode.FAIL_FAST,
+            SymbolicLinkMode.COPY);
+        final TreeSnapshot before = TreeSnapshot.create(root);
+
+        // Same size and modification time: only the target differs
+        final Path source = root.resolve("link");
+        final FileTime mtime = Files.getLastModifiedTime(source,
+            LinkOption.NOFOLLOW_LINKS);
+        Files.delete(source);
+        Files.createSymbolicLink(source, fs.getPath("b"));
+        Files.getFileAttributeView(source, BasicFileAttributeView.class,
+            LinkOption.NOFOLLOW_LINKS).setTimes(mtime, null, null);
+
+        final TreeDiff diff = TreeDiff.between(before, root);
+        assertThat(diff.getModified()).containsExactly("link");
+
+        try {
+            MoreFiles.applyDiff(root, copy, diff, RecursionMode.FAIL_FAST);
+            shouldHaveThrown(UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        final Path link = copy.resolve("link");
+        assertThat(Files.readSymbolicLink(link)).isEqualTo(fs.getPath("a"));
+
+        MoreFiles.applyDiff(root, copy, diff, RecursionMode.FAIL_FAST,
+            SymbolicLinkMode.COPY);
+
+        assertThat(Files.readSymbolicLink(link)).isEqualTo(fs.getPath("b"));
+        assertThat(TreeDiff.between(TreeSnapshot.create(root), copy)
+            .getAdded()).isEmpty();
+    }
+
+    private static void assertSameEntries(final TreeSnapshot actual,
+        final TreeSnapshot expected)
+    {
+        final List<String> actualEntries = new ArrayList<>();
+        final List<String> expectedEntries = new ArrayList<>();
+
+        for (final SnapshotEntry entry: actual)
+            actualEntries.add(describe(entry));
+        for (final SnapshotEntry entry: expected)
+            expectedEntries.add(describe(entry));
+
+        assertThat(actualEntries).isEqualTo(expectedEntries);
+    }
+
+    private static String describe(final SnapshotEntry entry)
+    {
+        final byte[] digest = entry.getDigest();
+        return entry.getPath() + ' ' + entry.getKind() + ' ' + entry.getSize()
+            + ' ' + entry.getLastModified() + ' ' + entry.getMode() + ' '
+            + (digest == null ? "-" : Checksum.toHex(digest)) + ' '
+            + entry.getLinkTarget();
+    }
+}
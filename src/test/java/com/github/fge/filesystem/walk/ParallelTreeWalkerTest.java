@@ -0,0 +1,157 @@
+package com.github.fge.filesystem.walk;
+
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class ParallelTreeWalkerTest
+{
+    private FileSystem fs;
+    private ForkJoinPool pool;
+
+    private Path root;
+    private final Set<Path> allEntries = new HashSet<>();
+
+    @BeforeClass
+    public void initfs()
+        throws IOException
+    {
+        fs = MemoryFileSystemBuilder.newLinux().build("ParallelTreeWalkerTest");
+        pool = new ForkJoinPool(4);
+
+        root = fs.getPath("/root");
+        allEntries.add(Files.createDirectory(root));
+
+        Path dir;
+
+        for (int i = 0; i < 10; i++) {
+            dir = Files.createDirectory(root.resolve("dir" + i));
+            allEntries.add(dir);
+            for (int j = 0; j < 100; j++)
+                allEntries.add(Files.createFile(dir.resolve("file" + j)));
+            for (final String name: new String[] { "a", "b", "c" }) {
+                dir = Files.createDirectory(dir.resolve(name));
+                allEntries.add(dir);
+            }
+        }
+    }
+
+    @Test
+    public void allEntriesAreVisitedOnce()
+        throws IOException
+    {
+        final Set<Path> visited
+            = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+
+        final FileVisitor<Path> visitor = new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir,
+                final BasicFileAttributes attrs)
+            {
+                assertThat(visited.add(dir)).isTrue();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attrs)
+            {
+                assertThat(visited.contains(file.getParent())).isTrue();
+                assertThat(visited.add(file)).isTrue();
+                return FileVisitResult.CONTINUE;
+            }
+        };
+
+        ParallelTreeWalker.walk(root, visitor, pool);
+
+        assertThat(visited).isEqualTo(allEntries);
+    }
+
+    @Test
+    public void directoriesArePostVisitedAfterAllTheirEntries()
+        throws IOException
+    {
+        final Set<Path> visited
+            = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+
+        final FileVisitor<Path> visitor = new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attrs)
+            {
+                visited.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir,
+                final IOException exc)
+                throws IOException
+            {
+                final Set<Path> expected = new HashSet<>();
+                for (final Path entry: allEntries)
+                    if (entry.startsWith(dir) && !entry.equals(dir))
+                        expected.add(entry);
+                assertThat(visited).containsAll(expected);
+                visited.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        };
+
+        ParallelTreeWalker.walk(root, visitor, pool);
+
+        assertThat(visited).isEqualTo(allEntries);
+    }
+
+    @Test
+    public void firstVisitorExceptionIsRethrown()
+    {
+        final IOException exception = new IOException();
+
+        final FileVisitor<Path> visitor = new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attrs)
+                throws IOException
+            {
+                throw exception;
+            }
+        };
+
+        try {
+            ParallelTreeWalker.walk(root, visitor, pool);
+            shouldHaveThrown(IOException.class);
+        } catch (IOException e) {
+            assertThat(e).isSameAs(exception);
+        }
+    }
+
+    @AfterClass
+    public void closefs()
+        throws IOException
+    {
+        pool.shutdown();
+        fs.close();
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.fge.filesystem.walk;
+
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
+
+public final class PrefetchingTreeWalkerTest
+{
+    private static final Set<FileVisitOption> NO_OPTIONS
+        = EnumSet.noneOf(FileVisitOption.class);
+
+    private FileSystem fs;
+    private ExecutorService executor;
+
+    private Path root;
+
+    @BeforeClass
+    public void initfs()
+        throws IOException
+    {
+        fs = MemoryFileSystemBuilder.newLinux()
+            .build("PrefetchingTreeWalkerTest");
+        executor = Executors.newFixedThreadPool(4);
+
+        root = Files.createDirectory(fs.getPath("/root"));
+
+        Path dir;
+
+        // More entries than a batch in each directory
+        for (int i = 0; i < 10; i++) {
+            dir = Files.createDirectory(root.resolve("dir" + i));
+            for (int j = 0; j < 100; j++)
+                Files.createFile(dir.resolve("file" + j));
+            for (final String name: new String[] { "a", "b", "c" }) {
+                dir = Files.createDirectory(dir.resolve(name));
+                Files.createFile(dir.resolve("file"));
+            }
+        }
+    }
+
+    @DataProvider
+    public Iterator<Object[]> results()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { FileVisitResult.CONTINUE });
+        list.add(new Object[] { FileVisitResult.SKIP_SUBTREE });
+        list.add(new Object[] { FileVisitResult.SKIP_SIBLINGS });
+        list.add(new Object[] { FileVisitResult.TERMINATE });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "results")
+    public void visitsAreTheSameAsWithWalkFileTree(
+        final FileVisitResult result)
+        throws IOException
+    {
+        final Recorder expected = new Recorder(result);
+        final Recorder actual = new Recorder(result);
+
+        Files.walkFileTree(root, NO_OPTIONS, Integer.MAX_VALUE, expected);
+        PrefetchingTreeWalker.walk(root, NO_OPTIONS, actual, executor, 2);
+
+        assertThat(actual.events).isEqualTo(expected.events);
+    }
+
+    @Test
+    public void walkWithOwnThreadsVisitsAllEntries()
+        throws IOException
+    {
+        final Recorder expected = new Recorder(FileVisitResult.CONTINUE);
+        final Recorder actual = new Recorder(FileVisitResult.CONTINUE);
+
+        Files.walkFileTree(root, expected);
+        PrefetchingTreeWalker.walk(root, NO_OPTIONS, actual, 3);
+
+        assertThat(actual.events).isEqualTo(expected.events);
+    }
+
+    @Test
+    public void visitorExceptionIsRethrown()
+    {
+        final IOException exception = new IOException();
+
+        final FileVisitor<Path> visitor = new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attrs)
+                throws IOException
+            {
+                throw exception;
+            }
+        };
+
+        try {
+            PrefetchingTreeWalker.walk(root, NO_OPTIONS, visitor, executor, 2);
+            shouldHaveThrown(IOException.class);
+        } catch (IOException e) {
+            assertThat(e).isSameAs(exception);
+        }
+    }
+
+    @Test
+    public void missingStartIsReportedToVisitor()
+        throws IOException
+    {
+        final Recorder recorder = new Recorder(FileVisitResult.CONTINUE);
+
+        PrefetchingTreeWalker.walk(fs.getPath("/nope"), NO_OPTIONS, recorder,
+            executor, 2);
+
+        assertThat(recorder.events).containsExactly("failed /nope");
+    }
+
+    @AfterClass
+    public void closefs()
+        throws IOException
+    {
+        executor.shutdown();
+        fs.close();
+    }
+
+    /*
+     * Records visits; the given result is returned for entries named "b"
+     */
+    private static final class Recorder
+        implements FileVisitor<Path>
+    {
+        private final List<String> events = new ArrayList<>();
+        private final FileVisitResult result;
+
+        private Recorder(final FileVisitResult result)
+        {
+            this.result = result;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir,
+            final BasicFileAttributes attrs)
+        {
+            events.add("pre " + dir);
+            return resultFor(dir);
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file,
+            final BasicFileAttributes attrs)
+        {
+            events.add("file " + file);
+            return resultFor(file);
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file,
+            final IOException exc)
+        {
+            events.add("failed " + file);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(final Path dir,
+            final IOException exc)
+        {
+            events.add("post " + dir);
+            return FileVisitResult.CONTINUE;
+        }
+
+        private FileVisitResult resultFor(final Path path)
+        {
+            final Path name = path.getFileName();
+            return name != null && name.toString().equals("b") ? result
+                : FileVisitResult.CONTINUE;
+        }
+    }
+}